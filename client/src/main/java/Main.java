@@ -1,3 +1,4 @@
+import chat.client.messages.ClientProtocol;
 import chat.ui.cli.ChatCLI;
 import chat.ui.ChatUI;
 
@@ -12,7 +13,9 @@ public class Main {
 
         final String serverAddress = args[0];
         final int serverPort = Integer.parseInt(args[1]);
-        final ChatUI ui = new ChatCLI(serverAddress, serverPort);
+        // Optionally ask the server to switch to the binary protocol after logging in
+        final ClientProtocol protocol = args.length > 2 ? ClientProtocol.valueOf(args[2].toUpperCase()) : ClientProtocol.JSON;
+        final ChatUI ui = new ChatCLI(serverAddress, serverPort, protocol);
 
         ui.start();
 
@@ -3,12 +3,10 @@ package chat.client;
 
 import chat.client.messages.*;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -17,22 +15,39 @@ import java.util.concurrent.*;
 
 public class RingChatClient implements ChatClient {
 
+    private static final int LINE_SEPARATOR = '\n';
+
     private final Encoder<ClientMessage, String> encoder = new ClientMessageJsonEncoder();
+    private final Encoder<ClientMessage, byte[]> binaryEncoder = new ClientMessageBinaryEncoder();
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private final LinkedBlockingQueue<ChatMessage> inboundMessages = new LinkedBlockingQueue<>();
     private final String serverAddress;
     private final int serverPort;
+    /**
+     * Protocol to ask the server for when logging in
+     */
+    private final ClientProtocol requestedProtocol;
 
     private String username;
     private Set<String> groups = new HashSet<>();
 
+    /**
+     * Protocol currently spoken with the server, which is JSON until the server agrees to something else
+     */
+    private volatile ClientProtocol protocol = ClientProtocol.JSON;
+
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private InputStream in;
 
     public RingChatClient(String serverAddress, int serverPort) {
+        this(serverAddress, serverPort, ClientProtocol.JSON);
+    }
+
+    public RingChatClient(String serverAddress, int serverPort, ClientProtocol requestedProtocol) {
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
+        this.requestedProtocol = requestedProtocol;
     }
 
     /**
@@ -41,8 +56,9 @@ public class RingChatClient implements ChatClient {
     private void connect() throws IOException {
         this.socket = new Socket();
         this.socket.connect(new InetSocketAddress(serverAddress, serverPort));
-        this.out = new PrintWriter(socket.getOutputStream(), true);
-        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.protocol = ClientProtocol.JSON;
     }
 
     @Override
@@ -53,7 +69,7 @@ public class RingChatClient implements ChatClient {
         connect();
 
         // Attempt to login
-        final LoginMessage loginMessage = new LoginMessage(username);
+        final LoginMessage loginMessage = new LoginMessage(username, requestedProtocol);
         sendToServer(loginMessage);
 
         // Check for login confirmation
@@ -75,8 +91,10 @@ public class RingChatClient implements ChatClient {
         if (clientMessage.getMessageType() == ClientMessageType.ERROR) {
             handleError((ErrorMessage) clientMessage);
         } else {
-            // Initialize username as confirmed by server
-            this.username = ((LoginMessage) clientMessage).getUsername();
+            // Initialize username as confirmed by server, and switch to the protocol the server agreed to
+            final LoginMessage loginMessage = (LoginMessage) clientMessage;
+            this.username = loginMessage.getUsername();
+            this.protocol = loginMessage.getProtocol();
             this.groups.clear();
 
             // Start listening for chat messages
@@ -208,28 +226,51 @@ public class RingChatClient implements ChatClient {
     }
 
     /**
-     * reads message from socket and parses JSON to client message
+     * reads message from socket and parses it to client message, using the protocol agreed with the server
      *
      * @return client message from server
      */
     private Optional<ClientMessage> receiveMessage() {
-        String input = null;
-
         try {
-            input = in.readLine();
+            if (protocol == ClientProtocol.BINARY) {
+                final byte[] frame = ClientMessageBinaryEncoder.readFrame(in);
+                if (frame != null) return binaryEncoder.decode(frame);
+            } else {
+                final String input = readLine();
+                if (input != null) return encoder.decode(input);
+            }
         } catch (IOException ignored) {
         }
 
-        if (input != null) return encoder.decode(input);
         return Optional.empty();
     }
 
+    /**
+     * @return the next line sent by the server, or null if the connection has closed
+     */
+    private String readLine() throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int next;
+        while ((next = in.read()) != LINE_SEPARATOR) {
+            if (next < 0) return null;
+            line.write(next);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
     /**
      * @param message message to send to server
      */
-    private void sendToServer(ClientMessage message) {
-        final String jsonstring = encoder.encode(message);
-        System.out.println("Sending to server: " + jsonstring);
-        out.println(jsonstring);
+    private synchronized void sendToServer(ClientMessage message) throws IOException {
+        if (protocol == ClientProtocol.BINARY) {
+            System.out.println("Sending to server: " + message);
+            out.write(ClientMessageBinaryEncoder.frame(binaryEncoder.encode(message)));
+        } else {
+            final String jsonstring = encoder.encode(message);
+            System.out.println("Sending to server: " + jsonstring);
+            out.write(jsonstring.getBytes(StandardCharsets.UTF_8));
+            out.write(LINE_SEPARATOR);
+        }
+        out.flush();
     }
 }
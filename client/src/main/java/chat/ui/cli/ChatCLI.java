@@ -3,6 +3,7 @@ package chat.ui.cli;
 import chat.client.ChatClient;
 import chat.client.RingChatClient;
 import chat.client.messages.ChatMessage;
+import chat.client.messages.ClientProtocol;
 import chat.ui.ChatUI;
 
 import java.io.IOException;
@@ -20,7 +21,11 @@ public class ChatCLI implements ChatUI {
     private final ChatClient client;
 
     public ChatCLI(String serverAddress, int serverPort) throws IOException {
-        this.client = new RingChatClient(serverAddress, serverPort);
+        this(serverAddress, serverPort, ClientProtocol.JSON);
+    }
+
+    public ChatCLI(String serverAddress, int serverPort, ClientProtocol protocol) throws IOException {
+        this.client = new RingChatClient(serverAddress, serverPort, protocol);
     }
 
     private void printTotallyAwesomeBanner() {
@@ -1,7 +1,15 @@
 package config;
 
+import node.clientmessaging.ChatTransport;
+import node.clientmessaging.MessageBudget;
+import node.clientmessaging.OverflowPolicy;
+import node.clientmessaging.WriteMode;
 import node.electionhandlers.ElectionMethod;
+import node.holdpolicies.HoldPolicy;
+import node.jdbc.StorageBackend;
+import node.sockets.RingTransport;
 import org.apache.commons.cli.*;
+import util.ThreadMode;
 
 
 public class ArgumentParser {
@@ -10,6 +18,34 @@ public class ArgumentParser {
     private static final String LIST_FILE = "list";
     private static final String ELECTION_METHOD = "election";
     private static final String DROP_EVERYTHING = "drop";
+    private static final String BATCH_MESSAGES = "batchmessages";
+    private static final String BATCH_BYTES = "batchbytes";
+    private static final String BATCH_MILLIS = "batchmillis";
+    private static final String HOLD_POLICY = "holdpolicy";
+    private static final String HOLD_MILLIS = "holdmillis";
+    private static final String RING_TRANSPORT = "ringtransport";
+    private static final String POOL_SIZE = "poolsize";
+    private static final String STORAGE = "storage";
+    private static final String STORAGE_PATH = "storagepath";
+    private static final String MAX_CLIENTS = "maxclients";
+    private static final String CHAT_TRANSPORT = "chattransport";
+    private static final String THREAD_MODE = "threadmode";
+    private static final String OUTBOUND_QUEUE = "outboundqueue";
+    private static final String OVERFLOW_POLICY = "overflowpolicy";
+    private static final String WRITE_MODE = "writemode";
+    private static final String TOKENS = "tokens";
+    private static final String PIGGYBACK = "piggyback";
+    private static final String TOKEN_TIMEOUT = "tokentimeout";
+    private static final String METRICS_PORT = "metricsport";
+
+    private static final long DEFAULT_HOLD_MILLIS = 3000;
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final String DEFAULT_STORAGE_PATH = "./ringdistsys";
+    private static final int DEFAULT_MAX_CLIENTS = 1024;
+    private static final int DEFAULT_OUTBOUND_QUEUE = 256;
+    private static final int DEFAULT_TOKENS = 1;
+    private static final long DEFAULT_TOKEN_TIMEOUT_MILLIS = 30000;
+    private static final int MAX_PIGGYBACK = 1024;
 
     private static Options buildOptions() {
         Options options = new Options();
@@ -30,6 +66,74 @@ public class ArgumentParser {
         Option drop = new Option("d", DROP_EVERYTHING, false, "Include if this node should trigger a database refresh");
         options.addOption(drop);
 
+        Option batchMessages = new Option("bm", BATCH_MESSAGES, true, "Maximum number of chat messages to move each time the token is held (default 1)");
+        batchMessages.setType(Number.class);
+        options.addOption(batchMessages);
+
+        Option batchBytes = new Option("bb", BATCH_BYTES, true, "Maximum number of bytes of chat messages to move each time the token is held");
+        batchBytes.setType(Number.class);
+        options.addOption(batchBytes);
+
+        Option batchMillis = new Option("bt", BATCH_MILLIS, true, "Maximum time in milliseconds to spend moving chat messages each time the token is held");
+        batchMillis.setType(Number.class);
+        options.addOption(batchMillis);
+
+        Option holdPolicy = new Option("hp", HOLD_POLICY, true, "Token hold policy to use (FIXED/ADAPTIVE)");
+        options.addOption(holdPolicy);
+
+        Option holdMillis = new Option("ht", HOLD_MILLIS, true, "Token hold time in milliseconds, or the maximum hold time for ADAPTIVE (default 3000)");
+        holdMillis.setType(Number.class);
+        options.addOption(holdMillis);
+
+        Option ringTransport = new Option("rt", RING_TRANSPORT, true, "Transport for ring connections (BLOCKING/SELECTOR)");
+        options.addOption(ringTransport);
+
+        Option poolSize = new Option("ps", POOL_SIZE, true, "Maximum number of database connections to keep open (default 4)");
+        poolSize.setType(Number.class);
+        options.addOption(poolSize);
+
+        Option storage = new Option("s", STORAGE, true, "Where to store the ring and messages (MARIADB/EMBEDDED)");
+        options.addOption(storage);
+
+        Option storagePath = new Option("sp", STORAGE_PATH, true, "Path to the database file for EMBEDDED storage (default ./ringdistsys)");
+        options.addOption(storagePath);
+
+        Option maxClients = new Option("mc", MAX_CLIENTS, true, "Maximum number of chat clients to serve at once (default 1024)");
+        maxClients.setType(Number.class);
+        options.addOption(maxClients);
+
+        Option chatTransport = new Option("ct", CHAT_TRANSPORT, true, "Transport for chat client connections (BLOCKING/SELECTOR)");
+        options.addOption(chatTransport);
+
+        Option threadMode = new Option("tm", THREAD_MODE, true, "Kind of thread to run blocking tasks on (PLATFORM/VIRTUAL), VIRTUAL requires Java 21");
+        options.addOption(threadMode);
+
+        Option outboundQueue = new Option("oq", OUTBOUND_QUEUE, true, "Maximum number of messages waiting to be written to each chat client (default 256)");
+        outboundQueue.setType(Number.class);
+        options.addOption(outboundQueue);
+
+        Option overflowPolicy = new Option("op", OVERFLOW_POLICY, true, "What to do when a chat clients outbound queue is full (BLOCK/DROP_OLDEST/DISCONNECT)");
+        options.addOption(overflowPolicy);
+
+        Option writeMode = new Option("wm", WRITE_MODE, true, "When chat messages are written to the message queue (TOKEN/CONCURRENT)");
+        options.addOption(writeMode);
+
+        Option tokens = new Option("tk", TOKENS, true, "Number of tokens in the ring, each owning a partition of the message queue (default 1)");
+        tokens.setType(Number.class);
+        options.addOption(tokens);
+
+        Option piggyback = new Option("pb", PIGGYBACK, true, "Maximum number of chat messages carried around the ring by each token, from 0 to disable up to " + MAX_PIGGYBACK + " (default 0)");
+        piggyback.setType(Number.class);
+        options.addOption(piggyback);
+
+        Option tokenTimeout = new Option("tt", TOKEN_TIMEOUT, true, "Least time in milliseconds the coordinator waits without seeing a token before replacing it, raised to twice the ring size times the hold time if that is longer (default 30000)");
+        tokenTimeout.setType(Number.class);
+        options.addOption(tokenTimeout);
+
+        Option metricsPort = new Option("mp", METRICS_PORT, true, "Local port to serve metrics on in the Prometheus format (default 0, not served)");
+        metricsPort.setType(Number.class);
+        options.addOption(metricsPort);
+
         return options;
     }
 
@@ -39,6 +143,20 @@ public class ArgumentParser {
         System.exit(1);
     }
 
+    /**
+     * Retrieves the numeric value of an option, or the default if the option was not given
+     *
+     * @param cmd          parsed command line
+     * @param name         name of option
+     * @param defaultValue value to use if option is missing
+     * @return value of option
+     * @throws ParseException if the value is not a number
+     */
+    private static long getLongOrDefault(CommandLine cmd, String name, long defaultValue) throws ParseException {
+        final Number value = (Number) cmd.getParsedOptionValue(name);
+        return value == null ? defaultValue : value.longValue();
+    }
+
     public static Configuration parseArgs(String[] args) {
         Options options = buildOptions();
 
@@ -48,6 +166,23 @@ public class ArgumentParser {
         String listFile = null;
         ElectionMethod electionMethod = null;
         boolean dropEverything = false;
+        MessageBudget messageBudget = MessageBudget.SINGLE_MESSAGE;
+        HoldPolicy holdPolicy = HoldPolicy.FIXED;
+        long holdMillis = DEFAULT_HOLD_MILLIS;
+        RingTransport ringTransport = RingTransport.BLOCKING;
+        int poolSize = DEFAULT_POOL_SIZE;
+        StorageBackend storageBackend = StorageBackend.MARIADB;
+        String storagePath = DEFAULT_STORAGE_PATH;
+        int maxClients = DEFAULT_MAX_CLIENTS;
+        ChatTransport chatTransport = ChatTransport.BLOCKING;
+        ThreadMode threadMode = ThreadMode.PLATFORM;
+        int outboundQueue = DEFAULT_OUTBOUND_QUEUE;
+        OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+        WriteMode writeMode = WriteMode.TOKEN;
+        int tokens = DEFAULT_TOKENS;
+        int piggyback = 0;
+        long tokenTimeout = DEFAULT_TOKEN_TIMEOUT_MILLIS;
+        int metricsPort = 0;
 
         try {
             CommandLine cmd = parser.parse(options, args);
@@ -56,12 +191,42 @@ public class ArgumentParser {
             listFile = cmd.getOptionValue(LIST_FILE);
             electionMethod = ElectionMethod.valueOf(cmd.getOptionValue(ELECTION_METHOD, String.valueOf(ElectionMethod.RING_BASED)));
             dropEverything = cmd.hasOption(DROP_EVERYTHING);
+            messageBudget = new MessageBudget(
+                    (int) getLongOrDefault(cmd, BATCH_MESSAGES, MessageBudget.SINGLE_MESSAGE.getMaxMessages()),
+                    getLongOrDefault(cmd, BATCH_BYTES, MessageBudget.SINGLE_MESSAGE.getMaxBytes()),
+                    getLongOrDefault(cmd, BATCH_MILLIS, MessageBudget.SINGLE_MESSAGE.getMaxMillis())
+            );
+            holdPolicy = HoldPolicy.valueOf(cmd.getOptionValue(HOLD_POLICY, String.valueOf(HoldPolicy.FIXED)));
+            holdMillis = getLongOrDefault(cmd, HOLD_MILLIS, DEFAULT_HOLD_MILLIS);
+            ringTransport = RingTransport.valueOf(cmd.getOptionValue(RING_TRANSPORT, String.valueOf(RingTransport.BLOCKING)));
+            poolSize = (int) getLongOrDefault(cmd, POOL_SIZE, DEFAULT_POOL_SIZE);
+            storageBackend = StorageBackend.valueOf(cmd.getOptionValue(STORAGE, String.valueOf(StorageBackend.MARIADB)));
+            storagePath = cmd.getOptionValue(STORAGE_PATH, DEFAULT_STORAGE_PATH);
+            maxClients = (int) getLongOrDefault(cmd, MAX_CLIENTS, DEFAULT_MAX_CLIENTS);
+            chatTransport = ChatTransport.valueOf(cmd.getOptionValue(CHAT_TRANSPORT, String.valueOf(ChatTransport.BLOCKING)));
+            threadMode = ThreadMode.valueOf(cmd.getOptionValue(THREAD_MODE, String.valueOf(ThreadMode.PLATFORM)));
+            outboundQueue = (int) getLongOrDefault(cmd, OUTBOUND_QUEUE, DEFAULT_OUTBOUND_QUEUE);
+            overflowPolicy = OverflowPolicy.valueOf(cmd.getOptionValue(OVERFLOW_POLICY, String.valueOf(OverflowPolicy.BLOCK)));
+            writeMode = WriteMode.valueOf(cmd.getOptionValue(WRITE_MODE, String.valueOf(WriteMode.TOKEN)));
+            tokens = (int) getLongOrDefault(cmd, TOKENS, DEFAULT_TOKENS);
+            if (tokens < 1) {
+                throw new ParseException("Number of tokens must be at least 1");
+            }
+            final long carriedMessageLimit = getLongOrDefault(cmd, PIGGYBACK, 0);
+            if (carriedMessageLimit < 0 || carriedMessageLimit > MAX_PIGGYBACK) {
+                throw new ParseException("Number of carried messages must be between 0 and " + MAX_PIGGYBACK);
+            }
+            piggyback = (int) carriedMessageLimit;
+            tokenTimeout = getLongOrDefault(cmd, TOKEN_TIMEOUT, DEFAULT_TOKEN_TIMEOUT_MILLIS);
+            metricsPort = (int) getLongOrDefault(cmd, METRICS_PORT, 0);
 
         } catch (ParseException e) {
             System.out.println(e.getMessage());
             printHelpAndDie(options);
         }
 
-        return new Configuration(inputId, listFile, electionMethod, dropEverything);
+        return new Configuration(inputId, listFile, electionMethod, dropEverything, messageBudget, holdPolicy, holdMillis, ringTransport, poolSize,
+                storageBackend, storagePath, maxClients, chatTransport,
+                threadMode, outboundQueue, overflowPolicy, writeMode, tokens, piggyback, tokenTimeout, metricsPort);
     }
 }
@@ -1,6 +1,14 @@
 package config;
 
+import node.clientmessaging.ChatTransport;
+import node.clientmessaging.MessageBudget;
+import node.clientmessaging.OverflowPolicy;
+import node.clientmessaging.WriteMode;
 import node.electionhandlers.ElectionMethod;
+import node.holdpolicies.HoldPolicy;
+import node.jdbc.StorageBackend;
+import node.sockets.RingTransport;
+import util.ThreadMode;
 
 public class Configuration {
 
@@ -24,11 +32,121 @@ public class Configuration {
      */
     private final boolean dropEverything;
 
-    public Configuration(int nodeId, String listFilePath, ElectionMethod electionMethod, boolean dropEverything) {
+    /**
+     * Limits on how many messages the chat server can move each time this node holds the token
+     */
+    private final MessageBudget messageBudget;
+
+    /**
+     * The policy used to decide how long to hold the token for
+     */
+    private final HoldPolicy holdPolicy;
+
+    /**
+     * The hold time for fixed policies, or the maximum hold time for adaptive policies
+     */
+    private final long holdMillis;
+
+    /**
+     * The transport used for connections to this nodes successor and predecessor
+     */
+    private final RingTransport ringTransport;
+
+    /**
+     * Maximum number of database connections kept open by this node
+     */
+    private final int connectionPoolSize;
+
+    /**
+     * Where the ring and messages are stored
+     */
+    private final StorageBackend storageBackend;
+
+    /**
+     * Path to the database file when using embedded storage
+     */
+    private final String storagePath;
+
+    /**
+     * Maximum number of chat clients this node will serve at once
+     */
+    private final int maxClients;
+
+    /**
+     * The transport used for connections to chat clients
+     */
+    private final ChatTransport chatTransport;
+
+    /**
+     * Kind of thread used to run blocking tasks
+     */
+    private final ThreadMode threadMode;
+
+    /**
+     * Maximum number of messages waiting to be written to each chat client
+     */
+    private final int outboundQueueCapacity;
+
+    /**
+     * What to do with messages for a chat client whose outbound queue is full
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * When messages sent by chat clients are written to the message queue
+     */
+    private final WriteMode writeMode;
+
+    /**
+     * Number of tokens circulating the ring, each of which owns a partition of the message queue
+     */
+    private final int tokenCount;
+
+    /**
+     * Maximum number of chat messages each token carries around the ring, or 0 if messages are never carried. Fewer
+     * are carried if more would make the token too large to send.
+     */
+    private final int carriedMessageLimit;
+
+    /**
+     * Least time the coordinator waits without seeing a token before replacing it. It waits longer if a rotation of
+     * the ring can take longer than this.
+     */
+    private final long tokenTimeoutMillis;
+
+    /**
+     * Local port metrics are served on in the Prometheus format, or 0 to not serve them
+     */
+    private final int metricsPort;
+
+    public Configuration(int nodeId, String listFilePath, ElectionMethod electionMethod, boolean dropEverything,
+                         MessageBudget messageBudget, HoldPolicy holdPolicy, long holdMillis,
+                         RingTransport ringTransport, int connectionPoolSize, StorageBackend storageBackend,
+                         String storagePath, int maxClients, ChatTransport chatTransport,
+                         ThreadMode threadMode, int outboundQueueCapacity, OverflowPolicy overflowPolicy,
+                         WriteMode writeMode, int tokenCount, int carriedMessageLimit,
+                         long tokenTimeoutMillis, int metricsPort) {
         this.nodeId = nodeId;
         this.listFilePath = listFilePath;
         this.electionMethod = electionMethod;
         this.dropEverything = dropEverything;
+        this.messageBudget = messageBudget;
+        this.holdPolicy = holdPolicy;
+        this.holdMillis = holdMillis;
+        this.ringTransport = ringTransport;
+        this.connectionPoolSize = connectionPoolSize;
+        this.storageBackend = storageBackend;
+        this.storagePath = storagePath;
+        this.maxClients = maxClients;
+        this.chatTransport = chatTransport;
+        this.threadMode = threadMode;
+        this.outboundQueueCapacity = outboundQueueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.writeMode = writeMode;
+        this.tokenCount = tokenCount;
+        this.carriedMessageLimit = carriedMessageLimit;
+        this.tokenTimeoutMillis = tokenTimeoutMillis;
+        this.metricsPort = metricsPort;
     }
 
     public int getNodeId() {
@@ -47,5 +165,99 @@ public class Configuration {
         return dropEverything;
     }
 
+    public MessageBudget getMessageBudget() {
+        return messageBudget;
+    }
+
+    public HoldPolicy getHoldPolicy() {
+        return holdPolicy;
+    }
+
+    public long getHoldMillis() {
+        return holdMillis;
+    }
+
+    public RingTransport getRingTransport() {
+        return ringTransport;
+    }
+
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    public StorageBackend getStorageBackend() {
+        return storageBackend;
+    }
+
+    public String getStoragePath() {
+        return storagePath;
+    }
+
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    public ChatTransport getChatTransport() {
+        return chatTransport;
+    }
+
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    public int getOutboundQueueCapacity() {
+        return outboundQueueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public WriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    public int getCarriedMessageLimit() {
+        return carriedMessageLimit;
+    }
+
+    public long getTokenTimeoutMillis() {
+        return tokenTimeoutMillis;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    @Override
+    public String toString() {
+        return "Configuration{" +
+                "nodeId=" + nodeId +
+                ", listFilePath='" + listFilePath + '\'' +
+                ", electionMethod=" + electionMethod +
+                ", dropEverything=" + dropEverything +
+                ", messageBudget=" + messageBudget +
+                ", holdPolicy=" + holdPolicy +
+                ", holdMillis=" + holdMillis +
+                ", ringTransport=" + ringTransport +
+                ", connectionPoolSize=" + connectionPoolSize +
+                ", storageBackend=" + storageBackend +
+                ", storagePath='" + storagePath + '\'' +
+                ", maxClients=" + maxClients +
+                ", chatTransport=" + chatTransport +
+                ", threadMode=" + threadMode +
+                ", outboundQueueCapacity=" + outboundQueueCapacity +
+                ", overflowPolicy=" + overflowPolicy +
+                ", writeMode=" + writeMode +
+                ", tokenCount=" + tokenCount +
+                ", carriedMessageLimit=" + carriedMessageLimit +
+                ", tokenTimeoutMillis=" + tokenTimeoutMillis +
+                ", metricsPort=" + metricsPort +
+                '}';
+    }
 
 }
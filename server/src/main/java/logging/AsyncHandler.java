@@ -0,0 +1,146 @@
+package logging;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler that hands records to a background thread to be formatted and written, so that threads logging never wait
+ * on the console or on each other. Records are queued without locking, and are dropped once the queue is full rather
+ * than blocking the caller. The number dropped is written once there is room again.
+ */
+public class AsyncHandler extends Handler {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final int capacity;
+    private final Writer out;
+    private final ConcurrentLinkedQueue<LogRecord> records = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a handler writing to standard error, like {@link java.util.logging.ConsoleHandler}
+     *
+     * @param formatter formatter run on the writing thread
+     * @param capacity  number of records that can be waiting to be written
+     */
+    public AsyncHandler(Formatter formatter, int capacity) {
+        this(formatter, capacity, new OutputStreamWriter(System.err, Charset.defaultCharset()));
+    }
+
+    AsyncHandler(Formatter formatter, int capacity, Writer out) {
+        this.capacity = capacity;
+        this.out = new BufferedWriter(out);
+        setFormatter(formatter);
+
+        this.writerThread = new Thread(this::writeRecords, "log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+
+        records.offer(record);
+        LockSupport.unpark(writerThread);
+    }
+
+    /**
+     * Records are flushed by the writing thread whenever the queue empties
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes any records still queued, then stops the writing thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writerThread);
+
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return number of records dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void writeRecords() {
+        long reportedDropped = 0;
+
+        while (true) {
+            final LogRecord record = records.poll();
+
+            if (record != null) {
+                queued.decrementAndGet();
+                write(record);
+                continue;
+            }
+
+            final long droppedSoFar = dropped.get();
+            if (droppedSoFar > reportedDropped) {
+                writeLine(String.format("[Dropped %d log records]%n", droppedSoFar - reportedDropped));
+                reportedDropped = droppedSoFar;
+            }
+
+            try {
+                out.flush();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+
+            // Records published before close are in the queue by now
+            if (closed && records.isEmpty()) return;
+
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    private void write(LogRecord record) {
+        final String line;
+        try {
+            line = getFormatter().format(record);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return;
+        }
+        writeLine(line);
+    }
+
+    private void writeLine(String line) {
+        try {
+            out.write(line);
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package logging;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats records as '[date time | node id ] [LEVEL  ] message'. Not synchronized, as records are formatted by a
+ * single thread in {@link AsyncHandler}.
+ */
+public class NodeLogFormatter extends Formatter {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+    private static final int LEVEL_WIDTH = 7;
+
+    private final String nodeId;
+    private final StringBuilder builder = new StringBuilder(128);
+
+    public NodeLogFormatter(int nodeId) {
+        this.nodeId = Integer.toString(nodeId);
+    }
+
+    @Override
+    public String format(LogRecord record) {
+        builder.setLength(0);
+
+        builder.append('[');
+        TIME_FORMAT.formatTo(Instant.ofEpochMilli(record.getMillis()), builder);
+        builder.append(" | ").append(nodeId).append(" ] [");
+
+        final String level = record.getLevel().getLocalizedName();
+        builder.append(level);
+        for (int i = level.length(); i < LEVEL_WIDTH; i++) {
+            builder.append(' ');
+        }
+
+        builder.append("] ").append(record.getMessage()).append(' ').append(System.lineSeparator());
+        return builder.toString();
+    }
+}
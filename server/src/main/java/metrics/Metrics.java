@@ -0,0 +1,67 @@
+package metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives access to the registry shared by every part of the node, in the same way as {@link logging.LoggerFactory}
+ */
+public class Metrics {
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    private Metrics() {
+    }
+
+    public static MetricsRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Wraps a repository so that the time taken by each call, and each call that fails, is recorded under the name of
+     * the repository and the method called
+     *
+     * @param type       interface of the repository
+     * @param repository repository to time
+     * @param name       name of the repository for the metric labels
+     * @return repository that times calls before passing them on
+     */
+    public static <T> T timedRepository(Class<T> type, T repository, String name) {
+        final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+        final Map<Method, Counter> failures = new ConcurrentHashMap<>();
+
+        final Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return invoke(method, repository, args);
+            }
+
+            final long start = System.nanoTime();
+            try {
+                return invoke(method, repository, args);
+            } catch (Throwable e) {
+                failures.computeIfAbsent(method, key -> REGISTRY.counter("repository_call_failures_total",
+                        "Repository calls that threw an exception", "repository", name, "method", key.getName()))
+                        .increment();
+                throw e;
+            } finally {
+                timers.computeIfAbsent(method, key -> REGISTRY.timer("repository_call_duration_seconds",
+                        "Time taken by repository calls, including waiting for a database connection",
+                        "repository", name, "method", key.getName()))
+                        .recordSince(start);
+            }
+        });
+
+        return type.cast(proxy);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Holds the metrics of every subsystem of the node, and writes them in the Prometheus text format. Metrics are
+ * identified by name and labels, given as alternating label names and values. Asking for the same metric twice gives
+ * the same instance, so callers can look metrics up where they are used or keep hold of them.
+ */
+public class MetricsRegistry {
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        HISTOGRAM("histogram");
+
+        private final String exposition;
+
+        Type(String exposition) {
+            this.exposition = exposition;
+        }
+    }
+
+    /**
+     * Metrics sharing a name, by the labels they were registered with
+     */
+    private static class Family {
+        private final Type type;
+        private final String help;
+        private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+        private Family(Type type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param name   metric name, ending in _total by convention
+     * @param help   description of what is counted
+     * @param labels alternating label names and values
+     * @return the counter with that name and labels
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, Type.COUNTER, help).metrics
+                .computeIfAbsent(formatLabels(labels), key -> new Counter());
+    }
+
+    /**
+     * @param name   metric name, ending in _seconds by convention
+     * @param help   description of what is timed
+     * @param labels alternating label names and values
+     * @return the timer with that name and labels
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return (Timer) family(name, Type.HISTOGRAM, help).metrics
+                .computeIfAbsent(formatLabels(labels), key -> new Timer());
+    }
+
+    /**
+     * Registers a value that is read each time the metrics are exported, replacing any registered before with the
+     * same name and labels
+     *
+     * @param name   metric name
+     * @param help   description of the value
+     * @param value  reads the current value
+     * @param labels alternating label names and values
+     */
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, Type.GAUGE, help).metrics.put(formatLabels(labels), value);
+    }
+
+    private Family family(String name, Type type, String help) {
+        final Family family = families.computeIfAbsent(name, key -> new Family(type, help));
+        if (family.type != type) {
+            throw new IllegalArgumentException(String.format("Metric %s is already registered as a %s", name, family.type.exposition));
+        }
+        return family;
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format
+     */
+    public String scrape() {
+        final StringBuilder builder = new StringBuilder();
+
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            final String name = entry.getKey();
+            final Family family = entry.getValue();
+
+            builder.append("# HELP ").append(name).append(' ').append(escapeHelp(family.help)).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(family.type.exposition).append('\n');
+
+            for (Map.Entry<String, Object> metric : family.metrics.entrySet()) {
+                final String labels = metric.getKey();
+                switch (family.type) {
+                    case COUNTER:
+                        appendSample(builder, name, labels, ((Counter) metric.getValue()).get());
+                        break;
+                    case GAUGE:
+                        appendSample(builder, name, labels, ((DoubleSupplier) metric.getValue()).getAsDouble());
+                        break;
+                    case HISTOGRAM:
+                        appendHistogram(builder, name, labels, (Timer) metric.getValue());
+                        break;
+                }
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static void appendHistogram(StringBuilder builder, String name, String labels, Timer timer) {
+        final String bucketPrefix = labels.isEmpty() ? "" : labels + ",";
+        for (int i = 0; i < Timer.BUCKET_BOUNDS.length; i++) {
+            appendSample(builder, name + "_bucket", bucketPrefix + "le=\"" + Timer.BUCKET_BOUNDS[i] + "\"",
+                    timer.getCumulativeCount(i));
+        }
+        appendSample(builder, name + "_bucket", bucketPrefix + "le=\"+Inf\"",
+                timer.getCumulativeCount(Timer.BUCKET_BOUNDS.length));
+        appendSample(builder, name + "_sum", labels, timer.getTotalSeconds());
+        appendSample(builder, name + "_count", labels, timer.getCount());
+    }
+
+    private static void appendSample(StringBuilder builder, String name, String labels, double value) {
+        builder.append(name);
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+        builder.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            builder.append((long) value);
+        } else {
+            builder.append(value);
+        }
+        builder.append('\n');
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs");
+        }
+
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) builder.append(',');
+            builder.append(labels[i]).append("=\"").append(escapeLabelValue(labels[i + 1])).append('"');
+        }
+        return builder.toString();
+    }
+
+    private static String escapeLabelValue(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
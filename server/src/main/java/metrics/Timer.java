@@ -0,0 +1,84 @@
+package metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long something takes, counting each duration into a fixed set of buckets so that the distribution can
+ * be exported as a Prometheus histogram. Recording never locks.
+ */
+public class Timer {
+
+    /**
+     * Upper bounds of the buckets in seconds, from a millisecond up to ten seconds
+     */
+    static final double[] BUCKET_BOUNDS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10};
+
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = (long) (BUCKET_BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Number of durations in each bucket, with the last for durations above every bound
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    Timer() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param duration how long it took
+     * @param unit     unit of the duration
+     */
+    public void record(long duration, TimeUnit unit) {
+        final long nanos = Math.max(0, unit.toNanos(duration));
+
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @param startNanos value of {@link System#nanoTime()} when it began
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return total of all durations in seconds
+     */
+    public double getTotalSeconds() {
+        return totalNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @param bucket index of bucket, where {@link #BUCKET_BOUNDS}.length is the bucket above every bound
+     * @return number of durations in that bucket or any below it
+     */
+    long getCumulativeCount(int bucket) {
+        long cumulative = 0;
+        for (int i = 0; i <= bucket; i++) {
+            cumulative += buckets[i].sum();
+        }
+        return cumulative;
+    }
+}
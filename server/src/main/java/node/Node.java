@@ -2,60 +2,145 @@ package node;
 
 import config.Configuration;
 import node.clientmessaging.SocketChatServer;
+import node.clientmessaging.messages.ChatMessage;
+import node.clientmessaging.repositories.MessageRepository;
 import node.jdbc.MessagingDatabaseConnection;
+import node.jdbc.PooledConnectionProvider;
 import node.jdbc.RingDatabaseConnection;
+import node.ringrepository.CachingRingRepository;
 import node.ringrepository.VirtualNode;
-import node.ringrepository.RingRepository;
 import logging.LoggerFactory;
+import metrics.Metrics;
+import metrics.MetricsRegistry;
+import metrics.PrometheusExporter;
+import node.clientmessaging.repositories.UserGroupRepository;
+import node.ringrepository.RingRepository;
+import node.nodemessaging.CarriedMessage;
 import node.nodemessaging.Message;
+import node.nodemessaging.MessageCodec;
 import node.nodemessaging.MessageType;
 import node.nodemessaging.SuccessorMessage;
+import node.nodemessaging.TokenMessage;
 import node.nodemessaging.election.ElectionMessageHeader;
 import node.clientmessaging.ChatServer;
 import node.electionhandlers.*;
+import node.holdpolicies.AdaptiveHoldPolicy;
+import node.holdpolicies.FixedHoldPolicy;
+import node.holdpolicies.TokenHoldPolicy;
+import node.sockets.FrameReader;
+import node.sockets.ReadOutcome;
+import node.sockets.ReadResult;
 import node.sockets.UDPSocket;
+import util.TaskExecutors;
 import util.Token;
 
-import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.concurrent.*;
 import java.util.logging.Logger;
 
-import static java.lang.Thread.sleep;
 import static node.nodemessaging.MessageType.SUCCESSOR;
 
 
 public class Node {
 
-    private static final int TOKEN_HOLD_TIME_SECS = 3;
+    private static final long DELIVERED_CLEANUP_INTERVAL_SECS = 30;
+    private static final long TOKEN_MONITOR_INTERVAL_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10000;
+    private static final long FORWARDER_POLL_MILLIS = 100;
+    private static final long SUCCESSOR_WAIT_MILLIS = 1000;
 
     private final Logger logger = LoggerFactory.getLogger();
+    private final MetricsRegistry metrics = Metrics.getRegistry();
     private final Configuration config;
     private final ExecutorService executorService;
-    private final RingRepository ringRepository;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final PooledConnectionProvider connectionPool;
+    private final CachingRingRepository ringRepository;
+
+    /**
+     * Reads the ring straight from the database, for elections, which must see every node that has joined
+     */
+    private final RingRepository uncachedRingRepository;
     private final RingCommunicationHandler ringComms;
+    private final MessageRepository messageRepository;
     private final ChatServer chatServer;
     private final UDPSocket udpSocket;
+    private final TokenHoldPolicy holdPolicy;
+    private PrometheusExporter metricsExporter;
 
-    private final BlockingQueue<Token> usableTokenQueue = new ArrayBlockingQueue<>(1);
-    private final BlockingQueue<Token> forwardableTokenQueue = new ArrayBlockingQueue<>(1);
+    /**
+     * Tokens waiting to be worked with by the main thread. There is one token for each partition of the message
+     * queue, so it has room for every token.
+     */
+    private final BlockingQueue<Token> usableTokenQueue;
+
+    /**
+     * Tokens waiting to be sent on to the successor by the forwarding thread. A token that could not be sent goes
+     * back on the front, so tokens are still sent in the order they were released.
+     */
+    private final BlockingDeque<Token> forwardableTokenQueue = new LinkedBlockingDeque<>();
+
+    private final TokenMonitor tokenMonitor;
+    private final ShutdownController shutdownController = new ShutdownController();
     private final Object successorConnectedNotifier = new Object();
 
+    /**
+     * Number of successor messages received, guarded by {@link #successorConnectedNotifier}, so that waiting for a
+     * new successor is not fooled by a spurious wake up or by a notify sent before the wait began
+     */
+    private long successorUpdates = 0;
+
+    /**
+     * Set when another thread finds the successor has failed. Only the forwarding thread repairs the ring, so that a
+     * single failure leads to a single successor request. Guarded by {@link #recoveryLock}, along with the number of
+     * repairs completed, which threads wait on to know the repair is done.
+     */
+    private final Object recoveryLock = new Object();
+    private boolean successorLost = false;
+    private long recoveriesCompleted = 0;
+
+    /**
+     * Whether the main thread is waiting for a token, and so can be interrupted to stop it. It is not interrupted
+     * while holding a token, so that the database and client connections are not interrupted part way through.
+     */
+    private final Object tokenWaitLock = new Object();
+    private boolean waitingForToken = false;
+
     private int coordinatorId = 0;
     private boolean lostCoordinator = false;
     private ElectionHandler currentElectionHandler;
 
+    /**
+     * When this node last received the token for each partition, and when it joined the election in progress, in
+     * {@link System#nanoTime()}
+     */
+    private final long[] lastTokenReceivedAtNanos;
+    private boolean timingElection = false;
+    private long electionStartedAtNanos;
+
     public Node(Configuration config) throws Exception {
         this.config = config;
-        this.executorService = Executors.newCachedThreadPool();
+        this.usableTokenQueue = new ArrayBlockingQueue<>(config.getTokenCount());
+        this.tokenMonitor = new TokenMonitor(config.getTokenCount(), config.getTokenTimeoutMillis(),
+                config.getHoldMillis());
+        this.lastTokenReceivedAtNanos = new long[config.getTokenCount()];
+        this.executorService = TaskExecutors.newTaskExecutor(config.getThreadMode());
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
 
-        final RingDatabaseConnection ringDatabaseConnection = new RingDatabaseConnection(config.getListFilePath(), config.shouldDropEverything());
+        this.connectionPool = createConnectionPool(config);
+        registerPoolMetrics();
+
+        final RingDatabaseConnection ringDatabaseConnection = new RingDatabaseConnection(connectionPool, config.getListFilePath(), config.shouldDropEverything());
         ringDatabaseConnection.initialize();
 
-        this.ringRepository = ringDatabaseConnection;
+        this.uncachedRingRepository = Metrics.timedRepository(RingRepository.class, ringDatabaseConnection, "ring");
+        this.ringRepository = new CachingRingRepository(uncachedRingRepository);
 
         final List<VirtualNode> allNodes = this.ringRepository.getAllNodes();
         final VirtualNode thisNode = allNodes.stream()
@@ -66,18 +151,79 @@ public class Node {
 
         final AddressTranslator addressTranslator = new AddressTranslator(allNodes);
         this.udpSocket = new UDPSocket(addressTranslator, config.getNodeId());
-        this.ringComms = new RingCommunicationHandler(config.getNodeId(), addressTranslator, executorService);
+        this.ringComms = new RingCommunicationHandler(config.getNodeId(), addressTranslator, executorService, config.getRingTransport());
 
-        final MessagingDatabaseConnection messagingDatabaseConnection = new MessagingDatabaseConnection(config.shouldDropEverything());
+        final MessagingDatabaseConnection messagingDatabaseConnection = new MessagingDatabaseConnection(connectionPool, config.shouldDropEverything());
         messagingDatabaseConnection.initialize();
-        this.chatServer = new SocketChatServer(thisNode.getAddress(), thisNode.getClientPort(), messagingDatabaseConnection, messagingDatabaseConnection);
+        this.messageRepository = Metrics.timedRepository(MessageRepository.class, messagingDatabaseConnection, "message");
+        final UserGroupRepository userGroupRepository =
+                Metrics.timedRepository(UserGroupRepository.class, messagingDatabaseConnection, "user_group");
+        this.chatServer = new SocketChatServer(thisNode.getAddress(), thisNode.getClientPort(), config.getMaxClients(),
+                config.getChatTransport(), config.getThreadMode(), config.getOutboundQueueCapacity(), config.getOverflowPolicy(),
+                config.getWriteMode(), config.getTokenCount(), messageRepository, userGroupRepository);
+
+        metrics.gauge("chat_connected_clients", "Clients connected to this node", chatServer::getNumberOfClients);
+        metrics.gauge("chat_outgoing_messages", "Messages from clients waiting to be written to the message queue",
+                chatServer::getNumberOfOutgoingMessages);
+
+        this.holdPolicy = createHoldPolicy(config);
 
         this.initializeCoordinator(allNodes);
     }
 
+    /**
+     * Creates a pool of connections to the storage backend chosen in the configuration
+     *
+     * @param config node configuration
+     * @return pool of connections to the configured database
+     */
+    private static PooledConnectionProvider createConnectionPool(Configuration config) {
+        switch (config.getStorageBackend()) {
+            case EMBEDDED:
+                return PooledConnectionProvider.forEmbedded(config.getStoragePath(), config.getConnectionPoolSize());
+            case MARIADB:
+            default:
+                return PooledConnectionProvider.forMariaDb(config.getConnectionPoolSize());
+        }
+    }
+
+    /**
+     * Exports the state of the database connection pool, read from its statistics each time metrics are scraped
+     */
+    private void registerPoolMetrics() {
+        metrics.gauge("db_pool_active_connections", "Database connections currently borrowed",
+                () -> connectionPool.getStatistics().getActiveConnections());
+        metrics.gauge("db_pool_idle_connections", "Database connections waiting in the pool",
+                () -> connectionPool.getStatistics().getIdleConnections());
+        metrics.gauge("db_pool_borrow_timeouts", "Times a connection could not be borrowed before the timeout",
+                () -> connectionPool.getStatistics().getBorrowTimeouts());
+        metrics.gauge("db_pool_wait_seconds", "Total time spent waiting to borrow a database connection",
+                () -> connectionPool.getStatistics().getTotalWaitMillis() / 1000.0);
+        metrics.gauge("db_pool_statement_cache_hits", "Statements reused from the cache of a pooled connection",
+                () -> connectionPool.getStatistics().getStatementCacheHits());
+        metrics.gauge("db_pool_statement_cache_misses", "Statements prepared because the cache did not have them",
+                () -> connectionPool.getStatistics().getStatementCacheMisses());
+    }
+
+    /**
+     * Creates the token hold policy chosen in the configuration
+     *
+     * @param config node configuration
+     * @return the configured hold policy
+     */
+    private static TokenHoldPolicy createHoldPolicy(Configuration config) {
+        switch (config.getHoldPolicy()) {
+            case ADAPTIVE:
+                return new AdaptiveHoldPolicy(config.getHoldMillis());
+            case FIXED:
+            default:
+                return new FixedHoldPolicy(config.getHoldMillis());
+        }
+    }
+
     /**
      * Initializes the coordinator ID to the assigned node in the database,
-     * or this node if none are currently assigned.
+     * or this node if none are currently assigned. The coordinator creates a token for each partition.
      *
      * @param allNodes list of nodes in database
      */
@@ -95,7 +241,9 @@ public class Node {
             // ring is started and set as coordinator before more join
             ringRepository.updateCoordinator(config.getNodeId());
             coordinatorId = config.getNodeId();
-            forwardableTokenQueue.add(new Token());
+            for (int partition = 0; partition < config.getTokenCount(); partition++) {
+                forwardableTokenQueue.add(tokenMonitor.newToken(partition));
+            }
         }
     }
 
@@ -104,13 +252,12 @@ public class Node {
     }
 
     /**
-     * Checks for the existince of a directory called 'killswitch' in the users home directory.
+     * Asks the node to stop, as if the killswitch had been created
      *
-     * @return True if the directory '~/killswitch' exists.
+     * @param reason description of what requested shutdown, for the log
      */
-    private boolean killswitch() {
-        final String killswitch = System.getProperty("user.home") + "/killswitch";
-        return new File(killswitch).exists();
+    public void requestShutdown(String reason) {
+        shutdownController.requestShutdown(reason);
     }
 
     /**
@@ -127,9 +274,17 @@ public class Node {
         ringComms.cleanup();
         chatServer.cleanup();
 
+        logger.info(String.format("Database connection pool: %s", connectionPool.getStatistics()));
+        connectionPool.close();
+
+        if (metricsExporter != null)
+            metricsExporter.stop();
+
         executorService.shutdown();
+        scheduledExecutorService.shutdown();
 
         logger.warning("Finished shutting down node.");
+        shutdownController.markTerminated();
     }
 
     /**
@@ -140,11 +295,27 @@ public class Node {
     public void start() throws IOException {
         logger.info(String.format("Initializing node with configuration: %s", config.toString()));
 
+        // Stop when '~/killswitch' is created, the JVM is stopped, or another node asks
+        final Thread mainThread = Thread.currentThread();
+        shutdownController.onShutdown(() -> {
+            synchronized (tokenWaitLock) {
+                if (waitingForToken) mainThread.interrupt();
+            }
+        });
+        shutdownController.watchKillswitch(Paths.get(System.getProperty("user.home"), "killswitch"));
+        shutdownController.installShutdownHook(SHUTDOWN_TIMEOUT_MILLIS);
+
+        if (config.getMetricsPort() > 0) {
+            metricsExporter = new PrometheusExporter(metrics, new InetSocketAddress("127.0.0.1", config.getMetricsPort()));
+            metricsExporter.start();
+            logger.info(String.format("Serving metrics on port %d", metricsExporter.getPort()));
+        }
+
         joinRing();
 
         // Begin token handler on another thread
         executorService.submit((Callable<Void>) () -> {
-            while (!killswitch())
+            while (!shutdownController.isShutdownRequested())
                 try {
                     handleRingMessages();
                 } catch (Exception e) {
@@ -155,9 +326,39 @@ public class Node {
             return null;
         });
 
+        // Track acknowledgements of forwarded tokens, sending them again if needed
+        executorService.submit((Callable<Void>) () -> {
+            while (!shutdownController.isShutdownRequested()) {
+                try {
+                    handleUnacknowledgedTokens(ringComms.receiveTokenAcks());
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    logger.warning(e.getMessage());
+                }
+            }
+            return null;
+        });
+
+        // Send released tokens on to the successor, repairing the ring if it has been broken
+        executorService.submit((Callable<Void>) () -> {
+            while (!shutdownController.isShutdownRequested()) {
+                try {
+                    forwardNextToken();
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    logger.warning(e.getMessage());
+                }
+            }
+            return null;
+        });
+
         // Handle any coordination updates
         executorService.submit((Callable<Void>) () -> {
-            while (!killswitch()) {
+            while (!shutdownController.isShutdownRequested()) {
                 try {
                     handleCoordinationMessages();
                 } catch (Exception e) {
@@ -171,63 +372,271 @@ public class Node {
         // Begin accepting client connections
         executorService.submit(this.chatServer);
 
+        // Periodically clear out messages that every recipient has taken
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::removeDeliveredMessages,
+                DELIVERED_CLEANUP_INTERVAL_SECS,
+                DELIVERED_CLEANUP_INTERVAL_SECS,
+                TimeUnit.SECONDS
+        );
+
+        // Replace any token that has been lost along with the node holding it
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::regenerateLostTokens,
+                TOKEN_MONITOR_INTERVAL_MILLIS,
+                TOKEN_MONITOR_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS
+        );
+
         // Manage client messages and mutual exclusion on main thread
-        while (!killswitch()) {
+        while (!shutdownController.isShutdownRequested()) {
+            final Token token;
             try {
-                final Token token = usableTokenQueue.take();
-                logger.info("Holding token.");
-                manageChatServer();
-                forwardableTokenQueue.put(token);
+                token = awaitToken();
             } catch (InterruptedException e) {
                 break;
             }
+            holdToken(token);
         }
 
         end();
     }
 
     /**
-     * Either:
-     * Chat server receives one message for one of its clients.
-     * Chat server sends one message from one of its clients.
+     * Waits for a token to work with, in a way that shutdown can interrupt
+     *
+     * @return the next token for the main thread
+     * @throws InterruptedException if shutdown was requested while waiting
+     */
+    private Token awaitToken() throws InterruptedException {
+        synchronized (tokenWaitLock) {
+            if (shutdownController.isShutdownRequested()) throw new InterruptedException();
+            waitingForToken = true;
+        }
+
+        try {
+            return usableTokenQueue.take();
+        } finally {
+            synchronized (tokenWaitLock) {
+                waitingForToken = false;
+                // An interrupt that arrived after the token did is not needed, the loop checks for shutdown
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Deletes messages with no recipients left. Only done by the coordinator, as one pass covers the whole ring.
+     */
+    private void removeDeliveredMessages() {
+        if (!isCoordinator()) return;
+
+        try {
+            final int removed = messageRepository.removeDeliveredMessages();
+            if (removed > 0) {
+                logger.info(String.format("Removed %d delivered messages.", removed));
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to remove delivered messages: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces tokens that the coordinator has not seen within the timeout, which is at least as long as a rotation
+     * of the ring. Only done by the coordinator, as every token passes it once on each trip around the ring. The new
+     * tokens are of a newer generation, so if the old token turns up after all it is ignored by every node that has
+     * seen its replacement.
+     */
+    private void regenerateLostTokens() {
+        if (!isCoordinator()) return;
+
+        final int ringSize = ringRepository.getSizeOfRing();
+        for (Token token : tokenMonitor.regenerateLostTokens(ringSize)) {
+            logger.warning(String.format("Token for partition %d has not been seen in %d ms, replacing it with generation %d",
+                    token.getPartition(), tokenMonitor.getTimeoutMillis(ringSize), token.getGeneration()));
+            if (!usableTokenQueue.offer(token)) {
+                logger.warning("No room for replacement token");
+            }
+        }
+    }
+
+    /**
+     * Works with the token for as long as the hold policy allows, then schedules it to be passed on once the policy
+     * allows it to be released. Waiting to release it is left to the scheduler so that any other tokens this node
+     * receives in the meantime can be worked with straight away.
+     *
+     * @param token token received from predecessor
+     */
+    private void holdToken(Token token) {
+        final long heldSince = System.currentTimeMillis();
+        final long heldSinceNanos = System.nanoTime();
+        final int partition = token.getPartition();
+        logger.info(() -> String.format("Holding token for partition %d.", partition));
+
+        final List<CarriedMessage> carriedMessages = deliverCarriedMessages(token);
+        for (ChatMessage message : chatServer.takeMessagesToCarry(partition,
+                config.getCarriedMessageLimit() - carriedMessages.size(), carriedBytesLeft(token, carriedMessages))) {
+            carriedMessages.add(new CarriedMessage(config.getNodeId(), message));
+        }
+
+        do {
+            manageChatServer(partition);
+        } while (holdPolicy.shouldKeepWorking(System.currentTimeMillis() - heldSince,
+                chatServer.hasPendingWork(partition)));
+
+        metrics.timer("token_hold_seconds", "Time spent working with a token before releasing it",
+                "partition", Integer.toString(partition)).recordSince(heldSinceNanos);
+
+        final Token released = new Token(partition, token.getGeneration(), token.getSequenceNumber(), carriedMessages);
+        scheduledExecutorService.schedule(
+                () -> releaseToken(released),
+                holdPolicy.getReleaseDelayMillis(System.currentTimeMillis() - heldSince),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Works out how many more bytes of carried messages the token can take, so that it stays small enough for the
+     * successor to accept once its sequence number has been assigned
+     *
+     * @param token   token being held
+     * @param carried messages the token is already carrying on
+     * @return number of bytes left for messages from this node's clients
+     */
+    private int carriedBytesLeft(Token token, List<CarriedMessage> carried) {
+        final TokenMessage largest = new TokenMessage(token.getPartition(), token.getGeneration(), Long.MAX_VALUE, carried);
+        final int size = MessageCodec.encodedSize(new Message(MessageType.TOKEN, config.getNodeId(), largest));
+
+        // Leave room for the count of carried messages to grow
+        return Math.max(0, FrameReader.MAX_FRAME_SIZE - size - MessageCodec.MAX_VAR_INT_SIZE);
+    }
+
+    /**
+     * Forwards the messages carried by the token to the clients of this node they are for. Messages that have been
+     * all the way around the ring without finding their recipient are added to the message queue instead, to be
+     * taken once the recipient logs in.
+     *
+     * @param token token received from predecessor
+     * @return the messages the token should carry on
+     */
+    private List<CarriedMessage> deliverCarriedMessages(Token token) {
+        final List<CarriedMessage> stillCarried = new ArrayList<>();
+        final List<ChatMessage> undelivered = new ArrayList<>();
+
+        for (CarriedMessage carried : token.getCarriedMessages()) {
+            if (chatServer.deliverCarriedMessage(carried.getMessage())) continue;
+
+            if (hasBeenAroundRing(carried)) {
+                undelivered.add(carried.getMessage());
+            } else {
+                stillCarried.add(carried);
+            }
+        }
+
+        if (!undelivered.isEmpty()) {
+            try {
+                messageRepository.sendMessages(undelivered);
+            } catch (IOException e) {
+                logger.warning(String.format("Failed to store %d carried messages: %s", undelivered.size(), e.getMessage()));
+                undelivered.forEach(message -> stillCarried.add(new CarriedMessage(config.getNodeId(), message)));
+            }
+        }
+
+        return stillCarried;
+    }
+
+    /**
+     * @param carried message carried by a token
+     * @return true if the message is back at the node that put it on the token, or if that node has left the ring
+     * and so will never see it again
+     */
+    private boolean hasBeenAroundRing(CarriedMessage carried) {
+        return carried.getOriginId() == config.getNodeId() || !ringRepository.getNode(carried.getOriginId())
+                .flatMap(VirtualNode::getSuccessorId)
+                .isPresent();
+    }
+
+    /**
+     * Chat server receives messages for its clients, then sends messages from its clients, until either there is
+     * nothing left to move in the partition or the configured budget for this token visit is spent.
+     *
+     * @param partition partition owned by the token being held
+     */
+    private void manageChatServer(int partition) {
+        final int moved = chatServer.transferMessages(config.getMessageBudget(), partition);
+        logger.info(() -> String.format("Moved %d messages while holding token for partition %d.", moved, partition));
+    }
+
+    /**
+     * Hands the released token to the forwarding thread, so that the scheduler is never held up by the successor
+     *
+     * @param token token that has been released
+     */
+    private void releaseToken(Token token) {
+        forwardableTokenQueue.add(token);
+    }
+
+    /**
+     * Sends the next token waiting in the forwarding queue to the successor. The queue holds released tokens, new
+     * tokens created by the coordinator, and tokens that could not be sent before the successor was replaced. The
+     * token is not waited on to be acknowledged, which is tracked separately.
      */
-    private void manageChatServer() {
-        if (!chatServer.receiveMessage())
-            chatServer.sendMessage();
+    private void forwardNextToken() throws IOException, InterruptedException {
+        final boolean recover;
+        synchronized (recoveryLock) {
+            recover = successorLost;
+        }
+        if (recover) {
+            handleLostSuccessor();
+            return;
+        }
+
+        final Token token = forwardableTokenQueue.poll(FORWARDER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (token == null) return;
+
+        if (ringComms.forwardToken(token)) {
+            logger.info("Token forwarded");
+            return;
+        }
+
+        logger.warning("Lost connection to successor, returning token to forwarding queue");
+        forwardableTokenQueue.putFirst(token);
+        handleLostSuccessor();
     }
 
     /**
      * Handles token passing and election node.nodemessaging
      */
     private void handleRingMessages() throws IOException, InterruptedException {
-        if (!forwardableTokenQueue.isEmpty()) {
-            logger.info("Retrying token send");
-            forwardableTokenQueue.take();
-            forwardToken();
-        }
+        final ReadResult result = ringComms.receiveFromPredecessor();
 
-        final Message message = ringComms.receiveFromPredecessor();
+        if (result.getOutcome() == ReadOutcome.TIMEOUT) {
+            return;
+        }
 
-        if (message == null) {
+        if (result.getOutcome() == ReadOutcome.CLOSED) {
             logger.info("Lost connection to predecessor");
 
+            // A node joining as this node's predecessor does not tell this node, so the cached ring may be stale
+            ringRepository.invalidate();
             if (!ringComms.justDisconnectedFromSelf() && ringRepository.getSizeOfRing() == 2) {
                 // COUNT == 2 occurs when:
                 // * connected to self and new node joins,
                 // * ring contains me and other node, and that other node has failed
                 // In first case, we just want to listen for a new predecessor,
                 // in the second we need to trigger self connection
-                handleLostSuccessor();
+                reportLostSuccessorAndWait();
             } else {
                 ringComms.updatePredecessor();
             }
         } else {
+            final Message message = result.getMessage();
             switch (message.getType()) {
                 case COORDINATOR_ELECTION:
                     handleElectionMessage(message);
                     break;
                 case TOKEN:
-                    handleToken();
+                    handleToken(message);
                     break;
             }
         }
@@ -240,6 +649,8 @@ public class Node {
      */
     private void handleElectionMessage(Message message) throws IOException {
         final ElectionMethod electionMethod = message.getPayload(ElectionMessageHeader.class).getElectionMethod();
+        metrics.counter("election_messages_total", "Election messages received",
+                "method", electionMethod.name()).increment();
 
         // Assign election handler if not already previously done so, or reassign to handle this new election
         if (currentElectionHandler == null || currentElectionHandler.getMethodName() != electionMethod) {
@@ -247,9 +658,11 @@ public class Node {
         }
 
         currentElectionHandler.handleMessage(message);
+        timeElection();
 
         // Check if an election result has been obtained from the previous message
         if (currentElectionHandler.electionConcluded()) {
+            ringRepository.invalidate();
             coordinatorId = currentElectionHandler.getResult();
             logger.info(String.format("Election concluded, new coordinator: %d", coordinatorId));
 
@@ -273,7 +686,7 @@ public class Node {
                 currentElectionHandler = new ChangeRobertsElectionHandler(ringComms, config.getNodeId());
                 break;
             case BULLY:
-                currentElectionHandler = new BullyElectionHandler(udpSocket, config.getNodeId(), executorService, ringRepository);
+                currentElectionHandler = new BullyElectionHandler(udpSocket, config.getNodeId(), executorService, uncachedRingRepository);
                 break;
             default:
                 logger.warning("Unknown election type.");
@@ -285,57 +698,143 @@ public class Node {
      * Begins the election based on the configured election method
      */
     private void beginElection() throws IOException {
+        // The ring may have changed since it was cached if this node was not the one coordinating it
+        ringRepository.invalidate();
         assignHandlerForMethod(config.getElectionMethod());
         currentElectionHandler.startElection();
+        timeElection();
     }
 
     /**
-     * Acknowledges token message, and holds onto it until the consuming thread returns it.
+     * Starts timing the election once this node's handler is taking part in one, and records how long it took once
+     * the handler has a result
      */
-    private void handleToken() throws IOException, InterruptedException {
+    private void timeElection() {
+        if (currentElectionHandler == null) return;
+
+        if (!currentElectionHandler.electionConcluded()) {
+            if (!timingElection) {
+                timingElection = true;
+                electionStartedAtNanos = System.nanoTime();
+            }
+        } else if (timingElection) {
+            timingElection = false;
+            metrics.timer("election_duration_seconds", "Time from this node taking part in an election to its result",
+                    "method", currentElectionHandler.getMethodName().name()).recordSince(electionStartedAtNanos);
+        }
+    }
+
+    /**
+     * Acknowledges token message, and hands it to the main thread to work with. A token that is not newer than the
+     * last one received for its partition is either a copy of a token already received or from a generation that has
+     * since been replaced, and is only acknowledged. Tokens for partitions this node does not know about, because it
+     * was configured with fewer tokens than the coordinator, are passed straight on.
+     *
+     * @param message token message
+     */
+    private void handleToken(Message message) throws IOException, InterruptedException {
+        final TokenMessage tokenMessage = message.getPayload(TokenMessage.class);
+        if (tokenMessage == null) {
+            logger.warning("Received token without partition");
+            return;
+        }
+
         try {
-            ringComms.sendTokenAck();
+            ringComms.sendTokenAck(tokenMessage);
         } catch (IOException e) {
             logger.warning("Failed to send ack, assuming predecessor has failed");
             ringComms.updatePredecessor();
-        } finally {
-            usableTokenQueue.put(new Token());
         }
 
-        sleep(TOKEN_HOLD_TIME_SECS * 1000);
+        final int partition = tokenMessage.getPartition();
+        final Token token = new Token(partition, tokenMessage.getGeneration(), tokenMessage.getSequenceNumber(),
+                tokenMessage.getCarriedMessages());
 
-        forwardableTokenQueue.take();
-        forwardToken();
+        if (partition >= config.getTokenCount()) {
+            logger.warning(String.format("Received token for unknown partition %d", partition));
+            forwardableTokenQueue.put(token);
+        } else if (!tokenMonitor.accept(token)) {
+            logger.info(String.format("Ignoring duplicate or stale token for partition %d", partition));
+        } else {
+            recordRotation(partition);
+            usableTokenQueue.put(token);
+        }
     }
 
     /**
-     * Attempts to forward token and handles successor failure if it occurs
+     * Records the time since the token for the partition was last received, which is how long it took to go around
+     * the ring
      *
-     * @throws IOException
-     * @throws InterruptedException
+     * @param partition partition of the token just received
      */
-    private void forwardToken() throws IOException, InterruptedException {
-        boolean successful = ringComms.forwardToken();
+    private void recordRotation(int partition) {
+        final long now = System.nanoTime();
+        if (lastTokenReceivedAtNanos[partition] != 0) {
+            metrics.timer("token_rotation_seconds", "Time taken by a token to go around the ring",
+                    "partition", Integer.toString(partition)).recordSince(lastTokenReceivedAtNanos[partition]);
+        }
+        lastTokenReceivedAtNanos[partition] = now;
+    }
 
-        if (!successful) {
-            logger.warning("Lost connection to successor");
-            handleLostSuccessor();
-            logger.info("Returning token to forwarding queue");
-            forwardableTokenQueue.put(new Token());
-        } else {
-            logger.info("Token forwarded");
+    /**
+     * Treats tokens the successor never acknowledged as a sign that it has failed, and sends them again once a new
+     * successor is connected
+     *
+     * @param tokens tokens that were not acknowledged
+     */
+    private void handleUnacknowledgedTokens(List<Token> tokens) throws IOException, InterruptedException {
+        if (tokens.isEmpty()) return;
+
+        logger.warning("Token was not acknowledged, assuming successor has failed");
+        for (Token token : tokens) {
+            forwardableTokenQueue.put(token);
+        }
+        reportLostSuccessor();
+    }
+
+    /**
+     * Asks the forwarding thread to repair the ring, if it is not doing so already
+     */
+    private void reportLostSuccessor() {
+        synchronized (recoveryLock) {
+            successorLost = true;
+        }
+    }
+
+    /**
+     * Asks the forwarding thread to repair the ring, and waits until it has
+     */
+    private void reportLostSuccessorAndWait() throws InterruptedException {
+        synchronized (recoveryLock) {
+            successorLost = true;
+            final long recoveriesBefore = recoveriesCompleted;
+            while (recoveriesCompleted == recoveriesBefore && !shutdownController.isShutdownRequested()) {
+                recoveryLock.wait(SUCCESSOR_WAIT_MILLIS);
+            }
         }
     }
 
     /**
      * Handles a lost successor. If successor was the coordinator, then an election will have to take place first.
-     * Then or otherwise, a new successor will be requested
+     * Then or otherwise, a new successor will be requested. Only called by the forwarding thread, other threads
+     * report the failure with {@link #reportLostSuccessor()}.
      *
      * @throws IOException :(
      */
     private void handleLostSuccessor() throws IOException, InterruptedException {
+        // Tokens sent to the lost successor that it never acknowledged are sent again to its replacement
+        for (Token token : ringComms.takeUnacknowledgedTokens()) {
+            forwardableTokenQueue.put(token);
+        }
+
+        final long updatesBefore;
+        synchronized (successorConnectedNotifier) {
+            updatesBefore = successorUpdates;
+        }
+
         if (ringComms.getSuccessorId() == coordinatorId) {
             // Act as coordinator to and update self to connect to succ(lostCoordinator)
+            ringRepository.invalidate();
             handleSuccessorRequest(config.getNodeId());
             lostCoordinator = true;
         } else {
@@ -345,7 +844,17 @@ public class Node {
 
         // Wait until other thread tells us we're connected again
         synchronized (successorConnectedNotifier) {
-            successorConnectedNotifier.wait();
+            while (successorUpdates == updatesBefore) {
+                if (shutdownController.isShutdownRequested()) return;
+                successorConnectedNotifier.wait(SUCCESSOR_WAIT_MILLIS);
+            }
+        }
+
+        // Any failure reported while repairing was of the successor that has just been replaced
+        synchronized (recoveryLock) {
+            successorLost = false;
+            recoveriesCompleted++;
+            recoveryLock.notifyAll();
         }
 
         if (lostCoordinator) {
@@ -372,14 +881,19 @@ public class Node {
                     }
                     break;
                 case SUCCESSOR:
+                    if (!isCoordinator()) ringRepository.invalidate();
                     handleSuccessorMessage(message);
                     synchronized (successorConnectedNotifier) {
+                        successorUpdates++;
                         successorConnectedNotifier.notifyAll();
                     }
                     break;
                 case COORDINATOR_ELECTION:
                     handleElectionMessage(message);
                     break;
+                case SHUTDOWN:
+                    requestShutdown(String.format("asked by node %d", message.getSrcId()));
+                    break;
             }
         }
     }
@@ -390,29 +904,27 @@ public class Node {
      * @param requestingNodeId id of node requesting successor
      */
     private void handleSuccessorRequest(int requestingNodeId) throws IOException {
-        final List<VirtualNode> ringNodes = ringRepository.getAllNodesWithSuccessors();
+        final Optional<Integer> lostNodeId = ringRepository.getNode(requestingNodeId)
+                .flatMap(VirtualNode::getSuccessorId);
 
-        final Optional<VirtualNode> requestingNode = ringNodes.stream()
-                .filter(nodeRow -> nodeRow.getNodeId() == requestingNodeId)
-                .findFirst();
-
-        if (!requestingNode.isPresent()) {
+        if (!lostNodeId.isPresent()) {
             logger.warning("Node requesting successor is not part of ring?");
             return;
         }
 
-        // Get the id of the node that has failed
-        int lostNodeId = requestingNode.get().getSuccessorId().get();
-
         // Get the id of the node that came after the failing node
-        int successorOfLostNodeId = ringNodes.stream()
-                .filter(nodeRow -> nodeRow.getNodeId() == lostNodeId)
-                .findFirst().get().getSuccessorId().get();
+        final Optional<Integer> successorOfLostNodeId = ringRepository.getNode(lostNodeId.get())
+                .flatMap(VirtualNode::getSuccessorId);
+
+        if (!successorOfLostNodeId.isPresent()) {
+            logger.warning("Failed node is no longer part of ring?");
+            return;
+        }
 
         // Succ(requestingNode) == succ(lostNode)
-        ringRepository.removeFromRing(requestingNodeId, successorOfLostNodeId, lostNodeId);
+        ringRepository.removeFromRing(requestingNodeId, successorOfLostNodeId.get(), lostNodeId.get());
 
-        sendSuccessorMessage(requestingNodeId, successorOfLostNodeId);
+        sendSuccessorMessage(requestingNodeId, successorOfLostNodeId.get());
     }
 
     /**
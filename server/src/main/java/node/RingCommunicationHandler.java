@@ -1,12 +1,26 @@
 package node;
 
 import logging.LoggerFactory;
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
 import node.nodemessaging.Message;
 import node.nodemessaging.MessageType;
+import node.nodemessaging.TokenMessage;
+import node.sockets.BlockingRingSocket;
+import node.sockets.ReadOutcome;
+import node.sockets.ReadResult;
 import node.sockets.RingSocket;
+import node.sockets.RingTransport;
+import node.sockets.SelectorRingSocket;
+import util.Token;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.logging.Logger;
 
@@ -15,60 +29,216 @@ import java.util.logging.Logger;
  */
 public class RingCommunicationHandler {
 
-    private static final int DEFAULT_JITTER = 3;
+    /**
+     * Time to wait for a token to be acknowledged before sending it again, and the number of times it is sent before
+     * the successor is assumed to have failed
+     */
+    private static final long ACK_TIMEOUT_MILLIS = 1000;
+    private static final int MAX_TOKEN_SENDS = 3;
+
+    private static final int ACK_POLL_SECS = 1;
+    private static final long NO_SUCCESSOR_POLL_MILLIS = 100;
 
     private final Logger logger = LoggerFactory.getLogger();
+    private final Timer ackLatency = Metrics.getRegistry().timer("token_ack_latency_seconds",
+            "Time from first sending a token to its acknowledgement");
+    private final Counter ackTimeouts = Metrics.getRegistry().counter("token_ack_timeouts_total",
+            "Times a token was not acknowledged in time");
+    private final Counter unacknowledgedTokensGivenUp = Metrics.getRegistry().counter("token_ack_failures_total",
+            "Tokens given up on after being sent the maximum number of times without being acknowledged");
     private final ExecutorService executorService;
     private final RingSocket ringSocket;
     private final int thisNodeId;
 
+    /**
+     * Tokens sent to the successor that it has not acknowledged yet, by partition
+     */
+    private final Map<Integer, UnacknowledgedToken> unacknowledgedTokens = new ConcurrentHashMap<>();
+
+    /**
+     * Held while reading from the successor, so the connection is not replaced mid read
+     */
+    private final Object successorReadLock = new Object();
+
     private int successorId = 0;
     private boolean disconnectedFromSelf;
 
-    RingCommunicationHandler(int thisNodeId, AddressTranslator addressTranslator, ExecutorService executorService) throws IOException {
-        this.ringSocket = new RingSocket(thisNodeId, addressTranslator);
+    RingCommunicationHandler(int thisNodeId, AddressTranslator addressTranslator, ExecutorService executorService,
+                             RingTransport transport) throws IOException {
+        this.ringSocket = createRingSocket(thisNodeId, addressTranslator, transport);
         this.executorService = executorService;
         this.thisNodeId = thisNodeId;
     }
 
     /**
-     * Waits until an acknowledgement is received for a token
+     * Creates the ring socket for the given transport
      *
-     * @return true if the acknowledgement is received
+     * @param thisNodeId        id of this node
+     * @param addressTranslator translates node ids to addresses
+     * @param transport         transport to use
+     * @return ring socket listening for a predecessor
+     * @throws IOException if unable to listen on this nodes address
+     */
+    private static RingSocket createRingSocket(int thisNodeId, AddressTranslator addressTranslator, RingTransport transport) throws IOException {
+        switch (transport) {
+            case SELECTOR:
+                return new SelectorRingSocket(thisNodeId, addressTranslator);
+            case BLOCKING:
+            default:
+                return new BlockingRingSocket(thisNodeId, addressTranslator);
+        }
+    }
+
+    /**
+     * Token sent to the successor, kept until it is acknowledged so that it can be sent again
      */
-    private boolean ackIsReceived() {
-        logger.info("Waiting on token ACK");
-        final Message tokenAck = ringSocket.receiveFromSuccessor(DEFAULT_JITTER);
-        return tokenAck != null;
+    private static class UnacknowledgedToken {
+        private final Token token;
+        private final Message message;
+        private final long sequenceNumber;
+        private final long firstSentAtNanos = System.nanoTime();
+        private long sentAt = System.currentTimeMillis();
+        private int sends = 1;
+
+        private UnacknowledgedToken(Token token, Message message, long sequenceNumber) {
+            this.token = token;
+            this.message = message;
+            this.sequenceNumber = sequenceNumber;
+        }
     }
 
     /**
-     * Sends token to successor. If node is not its own successor, it will wait for confirmation that token was received
+     * Sends token to successor without waiting for it to be acknowledged. Unless this node is its own successor, the
+     * token is kept until the acknowledgement arrives, and is sent again by {@link #receiveTokenAcks()} if it does not.
      *
-     * @return true if token is forwarded successfully, false otherwise
+     * @param token token to forward, with the sequence number it arrived with
+     * @return true if the token was sent, false if the successor could not be reached
      */
-    public boolean forwardToken() {
-        logger.info("Forwarding token");
-        final Message message = new Message(MessageType.TOKEN, thisNodeId);
+    public synchronized boolean forwardToken(Token token) {
+        final long sequenceNumber = token.getSequenceNumber() + 1;
+        logger.info(() -> String.format("Forwarding token for partition %d (%d) carrying %d messages",
+                token.getPartition(), sequenceNumber, token.getCarriedMessages().size()));
+
+        final Message message = new Message(MessageType.TOKEN, thisNodeId,
+                new TokenMessage(token.getPartition(), token.getGeneration(), sequenceNumber, token.getCarriedMessages()));
+        final UnacknowledgedToken unacknowledged = new UnacknowledgedToken(token, message, sequenceNumber);
 
-        boolean exceptionThrown = false;
+        // Tracked before sending, as the acknowledgement can arrive before this returns
+        unacknowledgedTokens.put(token.getPartition(), unacknowledged);
         try {
             ringSocket.sendToSuccessor(message);
         } catch (IOException e) {
-            exceptionThrown = true;
+            unacknowledgedTokens.remove(token.getPartition(), unacknowledged);
+            return false;
+        }
+
+        if (ringSocket.isClosedLoop()) {
+            unacknowledgedTokens.remove(token.getPartition(), unacknowledged);
+        }
+        return true;
+    }
+
+    /**
+     * Waits a short while for a token acknowledgement from the successor, then sends again any tokens that have not
+     * been acknowledged in time
+     *
+     * @return tokens that were sent the maximum number of times without being acknowledged
+     * @throws InterruptedException if interrupted while waiting for a successor
+     */
+    List<Token> receiveTokenAcks() throws InterruptedException {
+        final ReadResult result;
+        synchronized (successorReadLock) {
+            result = ringSocket.receiveFromSuccessor(ACK_POLL_SECS);
+        }
+
+        if (result.hasMessage() && result.getMessage().getType() == MessageType.TOKEN_ACK) {
+            acknowledge(result.getMessage().getPayload(TokenMessage.class));
+        } else if (result.getOutcome() == ReadOutcome.CLOSED) {
+            Thread.sleep(NO_SUCCESSOR_POLL_MILLIS);
+        }
+
+        return resendUnacknowledgedTokens();
+    }
+
+    /**
+     * Stops tracking the token the acknowledgement is for
+     *
+     * @param acknowledged partition and sequence number of the token that was received
+     */
+    private void acknowledge(TokenMessage acknowledged) {
+        if (acknowledged == null) return;
+
+        unacknowledgedTokens.computeIfPresent(acknowledged.getPartition(), (partition, unacknowledged) -> {
+            if (unacknowledged.token.getGeneration() != acknowledged.getGeneration()
+                    || unacknowledged.sequenceNumber != acknowledged.getSequenceNumber()) {
+                return unacknowledged;
+            }
+
+            ackLatency.recordSince(unacknowledged.firstSentAtNanos);
+            return null;
+        });
+    }
+
+    /**
+     * Sends again the tokens that have not been acknowledged in time. The successor recognises a token it has
+     * already received by its sequence number, so sending it more than once does no harm.
+     *
+     * @return tokens that were sent the maximum number of times without being acknowledged
+     */
+    private synchronized List<Token> resendUnacknowledgedTokens() {
+        final List<Token> lost = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+
+        for (Map.Entry<Integer, UnacknowledgedToken> entry : unacknowledgedTokens.entrySet()) {
+            final UnacknowledgedToken unacknowledged = entry.getValue();
+            if (now - unacknowledged.sentAt < ACK_TIMEOUT_MILLIS) continue;
+            ackTimeouts.increment();
+
+            if (unacknowledged.sends >= MAX_TOKEN_SENDS) {
+                logger.info(String.format("No token ACK received for partition %d", entry.getKey()));
+                unacknowledgedTokens.remove(entry.getKey(), unacknowledged);
+                unacknowledgedTokensGivenUp.increment();
+                lost.add(unacknowledged.token);
+                continue;
+            }
+
+            logger.info(String.format("Resending token for partition %d", entry.getKey()));
+            unacknowledged.sends++;
+            unacknowledged.sentAt = now;
+            try {
+                ringSocket.sendToSuccessor(unacknowledged.message);
+            } catch (IOException e) {
+                logger.info("Failed to resend token: " + e.getMessage());
+            }
         }
 
-        return ringSocket.isClosedLoop() || (!exceptionThrown && ackIsReceived());
+        return lost;
+    }
+
+    /**
+     * Stops tracking the tokens sent to the successor that have not been acknowledged yet
+     *
+     * @return tokens sent to the successor that it has not acknowledged
+     */
+    synchronized List<Token> takeUnacknowledgedTokens() {
+        final List<Token> tokens = new ArrayList<>();
+        for (UnacknowledgedToken unacknowledged : unacknowledgedTokens.values()) {
+            tokens.add(unacknowledged.token);
+        }
+        unacknowledgedTokens.clear();
+        return tokens;
     }
 
     /**
      * Sends token acknowledgement to predecessor
      *
+     * @param token the token being acknowledged
      * @throws IOException if unable to send to predecessor
      */
-    public void sendTokenAck() throws IOException {
+    public void sendTokenAck(TokenMessage token) throws IOException {
         logger.info("Sending token ACK");
-        final Message tokenAck = new Message(MessageType.TOKEN_ACK, thisNodeId);
+        final Message tokenAck = new Message(MessageType.TOKEN_ACK, thisNodeId,
+                new TokenMessage(token.getPartition(), token.getGeneration(), token.getSequenceNumber()));
         this.ringSocket.sendToPredeccesor(tokenAck);
     }
 
@@ -82,19 +252,33 @@ public class RingCommunicationHandler {
     void updateSuccessor(int successor, boolean initial) throws IOException {
         // Await self connection in background if I'm connecting to myself
         if (initial || successor == thisNodeId) {
-            executorService.submit((Callable<Void>) () -> {
+            if (ringSocket.acceptsInBackground()) {
                 ringSocket.updatePredecessor();
-                return null;
-            });
+            } else {
+                executorService.submit((Callable<Void>) () -> {
+                    ringSocket.updatePredecessor();
+                    return null;
+                });
+            }
         } else {
             // Boolean flag to inform thread listening for node.nodemessaging from self that it just disconnected due to
             // forming a link with a new node, and not because any failure has occurred
             disconnectedFromSelf = successorId == thisNodeId;
         }
 
-        // Connect to successor
-        ringSocket.updateSuccessor(successor);
-        successorId = successor;
+        // Connect to successor. Tokens the previous successor has not acknowledged are assumed to have reached it,
+        // as a node that has failed is handled before its replacement is connected to
+        synchronized (this) {
+            synchronized (successorReadLock) {
+                final int dropped = takeUnacknowledgedTokens().size();
+                if (dropped > 0) {
+                    logger.info(String.format("Assuming %d unacknowledged tokens reached previous successor", dropped));
+                }
+
+                ringSocket.updateSuccessor(successor);
+                successorId = successor;
+            }
+        }
     }
 
     void cleanup() throws IOException {
@@ -105,12 +289,12 @@ public class RingCommunicationHandler {
     /**
      * Receives message from predecessor
      *
-     * @return message received from predecessor
+     * @return message received from predecessor, or whether the connection was closed
      */
-    Message receiveFromPredecessor() {
-        final Message message = ringSocket.receiveFromPredecessor(null);
-        logger.info(String.format("Received from predecessor %s", message != null ? message.toString() : null));
-        return message;
+    ReadResult receiveFromPredecessor() {
+        final ReadResult result = ringSocket.receiveFromPredecessor(null);
+        logger.info(() -> String.format("Received from predecessor %s", result));
+        return result;
     }
 
     /**
@@ -119,8 +303,8 @@ public class RingCommunicationHandler {
      * @param message the message to be sent
      * @throws IOException
      */
-    public void sendToSuccessor(Message message) throws IOException {
-        logger.info(String.format("Sending to %d : %s", successorId, message.toString()));
+    public synchronized void sendToSuccessor(Message message) throws IOException {
+        logger.info(() -> String.format("Sending to %d : %s", successorId, message));
         ringSocket.sendToSuccessor(message);
     }
 
@@ -0,0 +1,133 @@
+package node;
+
+import logging.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+
+/**
+ * Decides when the node should stop. Shutdown can be requested by creating the killswitch file, by the JVM shutting
+ * down, or by an admin message, and is seen by the node's loops through a single flag, so that none of them need to
+ * look at the filesystem. Listeners are run once when shutdown is first requested, to wake threads that are blocked.
+ */
+class ShutdownController {
+
+    private final Logger logger = LoggerFactory.getLogger();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private volatile boolean shutdownRequested = false;
+    private WatchService watchService;
+
+    /**
+     * @return true once shutdown has been requested
+     */
+    boolean isShutdownRequested() {
+        return shutdownRequested;
+    }
+
+    /**
+     * @param listener run when shutdown is requested, or straight away if it already has been
+     */
+    void onShutdown(Runnable listener) {
+        listeners.add(listener);
+        if (shutdownRequested) listener.run();
+    }
+
+    /**
+     * Sets the shutdown flag and runs the listeners, if shutdown has not been requested already
+     *
+     * @param reason description of what requested shutdown, for the log
+     */
+    void requestShutdown(String reason) {
+        synchronized (this) {
+            if (shutdownRequested) return;
+            shutdownRequested = true;
+        }
+
+        logger.warning("Shutdown requested: " + reason);
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Requests shutdown as soon as the file exists. The directory containing it is watched on a daemon thread, so
+     * the file is only looked at once up front.
+     *
+     * @param killswitch path of the file that stops the node when created
+     */
+    void watchKillswitch(Path killswitch) {
+        final Path directory = killswitch.toAbsolutePath().getParent();
+        final Path name = killswitch.getFileName();
+
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, ENTRY_CREATE);
+        } catch (IOException e) {
+            logger.warning(String.format("Unable to watch %s for killswitch: %s", directory, e.getMessage()));
+            return;
+        }
+
+        if (Files.exists(killswitch)) {
+            requestShutdown("killswitch already exists");
+            return;
+        }
+
+        final Thread watcher = new Thread(() -> {
+            try {
+                while (!shutdownRequested) {
+                    final WatchKey key = watchService.take();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (name.equals(event.context())) {
+                            requestShutdown("killswitch created");
+                        }
+                    }
+                    if (!key.reset()) break;
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Stopped watching
+            }
+        }, "killswitch-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Requests shutdown when the JVM is stopped, and holds the JVM up until the node has finished cleaning up
+     *
+     * @param timeoutMillis longest time to wait for the node to finish
+     */
+    void installShutdownHook(long timeoutMillis) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            requestShutdown("JVM shutting down");
+            try {
+                terminated.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "shutdown-hook"));
+    }
+
+    /**
+     * Called once the node has released its resources. Stops watching the killswitch and lets the shutdown hook
+     * return.
+     */
+    void markTerminated() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warning("Failed to stop watching killswitch: " + e.getMessage());
+            }
+        }
+        terminated.countDown();
+    }
+}
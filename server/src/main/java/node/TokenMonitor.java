@@ -0,0 +1,113 @@
+package node;
+
+import util.Token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps track of the newest token seen for each partition. Tokens are ordered by their generation, then by their
+ * sequence number within it, so copies of tokens that have already been received and tokens from older generations
+ * can be ignored. A token that has not been seen for too long is assumed to have been lost with the node holding
+ * it, and can be replaced by a token of a newer generation.
+ */
+class TokenMonitor {
+
+    /**
+     * How many full rotations a token can take before it is assumed lost, allowing for nodes holding it for the
+     * longest time allowed and for it being sent more than once
+     */
+    static final int ROTATION_MARGIN = 2;
+
+    private final long minimumTimeoutMillis;
+    private final long holdMillis;
+    private final long[] generations;
+    private final long[] sequenceNumbers;
+    private final long[] lastSeenAt;
+
+    /**
+     * @param partitions           number of tokens in the ring
+     * @param minimumTimeoutMillis least time a token can go without being seen before it is replaced
+     * @param holdMillis           longest time each node holds a token
+     */
+    TokenMonitor(int partitions, long minimumTimeoutMillis, long holdMillis) {
+        this.minimumTimeoutMillis = minimumTimeoutMillis;
+        this.holdMillis = holdMillis;
+        this.generations = new long[partitions];
+        this.sequenceNumbers = new long[partitions];
+        this.lastSeenAt = new long[partitions];
+
+        Arrays.fill(generations, Long.MIN_VALUE);
+        Arrays.fill(sequenceNumbers, Long.MIN_VALUE);
+        Arrays.fill(lastSeenAt, System.currentTimeMillis());
+    }
+
+    /**
+     * Records that the token has been seen, if it is newer than any token seen for its partition before
+     *
+     * @param token token received from predecessor
+     * @return true if the token is the newest for its partition, false if it is a copy or from an older generation
+     */
+    synchronized boolean accept(Token token) {
+        final int partition = token.getPartition();
+
+        final boolean newer = token.getGeneration() > generations[partition]
+                || (token.getGeneration() == generations[partition] && token.getSequenceNumber() > sequenceNumbers[partition]);
+        if (!newer) return false;
+
+        generations[partition] = token.getGeneration();
+        sequenceNumbers[partition] = token.getSequenceNumber();
+        lastSeenAt[partition] = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Creates a token for the partition of a newer generation than any seen before. Generations start from the
+     * current time, so a restarted coordinator does not create tokens older than the ones it replaces.
+     *
+     * @param partition partition the token grants access to
+     * @return the new token, which has already been recorded as seen
+     */
+    synchronized Token newToken(int partition) {
+        final long generation = generations[partition] == Long.MIN_VALUE
+                ? System.currentTimeMillis()
+                : Math.max(generations[partition] + 1, System.currentTimeMillis());
+
+        final Token token = new Token(partition, generation, 0);
+        accept(token);
+        return token;
+    }
+
+    /**
+     * The timeout is never less than the time a token takes to go around the ring with every node holding it for as
+     * long as allowed, so that a slow token is not replaced while it is still circulating and two tokens exist for
+     * the same partition
+     *
+     * @param ringSize number of nodes in the ring
+     * @return time a token can go without being seen before it is replaced
+     */
+    long getTimeoutMillis(int ringSize) {
+        return Math.max(minimumTimeoutMillis, ROTATION_MARGIN * ringSize * holdMillis);
+    }
+
+    /**
+     * Replaces every token that has not been seen within the timeout
+     *
+     * @param ringSize number of nodes in the ring
+     * @return the new tokens
+     */
+    synchronized List<Token> regenerateLostTokens(int ringSize) {
+        final List<Token> tokens = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        final long timeoutMillis = getTimeoutMillis(ringSize);
+
+        for (int partition = 0; partition < lastSeenAt.length; partition++) {
+            if (now - lastSeenAt[partition] >= timeoutMillis) {
+                tokens.add(newToken(partition));
+            }
+        }
+
+        return tokens;
+    }
+}
@@ -0,0 +1,103 @@
+package node.clientmessaging;
+
+import logging.LoggerFactory;
+import node.clientmessaging.messages.ClientProtocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Front end that serves each client on its own thread, which blocks reading from the clients socket
+ */
+class BlockingChatFrontEnd implements ChatFrontEnd {
+
+    private final Logger logger = LoggerFactory.getLogger();
+    private final ExecutorService threadPool;
+    private final ServerSocket serverSocket;
+    private final Function<ClientConnection, Optional<ClientHandler>> clientRegistrar;
+
+    private volatile boolean stopped = false;
+
+    /**
+     * @param hostAddress     address to accept clients on
+     * @param clientPort      port to accept clients on
+     * @param threadPool      runs the thread serving each client
+     * @param clientRegistrar creates the handler for a new connection, or returns empty if it cannot be served
+     */
+    BlockingChatFrontEnd(String hostAddress, int clientPort, ExecutorService threadPool,
+                         Function<ClientConnection, Optional<ClientHandler>> clientRegistrar) throws IOException {
+        this.threadPool = threadPool;
+        this.clientRegistrar = clientRegistrar;
+        this.serverSocket = new ServerSocket();
+        // Allows the server to be restarted while connections from before are still closing
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(hostAddress, clientPort));
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            try {
+                final Socket socket = serverSocket.accept();
+                registerNewClient(socket);
+            } catch (IOException e) {
+                if (!stopped) logger.warning("Error occurred when accepting client connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks if the server can handle another client before beginning to serve them
+     *
+     * @param socket connection to new potential client
+     * @throws IOException
+     */
+    private void registerNewClient(Socket socket) throws IOException {
+        final StreamClientConnection connection = new StreamClientConnection(socket);
+        final Optional<ClientHandler> handler = clientRegistrar.apply(connection);
+
+        if (!handler.isPresent()) {
+            connection.close();
+            throw new IOException("Unable to register new client: max reached.");
+        }
+
+        threadPool.execute(() -> serve(connection, handler.get()));
+    }
+
+    /**
+     * Polls for messages from the client until it disconnects, reading lines or frames depending on the protocol the
+     * client logged in with
+     */
+    private void serve(StreamClientConnection connection, ClientHandler handler) {
+        logger.info(String.format("Client connected from %s", connection.getRemoteAddress()));
+
+        while (connection.isOpen()) {
+            if (handler.getProtocol() == ClientProtocol.BINARY) {
+                final byte[] frame = connection.readFrame();
+                if (frame == null || !handler.handleFrame(frame)) break;
+            } else {
+                final String line = connection.readLine();
+                if (line == null || !handler.handleLine(line)) break;
+            }
+        }
+
+        handler.disconnected();
+    }
+
+    @Override
+    public void close() {
+        try {
+            stopped = true;
+            serverSocket.close();
+            threadPool.shutdown();
+        } catch (IOException e) {
+            logger.warning("Error occurred while closing server socket: " + e.getMessage());
+        }
+    }
+}
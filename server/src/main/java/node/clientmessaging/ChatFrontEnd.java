@@ -0,0 +1,18 @@
+package node.clientmessaging;
+
+/**
+ * Accepts chat clients and moves lines between their connections and their handlers
+ */
+interface ChatFrontEnd extends Runnable {
+
+    /**
+     * Accepts and serves clients until closed
+     */
+    @Override
+    void run();
+
+    /**
+     * Stops accepting clients and closes the server socket
+     */
+    void close();
+}
@@ -1,5 +1,10 @@
 package node.clientmessaging;
 
+import node.clientmessaging.messages.ChatMessage;
+
+import java.util.List;
+import java.util.Map;
+
 /**
  * User handler forwards node.nodemessaging to clients for them, and adds node.nodemessaging to the queue
  */
@@ -19,11 +24,59 @@ public interface ChatServer extends Runnable {
      */
     boolean sendMessage();
 
+    /**
+     * Moves messages in the given partition to and from the message queue (Q) until there are none left to move or
+     * the budget is spent. Messages waiting for this servers clients are handled before messages sent by them.
+     *
+     * @param budget    limits on how much can be moved during this visit of the token
+     * @param partition partition owned by the token being held
+     * @return the number of messages moved
+     */
+    int transferMessages(MessageBudget budget, int partition);
+
+    /**
+     * Checks if there are messages in the partition left to move after the last transfer, either because clients
+     * have sent more messages since or because the budget ran out before everything was moved.
+     *
+     * @param partition partition owned by the token being held
+     * @return true if holding the token for longer would allow more messages to be moved
+     */
+    boolean hasPendingWork(int partition);
+
+    /**
+     * Takes the oldest messages in the partition sent by this servers clients that are small enough to be carried
+     * around the ring by the token, instead of being added to the message queue (Q)
+     *
+     * @param partition partition owned by the token being held
+     * @param limit     maximum number of messages to take
+     * @param maxBytes  maximum number of bytes the messages can add to the token once encoded
+     * @return messages to be carried by the token, in the order they were sent
+     */
+    List<ChatMessage> takeMessagesToCarry(int partition, int limit, int maxBytes);
+
+    /**
+     * Forwards a message carried by the token to its recipient, if they are a client of this server
+     *
+     * @param message message carried by the token
+     * @return true if the message was queued for the recipient, false if it should stay on the token
+     */
+    boolean deliverCarriedMessage(ChatMessage message);
+
     /**
      * @return the number of clients currently being served by this handler
      */
     int getNumberOfClients();
 
+    /**
+     * @return the number of messages from clients waiting to be written to the message queue
+     */
+    int getNumberOfOutgoingMessages();
+
+    /**
+     * @return the state of the queue of messages waiting to be written to each client, by username
+     */
+    Map<String, OutboundQueueStatistics> getOutboundQueueStatistics();
+
     /**
      * Terminates the clientmessaging and safely cleans up any resources it is using such as node.sockets.
      */
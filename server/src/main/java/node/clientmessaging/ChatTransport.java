@@ -0,0 +1,5 @@
+package node.clientmessaging;
+
+public enum ChatTransport {
+    BLOCKING, SELECTOR
+}
@@ -0,0 +1,45 @@
+package node.clientmessaging;
+
+/**
+ * Connection to a single chat client, over which newline delimited messages are exchanged, or length prefixed frames
+ * once the client has switched to the binary protocol
+ */
+interface ClientConnection {
+
+    /**
+     * Sends a single line to the client. The line separator is added by the connection.
+     *
+     * @param line line to send
+     */
+    void send(String line);
+
+    /**
+     * Sends a single binary message to the client. The length prefix is added by the connection.
+     *
+     * @param message encoded message to send
+     */
+    void sendFrame(byte[] message);
+
+    /**
+     * @return number of messages accepted by the connection that have not been sent yet, for connections that buffer
+     * writes themselves rather than blocking the caller
+     */
+    default int getPendingWrites() {
+        return 0;
+    }
+
+    /**
+     * @return true if the client is still connected
+     */
+    boolean isOpen();
+
+    /**
+     * Closes the connection to the client, ignoring any errors
+     */
+    void close();
+
+    /**
+     * @return description of the address of the client, for logging
+     */
+    String getRemoteAddress();
+}
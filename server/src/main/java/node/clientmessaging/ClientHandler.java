@@ -1,35 +1,33 @@
 package node.clientmessaging;
 
+import com.google.gson.JsonParseException;
 import logging.LoggerFactory;
 import node.clientmessaging.messages.*;
 import node.clientmessaging.repositories.UserGroupRepository;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
-class ClientHandler implements Runnable {
+/**
+ * Handles the messages sent by a single client, whichever front end the client is connected through
+ */
+class ClientHandler {
 
     private static final Encoder<ClientMessage, String> ENCODER = new ClientMessageJsonEncoder();
+    private static final Encoder<ClientMessage, byte[]> BINARY_ENCODER = new ClientMessageBinaryEncoder();
 
     private final Logger logger = LoggerFactory.getLogger();
     /**
-     * Socket with client connection
+     * Connection to client
      */
-    private final Socket clientSocket;
-    /**
-     * Output stream to client
-     */
-    private final PrintWriter out;
-    /**
-     * Input stream from client
-     */
-    private final BufferedReader in;
+    private final ClientConnection connection;
     /**
      * Messages to be sent to other clients/groups
      */
@@ -38,50 +36,124 @@ class ClientHandler implements Runnable {
      * Store of users and the groups they belong to
      */
     private final UserGroupRepository userGroupRepository;
+    /**
+     * Clients connected to the same server
+     */
+    private final ClientRegistry clientRegistry;
     /**
      * Local representation of user
      */
-    private User user = null;
+    private volatile User user = null;
+    /**
+     * Protocol used to talk to the client, which starts as JSON until the client asks for something else at login
+     */
+    private volatile ClientProtocol protocol = ClientProtocol.JSON;
+    /**
+     * Messages waiting to be written to the client
+     */
+    private final OutboundQueue outboundQueue;
+    private final AtomicBoolean disconnected = new AtomicBoolean(false);
+    /**
+     * Sequence number of the last chat message sent by the client. Starts from the time the client connected, so
+     * that messages sent after reconnecting still come after those sent before.
+     */
+    private final AtomicLong lastSequenceNumber = new AtomicLong(System.currentTimeMillis());
 
-    ClientHandler(Socket clientSocket, Queue<ChatMessage> outgoingMessages, UserGroupRepository userGroupRepository) throws IOException {
-        this.clientSocket = clientSocket;
-        this.in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        this.out = new PrintWriter(clientSocket.getOutputStream(), true);
+    /**
+     * @param connection          connection to client
+     * @param outgoingMessages    messages to be sent to other clients/groups
+     * @param userGroupRepository store of users and the groups they belong to
+     * @param clientRegistry      clients connected to the same server
+     * @param outboundCapacity    maximum number of messages waiting to be written to the client
+     * @param overflowPolicy      what to do with messages for the client once the limit is reached
+     * @param writers             runs the writes to the client
+     */
+    ClientHandler(ClientConnection connection, Queue<ChatMessage> outgoingMessages, UserGroupRepository userGroupRepository,
+                  ClientRegistry clientRegistry, int outboundCapacity, OverflowPolicy overflowPolicy, Executor writers) {
+        this.connection = connection;
         this.outgoingMessages = outgoingMessages;
         this.userGroupRepository = userGroupRepository;
+        this.clientRegistry = clientRegistry;
+        this.outboundQueue = new OutboundQueue(outboundCapacity, overflowPolicy, OutboundQueue.DEFAULT_MAX_BLOCK_MILLIS,
+                writers, connection::getPendingWrites, this::overflowed);
     }
 
     /**
-     * Polls for messages from the client
+     * Handles a single line received from the client
+     *
+     * @param line line sent by client
+     * @return false if the line could not be understood and the client should be disconnected
      */
-    @Override
-    public void run() {
-        logger.info(String.format("Client connected from %s", clientSocket.getRemoteSocketAddress()));
+    boolean handleLine(String line) {
+        final Optional<ClientMessage> message = decode(line);
+        message.ifPresent(this::handleMessage);
+        return message.isPresent();
+    }
 
-        while (isConnected()) {
-            final Optional<ClientMessage> message = receiveMessage();
-            if (message.isPresent()) {
-                handleMessage(message.get());
-            } else {
-                logger.info("Disconnected from client.");
-                break;
-            }
+    /**
+     * Handles a single binary message received from the client
+     *
+     * @param frame message sent by client, without its length prefix
+     * @return false if the message could not be understood and the client should be disconnected
+     */
+    boolean handleFrame(byte[] frame) {
+        final Optional<ClientMessage> message = BINARY_ENCODER.decode(frame);
+        if (!message.isPresent()) {
+            logger.warning(String.format("Unable to parse binary message from %s", connection.getRemoteAddress()));
         }
 
+        message.ifPresent(this::handleMessage);
+        return message.isPresent();
+    }
+
+    /**
+     * @return the protocol the client is expected to send its next message in
+     */
+    ClientProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Cleans up once the connection to the client has closed
+     */
+    void disconnected() {
+        if (!disconnected.compareAndSet(false, true)) return;
+
+        logger.info("Disconnected from client.");
+        clientRegistry.remove(this);
         user = null;
+        outboundQueue.close();
+        connection.close();
+    }
 
-        try {
-            clientSocket.close();
-        } catch (IOException e) {
-            logger.warning("Error when closing client socket: " + e.getMessage());
-        }
+    /**
+     * Disconnects the client after it fell too far behind in reading the messages sent to it
+     */
+    private void overflowed() {
+        logger.warning(String.format("Disconnecting %s as it is not keeping up with messages sent to it.",
+                getUser().map(User::getUsername).orElse(connection.getRemoteAddress())));
+        disconnected();
+    }
+
+    /**
+     * @return snapshot of the state of the queue of messages waiting to be written to the client
+     */
+    OutboundQueueStatistics getOutboundQueueStatistics() {
+        return outboundQueue.getStatistics();
+    }
+
+    /**
+     * @return description of the address of the client, for logging
+     */
+    String getRemoteAddress() {
+        return connection.getRemoteAddress();
     }
 
     /**
      * @return true if the client is still connected
      */
     boolean isConnected() {
-        return !clientSocket.isClosed();
+        return connection.isOpen();
     }
 
     /**
@@ -104,9 +176,9 @@ class ClientHandler implements Runnable {
      * @param clientMessage message from client
      */
     private void handleMessage(ClientMessage clientMessage) {
-        logger.info(String.format("Received message from %s: %s",
+        logger.info(() -> String.format("Received message from %s: %s",
                 getUser().map(User::getUsername).orElse("new user"),
-                clientMessage.toString())
+                clientMessage)
         );
 
         switch (clientMessage.getMessageType()) {
@@ -129,14 +201,44 @@ class ClientHandler implements Runnable {
     }
 
     /**
-     * Adds the given message to the outgoing queue, to be added once the token is available
+     * Delivers the given message straight away to any recipients connected to this server, and adds it to the
+     * outgoing queue, to be added once the token is available, for everyone else
      *
      * @param clientMessage message to be sent
      */
     private void handleChatMessage(ChatMessage clientMessage) {
+        clientMessage.setSequenceNumber(lastSequenceNumber.incrementAndGet());
+
+        for (String recipient : localRecipients(clientMessage)) {
+            // Recipients whose queue refused the message still get it through the message queue
+            clientRegistry.getByUsername(recipient)
+                    .filter(handler -> handler.sendMessage(clientMessage))
+                    .ifPresent(handler -> clientMessage.markDeliveredTo(recipient));
+        }
+
         outgoingMessages.add(clientMessage);
     }
 
+    /**
+     * @param clientMessage message sent by the client
+     * @return recipients of the message that may be connected to this server
+     */
+    private Set<String> localRecipients(ChatMessage clientMessage) {
+        if (!clientMessage.forGroup()) {
+            return Collections.singleton(clientMessage.getToUsername());
+        }
+
+        // Only worth looking up the group if someone else is here to receive it
+        if (clientRegistry.size() < 2) return Collections.emptySet();
+
+        try {
+            return userGroupRepository.getAllUsersInGroup(clientMessage.getToGroup().get());
+        } catch (IOException e) {
+            // Leave the message to be delivered through the message queue
+            return Collections.emptySet();
+        }
+    }
+
     /**
      * Attempts to remove user from group
      *
@@ -180,17 +282,34 @@ class ClientHandler implements Runnable {
             sendMessage(new ErrorMessage("Already logged in."));
         } else {
             logger.info("Logging in as " + clientMessage.getUsername());
+            if (!clientRegistry.login(clientMessage.getUsername(), this)) {
+                sendError("Already logged in on another connection.");
+                return;
+            }
+
             try {
                 user = new User(clientMessage.getUsername());
                 userGroupRepository.registerUser(user.getUsername());
                 // Reply with same login message for confirmation
-                sendMessage(clientMessage);
+                switchProtocol(clientMessage);
             } catch (IOException e) {
                 sendError(e.getMessage());
             }
         }
     }
 
+    /**
+     * Confirms the login in the protocol it arrived in, and switches to the protocol the client asked for. The switch
+     * is made before the confirmation is written, as the client may answer in the new protocol as soon as it arrives.
+     *
+     * @param clientMessage login request
+     */
+    private synchronized void switchProtocol(LoginMessage clientMessage) {
+        final ClientProtocol loginProtocol = protocol;
+        protocol = clientMessage.getProtocol();
+        outboundQueue.add(() -> send(clientMessage, loginProtocol));
+    }
+
     /**
      * Sends error message to user, typically after an exception has occurred
      *
@@ -201,29 +320,43 @@ class ClientHandler implements Runnable {
     }
 
     /**
-     * Sends a message to the client
+     * Queues a message to be sent to the client, which is encoded and written by one of the writers so that callers
+     * are not held up by slow clients, unless the clients queue is full and the overflow policy is to block
+     *
+     * @param clientMessage message for the client
+     * @return false if the message was not queued, because the client has gone or its queue overflowed
      */
-    public void sendMessage(ClientMessage clientMessage) {
-        logger.info(String.format("Sending message to %s: %s", user.getUsername(), clientMessage.toString()));
-        out.println(ENCODER.encode(clientMessage));
+    public synchronized boolean sendMessage(ClientMessage clientMessage) {
+        final ClientProtocol clientProtocol = protocol;
+        return outboundQueue.add(() -> send(clientMessage, clientProtocol));
+    }
+
+    private void send(ClientMessage clientMessage, ClientProtocol clientProtocol) {
+        logger.info(() -> String.format("Sending message to %s: %s",
+                getUser().map(User::getUsername).orElse("new user"),
+                clientMessage)
+        );
+
+        if (clientProtocol == ClientProtocol.BINARY) {
+            connection.sendFrame(BINARY_ENCODER.encode(clientMessage));
+        } else {
+            connection.send(ENCODER.encode(clientMessage));
+        }
     }
 
     /**
-     * Attempts to parse JSON from string sent over socket
+     * Attempts to parse JSON from line sent by the client
      *
+     * @param line line sent by client
      * @return maybe parsed message.
      */
-    private Optional<ClientMessage> receiveMessage() {
-        String input = null;
-
+    private Optional<ClientMessage> decode(String line) {
         try {
-            input = in.readLine();
-        } catch (IOException e) {
-            e.printStackTrace();
+            return ENCODER.decode(line);
+        } catch (JsonParseException | NullPointerException e) {
+            logger.warning(String.format("Unable to parse message from %s: %s", connection.getRemoteAddress(), line));
+            return Optional.empty();
         }
-
-        if (input != null) return ENCODER.decode(input);
-        return Optional.empty();
     }
 
 }
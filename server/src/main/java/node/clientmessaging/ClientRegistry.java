@@ -0,0 +1,98 @@
+package node.clientmessaging;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the clients connected to this server, both by connection and by the username they logged in as.
+ * All operations are safe to call from any thread, and none of them scan the connected clients.
+ */
+class ClientRegistry {
+
+    /**
+     * Maximum number of clients that can be connected at once
+     */
+    private final int maxClients;
+
+    private final Set<ClientHandler> connections = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, ClientHandler> byUsername = new ConcurrentHashMap<>();
+    private final AtomicInteger connected = new AtomicInteger();
+
+    ClientRegistry(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Registers a new connection, if the limit has not been reached
+     *
+     * @param client handler for the new connection
+     * @return true if the client was registered, false if there is no room for it
+     */
+    boolean register(ClientHandler client) {
+        int current;
+        do {
+            current = connected.get();
+            if (current >= maxClients) return false;
+        } while (!connected.compareAndSet(current, current + 1));
+
+        connections.add(client);
+        return true;
+    }
+
+    /**
+     * Associates the username with the connection it logged in on
+     *
+     * @param username username the client logged in as
+     * @param client   handler for the clients connection
+     * @return false if the username is already logged in on another connection
+     */
+    boolean login(String username, ClientHandler client) {
+        final ClientHandler existing = byUsername.putIfAbsent(username, client);
+        return existing == null || existing == client;
+    }
+
+    /**
+     * Removes the connection, along with the username it was logged in as
+     *
+     * @param client handler for the connection that has closed
+     */
+    void remove(ClientHandler client) {
+        if (!connections.remove(client)) return;
+
+        connected.decrementAndGet();
+        client.getUser().ifPresent(user -> byUsername.remove(user.getUsername(), client));
+    }
+
+    /**
+     * @param username username of client
+     * @return the handler for the connection the user is logged in on, if they are logged in here
+     */
+    Optional<ClientHandler> getByUsername(String username) {
+        return Optional.ofNullable(byUsername.get(username));
+    }
+
+    /**
+     * @return snapshot of the usernames of all logged in clients
+     */
+    Set<String> getUsernames() {
+        return Collections.unmodifiableSet(new HashSet<>(byUsername.keySet()));
+    }
+
+    /**
+     * @return snapshot of all connected clients
+     */
+    Set<ClientHandler> getConnections() {
+        return Collections.unmodifiableSet(new HashSet<>(connections));
+    }
+
+    /**
+     * @return the number of connected clients
+     */
+    int size() {
+        return connected.get();
+    }
+}
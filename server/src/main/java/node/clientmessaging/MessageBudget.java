@@ -0,0 +1,66 @@
+package node.clientmessaging;
+
+/**
+ * Limits on how much work the chat server can do with the token during a single visit
+ */
+public class MessageBudget {
+
+    /**
+     * Budget equivalent to moving a single message per token visit
+     */
+    public static final MessageBudget SINGLE_MESSAGE = new MessageBudget(1, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    /**
+     * Maximum number of messages to move
+     */
+    private final int maxMessages;
+
+    /**
+     * Maximum number of bytes of message content to move
+     */
+    private final long maxBytes;
+
+    /**
+     * Maximum amount of time to spend moving messages
+     */
+    private final long maxMillis;
+
+    public MessageBudget(int maxMessages, long maxBytes, long maxMillis) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxMillis = maxMillis;
+    }
+
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * Checks if any of the limits of this budget have been reached
+     *
+     * @param messages      number of messages moved so far
+     * @param bytes         number of bytes moved so far
+     * @param elapsedMillis time spent so far
+     * @return true if no more messages should be moved
+     */
+    public boolean isSpent(int messages, long bytes, long elapsedMillis) {
+        return messages >= maxMessages || bytes >= maxBytes || elapsedMillis >= maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBudget{" +
+                "maxMessages=" + maxMessages +
+                ", maxBytes=" + maxBytes +
+                ", maxMillis=" + maxMillis +
+                '}';
+    }
+}
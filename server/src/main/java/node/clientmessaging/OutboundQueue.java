@@ -0,0 +1,189 @@
+package node.clientmessaging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Bounded queue of writes waiting to go out to a single client. Writes are run in the order they were added by one of
+ * a shared pool of writers, so whoever adds a write only waits for the client if the queue is full and the overflow
+ * policy says to, and then only for a limited time. Data the connection has accepted but not yet sent counts towards
+ * the bound, so a connection that buffers writes itself cannot grow without limit.
+ */
+class OutboundQueue {
+
+    /**
+     * Longest a sender waits for room under the BLOCK policy before the client is disconnected, so that a client that
+     * stops reading cannot hold up the token
+     */
+    static final long DEFAULT_MAX_BLOCK_MILLIS = 1000;
+
+    private static final long BLOCK_CHECK_MILLIS = 10;
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxBlockMillis;
+    private final Executor writers;
+    /**
+     * Number of writes the connection has accepted but not yet sent
+     */
+    private final IntSupplier backlog;
+    /**
+     * Called when the queue overflows and the client should be disconnected
+     */
+    private final Runnable onOverflow;
+
+    private final BlockingQueue<Runnable> writes;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param capacity       maximum number of writes waiting at once
+     * @param overflowPolicy what to do with a write once the queue is full
+     * @param writers        runs the writes
+     * @param onOverflow     disconnects the client, when the policy is to disconnect
+     */
+    OutboundQueue(int capacity, OverflowPolicy overflowPolicy, Executor writers, Runnable onOverflow) {
+        this(capacity, overflowPolicy, DEFAULT_MAX_BLOCK_MILLIS, writers, () -> 0, onOverflow);
+    }
+
+    /**
+     * @param capacity       maximum number of writes waiting at once, including those the connection is holding
+     * @param overflowPolicy what to do with a write once the queue is full
+     * @param maxBlockMillis longest to wait for room under the BLOCK policy before disconnecting the client
+     * @param writers        runs the writes
+     * @param backlog        number of writes the connection has accepted but not yet sent
+     * @param onOverflow     disconnects the client, when the queue overflows and the client is given up on
+     */
+    OutboundQueue(int capacity, OverflowPolicy overflowPolicy, long maxBlockMillis, Executor writers,
+                  IntSupplier backlog, Runnable onOverflow) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.maxBlockMillis = maxBlockMillis;
+        this.writers = writers;
+        this.backlog = backlog;
+        this.onOverflow = onOverflow;
+        this.writes = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Queues the write to be run once every write added before it has been run
+     *
+     * @param write write to the client
+     * @return false if the write was not queued, either because the queue is closed or it overflowed
+     */
+    boolean add(Runnable write) {
+        if (closed) return false;
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBlockMillis);
+                try {
+                    // Checks in on the queue every so often, in case the client goes while waiting for room
+                    while (!offer(write)) {
+                        if (closed) return dropped();
+                        if (System.nanoTime() - deadline >= 0) return overflowed();
+                        Thread.sleep(BLOCK_CHECK_MILLIS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return dropped();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!offer(write)) {
+                    // Nothing queued to make room with, the connection alone is holding as much as allowed
+                    if (writes.poll() == null) return dropped();
+                    droppedCount.incrementAndGet();
+                }
+                break;
+            case DISCONNECT:
+                if (!offer(write)) return overflowed();
+                break;
+        }
+
+        maxDepth.accumulateAndGet(writes.size(), Math::max);
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Queues the write if there is room for it, counting the writes the connection is still holding
+     */
+    private boolean offer(Runnable write) {
+        return writes.size() + backlog.getAsInt() < capacity && writes.offer(write);
+    }
+
+    private boolean dropped() {
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Gives up on the client, dropping the write along with any still queued
+     */
+    private boolean overflowed() {
+        dropped();
+        close();
+        onOverflow.run();
+        return false;
+    }
+
+    /**
+     * Makes sure a writer is running the queued writes, unless one already is
+     */
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * Runs the queued writes in order, until there are none left
+     */
+    private void drain() {
+        do {
+            try {
+                Runnable write;
+                while ((write = writes.poll()) != null) {
+                    write.run();
+                    writtenCount.incrementAndGet();
+                }
+            } finally {
+                // Cleared even if a write fails, so the next write added schedules another drain
+                draining.set(false);
+            }
+        } while (!writes.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Discards any writes still waiting and refuses any more, once the client has gone
+     */
+    void close() {
+        closed = true;
+        while (writes.poll() != null) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return snapshot of the state of the queue
+     */
+    OutboundQueueStatistics getStatistics() {
+        return new OutboundQueueStatistics(capacity, writes.size(), maxDepth.get(), writtenCount.get(), droppedCount.get());
+    }
+}
@@ -0,0 +1,52 @@
+package node.clientmessaging;
+
+/**
+ * Snapshot of the state of the outbound queue of a single client
+ */
+public class OutboundQueueStatistics {
+
+    private final int capacity;
+    private final int depth;
+    private final int maxDepth;
+    private final long writtenCount;
+    private final long droppedCount;
+
+    OutboundQueueStatistics(int capacity, int depth, int maxDepth, long writtenCount, long droppedCount) {
+        this.capacity = capacity;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+        this.writtenCount = writtenCount;
+        this.droppedCount = droppedCount;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboundQueueStatistics{" +
+                "capacity=" + capacity +
+                ", depth=" + depth +
+                ", maxDepth=" + maxDepth +
+                ", writtenCount=" + writtenCount +
+                ", droppedCount=" + droppedCount +
+                '}';
+    }
+}
@@ -0,0 +1,10 @@
+package node.clientmessaging;
+
+/**
+ * What to do with a message for a client whose outbound queue is full
+ */
+public enum OverflowPolicy {
+    BLOCK, // Wait a short while for the client to catch up, then give up on it as for DISCONNECT
+    DROP_OLDEST, // Make room by discarding the oldest message not yet written to the client
+    DISCONNECT, // Give up on the client, which is treated as gone
+}
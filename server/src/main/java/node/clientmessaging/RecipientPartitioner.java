@@ -0,0 +1,46 @@
+package node.clientmessaging;
+
+import node.clientmessaging.messages.ChatMessage;
+
+/**
+ * Splits the message queue between the tokens circulating the ring by hashing the user or group each message is
+ * for. Only the node holding the token for a partition moves the messages in that partition.
+ */
+public class RecipientPartitioner {
+
+    private final int partitions;
+
+    public RecipientPartitioner(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("There must be at least one partition");
+        }
+        this.partitions = partitions;
+    }
+
+    /**
+     * @return the number of partitions, one for each token
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @param name username or group name
+     * @return the partition messages for that user or group belong to
+     */
+    public int partitionOf(String name) {
+        return Math.floorMod(name.hashCode(), partitions);
+    }
+
+    /**
+     * Group messages belong to the partition of the group, so that they are written while holding a single token,
+     * and are taken by each member while holding the token for that member.
+     *
+     * @param message message sent by a client
+     * @return the partition the message is written under
+     */
+    public int partitionOf(ChatMessage message) {
+        final String destination = message.getToGroup().orElse(message.getToUsername());
+        return destination == null ? 0 : partitionOf(destination);
+    }
+}
@@ -0,0 +1,405 @@
+package node.clientmessaging;
+
+import logging.LoggerFactory;
+import node.clientmessaging.messages.ClientMessageBinaryEncoder;
+import node.clientmessaging.messages.ClientProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+/**
+ * Front end that accepts clients, reads their lines or frames and flushes pending writes on a single selector thread.
+ * Complete messages are handed to a small pool of workers, which handle the messages of each client one at a time and
+ * in the order they were received. Idle clients cost no more than their socket, as they have no thread of their own
+ * and only keep a buffer while part of a message has been received.
+ */
+class SelectorChatFrontEnd implements ChatFrontEnd {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_MESSAGE_LENGTH = 1024 * 1024;
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final Logger logger = LoggerFactory.getLogger();
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService workers;
+    private final Function<ClientConnection, Optional<ClientHandler>> clientRegistrar;
+
+    /**
+     * Buffer all connections are read into, only used by the selector thread
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private volatile boolean stopped = false;
+
+    /**
+     * @param hostAddress     address to accept clients on
+     * @param clientPort      port to accept clients on
+     * @param workers         runs the handling of lines received from clients
+     * @param clientRegistrar creates the handler for a new connection, or returns empty if it cannot be served
+     */
+    SelectorChatFrontEnd(String hostAddress, int clientPort, ExecutorService workers,
+                         Function<ClientConnection, Optional<ClientHandler>> clientRegistrar) throws IOException {
+        this.clientRegistrar = clientRegistrar;
+        this.workers = workers;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        this.serverChannel.bind(new InetSocketAddress(hostAddress, clientPort));
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * A connection to a client, along with the messages waiting to be handled and the data waiting to be written
+     */
+    private class ChannelClientConnection implements ClientConnection {
+        private final SocketChannel channel;
+        /**
+         * Each message received, as the call that hands it to the handler
+         */
+        private final Queue<Predicate<ClientHandler>> receivedMessages = new ConcurrentLinkedQueue<>();
+        private final Queue<ByteBuffer> pendingWrites = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean dispatching = new AtomicBoolean(false);
+        private final AtomicBoolean disconnectReported = new AtomicBoolean(false);
+
+        private ClientHandler handler = null;
+        private SelectionKey key = null;
+        private volatile boolean endOfStream = false;
+
+        /**
+         * Start of a line or frame that has not been fully received yet, only used by the selector thread
+         */
+        private ByteArrayOutputStream partialMessage = null;
+
+        private ChannelClientConnection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+
+        @Override
+        public void send(String line) {
+            final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            final ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+            buffer.put(bytes).put(LINE_SEPARATOR).flip();
+            write(buffer);
+        }
+
+        @Override
+        public void sendFrame(byte[] message) {
+            write(ByteBuffer.wrap(ClientMessageBinaryEncoder.frame(message)));
+        }
+
+        /**
+         * Writes as much as the client will accept straight away, leaving the rest for the selector thread
+         */
+        private void write(ByteBuffer buffer) {
+            try {
+                synchronized (this) {
+                    if (pendingWrites.isEmpty()) {
+                        channel.write(buffer);
+                    }
+
+                    if (buffer.hasRemaining()) {
+                        pendingWrites.add(buffer);
+                        if (key != null) {
+                            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                            selector.wakeup();
+                        }
+                    }
+                }
+            } catch (IOException | CancelledKeyException e) {
+                connectionLost(this);
+            }
+        }
+
+        @Override
+        public int getPendingWrites() {
+            return pendingWrites.size();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            try {
+                return String.valueOf(channel.getRemoteAddress());
+            } catch (IOException e) {
+                return "unknown";
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            try {
+                selector.select();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        acceptClient();
+                        continue;
+                    }
+
+                    final ChannelClientConnection connection = (ChannelClientConnection) key.attachment();
+                    if (key.isReadable()) readMessages(connection);
+                    if (key.isValid() && key.isWritable()) flushWrites(connection);
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                if (!stopped) logger.warning("Error occurred when accepting client connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Accepts the next client if the server can handle another client
+     */
+    private void acceptClient() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+
+        final ChannelClientConnection connection = new ChannelClientConnection(channel);
+        final Optional<ClientHandler> handler = clientRegistrar.apply(connection);
+
+        if (!handler.isPresent()) {
+            connection.close();
+            throw new IOException("Unable to register new client: max reached.");
+        }
+
+        synchronized (connection) {
+            connection.handler = handler.get();
+            final int ops = connection.pendingWrites.isEmpty()
+                    ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+            connection.key = channel.register(selector, ops, connection);
+        }
+
+        logger.info(String.format("Client connected from %s", connection.getRemoteAddress()));
+    }
+
+    /**
+     * Reads whatever is available from the client, and dispatches any complete messages. The handler only switches
+     * protocol when the client has nothing else to send until it hears back, so the protocol can be checked per read.
+     */
+    private void readMessages(ChannelClientConnection connection) {
+        try {
+            readBuffer.clear();
+            if (connection.channel.read(readBuffer) < 0) {
+                connectionLost(connection);
+                return;
+            }
+            readBuffer.flip();
+
+            if (connection.handler.getProtocol() == ClientProtocol.BINARY) {
+                readFrames(connection);
+            } else {
+                readLines(connection);
+            }
+
+            dispatch(connection);
+        } catch (IOException e) {
+            connectionLost(connection);
+        }
+    }
+
+    /**
+     * Queues each complete line in the read buffer
+     */
+    private void readLines(ChannelClientConnection connection) throws IOException {
+        int lineStart = readBuffer.position();
+        for (int i = lineStart; i < readBuffer.limit(); i++) {
+            if (readBuffer.get(i) == LINE_SEPARATOR) {
+                final String line = completeLine(connection, lineStart, i);
+                connection.receivedMessages.add(handler -> handler.handleLine(line));
+                lineStart = i + 1;
+            }
+        }
+
+        if (lineStart < readBuffer.limit()) {
+            readBuffer.position(lineStart);
+            keepPartialMessage(connection, readBuffer);
+        }
+    }
+
+    /**
+     * Queues each complete frame in the read buffer, along with any part of the first frame received earlier
+     */
+    private void readFrames(ChannelClientConnection connection) throws IOException {
+        ByteBuffer received = readBuffer;
+        if (connection.partialMessage != null) {
+            keepPartialMessage(connection, readBuffer);
+            received = ByteBuffer.wrap(connection.partialMessage.toByteArray());
+            connection.partialMessage = null;
+        }
+
+        byte[] frame;
+        while ((frame = ClientMessageBinaryEncoder.readFrame(received)) != null) {
+            final byte[] message = frame;
+            connection.receivedMessages.add(handler -> handler.handleFrame(message));
+        }
+
+        if (received.hasRemaining()) {
+            keepPartialMessage(connection, received);
+        }
+    }
+
+    /**
+     * Decodes the line ending at the given position, including any part of it received earlier
+     */
+    private String completeLine(ChannelClientConnection connection, int start, int end) {
+        final byte[] bytes = new byte[end - start];
+        readBuffer.position(start);
+        readBuffer.get(bytes);
+
+        String line;
+        if (connection.partialMessage == null) {
+            line = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            connection.partialMessage.write(bytes, 0, bytes.length);
+            line = new String(connection.partialMessage.toByteArray(), StandardCharsets.UTF_8);
+            connection.partialMessage = null;
+        }
+
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Keeps the remaining bytes, the start of a message, until the rest of it arrives
+     */
+    private void keepPartialMessage(ChannelClientConnection connection, ByteBuffer received) throws IOException {
+        if (connection.partialMessage == null) {
+            connection.partialMessage = new ByteArrayOutputStream(received.remaining());
+        }
+
+        final byte[] bytes = new byte[received.remaining()];
+        received.get(bytes);
+        connection.partialMessage.write(bytes, 0, bytes.length);
+
+        if (connection.partialMessage.size() > MAX_MESSAGE_LENGTH) {
+            throw new IOException("Message too long.");
+        }
+    }
+
+    /**
+     * Writes as much of the pending data as the client will accept without blocking
+     */
+    private void flushWrites(ChannelClientConnection connection) {
+        try {
+            synchronized (connection) {
+                ByteBuffer next;
+                while ((next = connection.pendingWrites.peek()) != null) {
+                    connection.channel.write(next);
+                    if (next.hasRemaining()) return;
+                    connection.pendingWrites.poll();
+                }
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            connectionLost(connection);
+        }
+    }
+
+    /**
+     * Closes the connection, and lets its handler know once it has handled every line already received
+     */
+    private void connectionLost(ChannelClientConnection connection) {
+        connection.endOfStream = true;
+        connection.close();
+        dispatch(connection);
+    }
+
+    /**
+     * Makes sure a worker is handling the messages received from the client, unless one already is
+     */
+    private void dispatch(ChannelClientConnection connection) {
+        if (connection.dispatching.compareAndSet(false, true)) {
+            try {
+                workers.execute(() -> handleReceivedMessages(connection));
+            } catch (RejectedExecutionException e) {
+                connection.dispatching.set(false);
+            }
+        }
+    }
+
+    /**
+     * Handles the messages received from the client in order, until there are none left
+     */
+    private void handleReceivedMessages(ChannelClientConnection connection) {
+        do {
+            Predicate<ClientHandler> message;
+            while ((message = connection.receivedMessages.poll()) != null) {
+                if (!message.test(connection.handler)) {
+                    connection.receivedMessages.clear();
+                    connection.endOfStream = true;
+                    connection.close();
+                }
+            }
+
+            if (connection.endOfStream && connection.disconnectReported.compareAndSet(false, true)) {
+                connection.handler.disconnected();
+            }
+
+            connection.dispatching.set(false);
+        } while (hasWorkLeft(connection) && connection.dispatching.compareAndSet(false, true));
+    }
+
+    /**
+     * @return true if there are messages left to handle, or the handler has not yet been told the client disconnected
+     */
+    private static boolean hasWorkLeft(ChannelClientConnection connection) {
+        return !connection.receivedMessages.isEmpty()
+                || (connection.endOfStream && !connection.disconnectReported.get());
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+
+        try {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            logger.warning("Error occurred while closing server socket: " + e.getMessage());
+        }
+
+        workers.shutdown();
+    }
+}
@@ -1,111 +1,273 @@
 package node.clientmessaging;
 
-import com.sun.xml.internal.ws.policy.privateutil.PolicyUtils;
 import logging.LoggerFactory;
 import node.clientmessaging.messages.ChatMessage;
 import node.clientmessaging.repositories.MessageRepository;
 import node.clientmessaging.repositories.UserGroupRepository;
+import node.nodemessaging.MessageCodec;
+import util.TaskExecutors;
+import util.ThreadMode;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
 import java.util.logging.Logger;
 
 public class SocketChatServer implements ChatServer {
 
-    private static final int MAX_CLIENTS = 2;
+    /**
+     * Maximum number of waiting messages to take from the message queue in a single query
+     */
+    private static final int RECEIVE_BATCH_SIZE = 64;
+
+    /**
+     * Maximum number of messages written in one go when writing concurrently
+     */
+    private static final int CONCURRENT_WRITE_BATCH_SIZE = 256;
+    private static final long CONCURRENT_WRITE_POLL_MILLIS = 100;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long WRITE_RETRY_MILLIS = 200;
+
+    /**
+     * Longest message that can be carried by a token, so that the token stays small
+     */
+    private static final int MAX_CARRIED_CONTENT_LENGTH = 4096;
 
     private final Logger logger = LoggerFactory.getLogger();
 
-    private final ExecutorService threadPool = Executors.newFixedThreadPool(MAX_CLIENTS);
     private final MessageRepository messageRepository;
     private final UserGroupRepository userGroupRepository;
 
-    private final ClientHandler[] clients = new ClientHandler[MAX_CLIENTS];
-    private final ConcurrentLinkedQueue<ChatMessage> outgoingMessages = new ConcurrentLinkedQueue<>();
-    private final ServerSocket serverSocket;
+    private final ClientRegistry clients;
+    private final LinkedBlockingQueue<ChatMessage> outgoingMessages = new LinkedBlockingQueue<>();
+    private final ChatFrontEnd frontEnd;
 
-    private boolean stopped = true;
+    /**
+     * Writes messages to clients, so that a slow client does not hold up the token
+     */
+    private final ExecutorService writers;
+    private final int outboundCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final WriteMode writeMode;
 
-    public SocketChatServer(String hostAddress, int clientPort, MessageRepository messageRepository, UserGroupRepository userGroupRepository) throws Exception {
+    /**
+     * Messages sent by clients waiting for the token of the partition they belong to. Only used by the thread that
+     * holds tokens.
+     */
+    private final RecipientPartitioner partitioner;
+    private final List<Deque<ChatMessage>> waitingForToken;
+    private final boolean[] transferCutShort;
+
+    private volatile boolean stopped = false;
+
+    public SocketChatServer(String hostAddress, int clientPort, int maxClients, ChatTransport transport,
+                            ThreadMode threadMode, int outboundCapacity, OverflowPolicy overflowPolicy, WriteMode writeMode,
+                            int partitions, MessageRepository messageRepository,
+                            UserGroupRepository userGroupRepository) throws Exception {
+        this.clients = new ClientRegistry(maxClients);
         this.messageRepository = messageRepository;
         this.userGroupRepository = userGroupRepository;
-        this.serverSocket = new ServerSocket();
-        this.serverSocket.bind(new InetSocketAddress(hostAddress, clientPort));
+        this.outboundCapacity = outboundCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.writeMode = writeMode;
+        this.partitioner = new RecipientPartitioner(partitions);
+        this.waitingForToken = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            waitingForToken.add(new ArrayDeque<>());
+        }
+        this.transferCutShort = new boolean[partitions];
+        this.writers = TaskExecutors.newTaskExecutor(threadMode);
+        this.frontEnd = createFrontEnd(hostAddress, clientPort, transport, threadMode);
+    }
 
+    /**
+     * Creates the front end that will accept clients using the given transport
+     *
+     * @param hostAddress address to accept clients on
+     * @param clientPort  port to accept clients on
+     * @param transport   how client connections should be served
+     * @param threadMode  kind of thread used to serve clients
+     * @return front end for the given transport
+     * @throws IOException if unable to listen on the given address
+     */
+    private ChatFrontEnd createFrontEnd(String hostAddress, int clientPort, ChatTransport transport,
+                                        ThreadMode threadMode) throws IOException {
+        switch (transport) {
+            case SELECTOR:
+                final int workerThreads = Runtime.getRuntime().availableProcessors();
+                return new SelectorChatFrontEnd(hostAddress, clientPort,
+                        TaskExecutors.newWorkerPool(threadMode, workerThreads), this::registerNewClient);
+            case BLOCKING:
+            default:
+                return new BlockingChatFrontEnd(hostAddress, clientPort,
+                        TaskExecutors.newTaskExecutor(threadMode), this::registerNewClient);
+        }
     }
 
     @Override
     public void run() {
-        stopped = false;
+        if (writeMode == WriteMode.CONCURRENT) {
+            writers.execute(this::writeConcurrently);
+        }
+
+        frontEnd.run();
+    }
+
+    /**
+     * @return true if messages sent by clients wait for the token before being written to the message queue
+     */
+    private boolean writesWithToken() {
+        return writeMode == WriteMode.TOKEN;
+    }
+
+    /**
+     * Writes messages sent by clients to the message queue as soon as they arrive, without waiting for the token.
+     * Everything that arrived during the previous write is written in one go, and messages are written by this
+     * thread alone so that the messages of each client are written in the order they were sent. A batch that cannot
+     * be written is kept and tried again, with anything that has arrived since added after it.
+     */
+    private void writeConcurrently() {
+        final List<ChatMessage> batch = new ArrayList<>();
 
-        while (!stopped) {
+        while (!stopped || !outgoingMessages.isEmpty() || !batch.isEmpty()) {
             try {
-                final Socket socket = serverSocket.accept();
-                registerNewClient(socket);
-            } catch (IOException e) {
-                logger.warning("Error occurred when accepting client connection: " + e.getMessage());
+                if (batch.isEmpty()) {
+                    final ChatMessage first = outgoingMessages.poll(CONCURRENT_WRITE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                }
+
+                outgoingMessages.drainTo(batch, CONCURRENT_WRITE_BATCH_SIZE - batch.size());
+                if (writeWithRetries(batch)) {
+                    batch.clear();
+                } else if (stopped) {
+                    break;
+                } else {
+                    Thread.sleep(WRITE_RETRY_MILLIS * MAX_WRITE_ATTEMPTS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
         }
+
+        final int unsent = batch.size() + outgoingMessages.size();
+        if (unsent > 0) {
+            logger.warning(String.format("Stopped with %d messages that could not be sent", unsent));
+        }
     }
 
     /**
-     * Checks if this server can handle another client before beginning to serve them
+     * Writes the messages to the message queue, trying again a few times if the database cannot be reached
      *
-     * @param socket connection to new potential client
-     * @throws IOException
+     * @param batch messages to write, in the order they were sent
+     * @return true if the messages were written
      */
-    private void registerNewClient(Socket socket) throws IOException {
-        final ClientHandler handler = new ClientHandler(socket, outgoingMessages, userGroupRepository);
-
-        boolean registered = false;
-        for (int i = 0; i < clients.length; i++) {
-            if (clients[i] == null || !clients[i].isConnected()) {
-                clients[i] = handler;
-                registered = true;
-                break;
+    private boolean writeWithRetries(List<ChatMessage> batch) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                messageRepository.sendMessages(batch);
+                return true;
+            } catch (IOException e) {
+                if (attempt >= MAX_WRITE_ATTEMPTS || stopped) {
+                    logger.warning(String.format("Failed to send %d messages, will try again: %s", batch.size(),
+                            e.getMessage()));
+                    return false;
+                }
+                Thread.sleep(WRITE_RETRY_MILLIS * attempt);
             }
         }
+    }
 
-        if (!registered) {
-            socket.close();
-            throw new IOException("Unable to register new client: max reached.");
-        } else {
-            this.threadPool.execute(handler);
-        }
+    /**
+     * Checks if this server can handle another client before beginning to serve them
+     *
+     * @param connection connection to new potential client
+     * @return the handler for the client, or empty if the maximum number of clients has been reached
+     */
+    private Optional<ClientHandler> registerNewClient(ClientConnection connection) {
+        final ClientHandler handler = new ClientHandler(connection, outgoingMessages, userGroupRepository, clients,
+                outboundCapacity, overflowPolicy, writers);
+        return clients.register(handler) ? Optional.of(handler) : Optional.empty();
     }
 
     /**
      * @return the set of current users being served by this server
      */
     private Set<String> getCurrentUsers() {
-        final Set<String> users = new HashSet<>();
-        for (ClientHandler clientHandler : clients) {
-            if (clientHandler == null) continue;
-            clientHandler.getUser().ifPresent(user -> users.add(user.getUsername()));
+        return clients.getUsernames();
+    }
+
+    /**
+     * @param partition partition owned by the token being held
+     * @return the current users being served by this server whose messages belong to the partition
+     */
+    private Set<String> getCurrentUsers(int partition) {
+        final Set<String> usernames = getCurrentUsers();
+        if (partitioner.getPartitions() == 1) return usernames;
+
+        return usernames.stream()
+                .filter(username -> partitioner.partitionOf(username) == partition)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Moves the messages clients have sent since the last transfer onto the queue for the partition they belong to
+     */
+    private void sortOutgoingMessages() {
+        ChatMessage message;
+        while ((message = outgoingMessages.poll()) != null) {
+            waitingForToken.get(partitioner.partitionOf(message)).add(message);
         }
-        return users;
     }
 
     @Override
     public boolean receiveMessage() {
+        return receiveNextMessage().isPresent();
+    }
+
+    /**
+     * Takes the next message waiting for one of this servers clients and forwards it to them
+     *
+     * @return the message that was forwarded, if any
+     */
+    private Optional<ChatMessage> receiveNextMessage() {
         try {
             final Optional<ChatMessage> message = messageRepository.getNextMessageForUser(getCurrentUsers());
+            message.ifPresent(this::forwardToRecipient);
+            return message;
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
 
-            if (message.isPresent()) {
-                forwardToRecipient(message.get());
-                return true;
-            } else {
-                return false;
-            }
+    /**
+     * Takes up to the given number of messages waiting for this servers clients in the partition and forwards them
+     *
+     * @param limit     maximum number of messages to take
+     * @param partition partition owned by the token being held
+     * @return the messages that were forwarded
+     */
+    private List<ChatMessage> receiveMessageBatch(int limit, int partition) {
+        final Set<String> currentUsers = getCurrentUsers(partition);
+        if (currentUsers.isEmpty()) return new ArrayList<>();
+
+        try {
+            final List<ChatMessage> messages = messageRepository.takeMessagesForUsers(currentUsers, limit);
+            messages.forEach(this::forwardToRecipient);
+            return messages;
         } catch (IOException e) {
-            return false;
+            logger.warning("Failed to receive messages: " + e.getMessage());
+            return new ArrayList<>();
         }
     }
 
@@ -115,49 +277,205 @@ public class SocketChatServer implements ChatServer {
      * @param chatMessage message to forward
      */
     private void forwardToRecipient(ChatMessage chatMessage) {
-        for (ClientHandler clientHandler : clients) {
-            boolean handlesRecipient = clientHandler.getUser()
-                    .map(user -> user.getUsername().equals(chatMessage.getToUsername()))
-                    .orElse(false);
-
-            if (handlesRecipient) {
-                clientHandler.sendMessage(chatMessage);
-                break;
-            }
-        }
+        clients.getByUsername(chatMessage.getToUsername())
+                .ifPresent(clientHandler -> clientHandler.sendMessage(chatMessage));
     }
 
     @Override
     public boolean sendMessage() {
+        return sendNextMessage().isPresent();
+    }
+
+    /**
+     * Adds the oldest message sent by one of this servers clients to the message queue
+     *
+     * @return the message that was sent, if any
+     */
+    private Optional<ChatMessage> sendNextMessage() {
+        if (!writesWithToken()) return Optional.empty();
+
         final ChatMessage message = outgoingMessages.poll();
 
-        if (message == null) return false;
+        if (message == null) return Optional.empty();
 
         try {
             messageRepository.sendMessage(message);
-            return true;
+            return Optional.of(message);
         } catch (IOException e) {
-            return false;
+            return Optional.empty();
         }
     }
 
+    /**
+     * Adds as many of the messages in the partition sent by this servers clients as the budget allows to the message
+     * queue at once. If they cannot be added they are put back, in the same order, to be tried again on the next
+     * visit of the token.
+     *
+     * @param budget        limits on how much can be moved during this visit of the token
+     * @param partition     partition owned by the token being held
+     * @param startTime     time the transfer started
+     * @param movedMessages number of messages already moved during this transfer
+     * @param movedBytes    number of bytes already moved during this transfer
+     * @return the messages that were sent
+     */
+    private List<ChatMessage> sendMessageBatch(MessageBudget budget, int partition, long startTime, int movedMessages,
+                                               long movedBytes) {
+        final Deque<ChatMessage> waiting = waitingForToken.get(partition);
+        final List<ChatMessage> batch = new ArrayList<>();
+        long bytes = movedBytes;
+
+        while (!budget.isSpent(movedMessages + batch.size(), bytes, System.currentTimeMillis() - startTime)) {
+            final ChatMessage message = waiting.poll();
+            if (message == null) break;
+
+            batch.add(message);
+            bytes += sizeOf(message);
+        }
+
+        if (batch.isEmpty()) return batch;
+
+        try {
+            messageRepository.sendMessages(batch);
+            return batch;
+        } catch (IOException e) {
+            logger.warning(String.format("Failed to send %d messages, keeping them for the next token: %s",
+                    batch.size(), e.getMessage()));
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                waiting.addFirst(batch.get(i));
+            }
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public int transferMessages(MessageBudget budget, int partition) {
+        final long startTime = System.currentTimeMillis();
+        int messages = 0;
+        long bytes = 0;
+
+        // Deliver waiting messages first, taking as many as the budget allows in each query
+        boolean receivedEverything = false;
+        while (!budget.isSpent(messages, bytes, System.currentTimeMillis() - startTime)) {
+            final int limit = Math.min(RECEIVE_BATCH_SIZE, budget.getMaxMessages() - messages);
+            final List<ChatMessage> received = receiveMessageBatch(limit, partition);
+
+            for (ChatMessage message : received) {
+                messages++;
+                bytes += sizeOf(message);
+            }
+
+            if (received.size() < limit) {
+                receivedEverything = true;
+                break;
+            }
+        }
+
+        // Then add everything the budget allows from clients to the queue in one go, unless it is already being done
+        // without the token
+        if (receivedEverything && writesWithToken()) {
+            sortOutgoingMessages();
+            for (ChatMessage sent : sendMessageBatch(budget, partition, startTime, messages, bytes)) {
+                messages++;
+                bytes += sizeOf(sent);
+            }
+        }
+
+        transferCutShort[partition] = !receivedEverything || hasMessagesWaitingForToken(partition);
+        return messages;
+    }
+
+    @Override
+    public boolean hasPendingWork(int partition) {
+        return transferCutShort[partition] || hasMessagesWaitingForToken(partition);
+    }
+
+    /**
+     * @param partition partition owned by the token being held
+     * @return true if clients have sent messages in the partition that are waiting for its token to be written
+     */
+    private boolean hasMessagesWaitingForToken(int partition) {
+        if (!writesWithToken()) return false;
+
+        sortOutgoingMessages();
+        return !waitingForToken.get(partition).isEmpty();
+    }
+
+    /**
+     * @param message chat message
+     * @return approximate number of bytes the contents of the message take up
+     */
+    private static long sizeOf(ChatMessage message) {
+        final String content = message.getMessageContent();
+        return content == null ? 0 : content.length();
+    }
+
+    @Override
+    public List<ChatMessage> takeMessagesToCarry(int partition, int limit, int maxBytes) {
+        final List<ChatMessage> carried = new ArrayList<>();
+        if (!writesWithToken()) return carried;
+
+        sortOutgoingMessages();
+        final Queue<ChatMessage> waiting = waitingForToken.get(partition);
+
+        // Stop at the first message that has to be written to the message queue, so none overtake it
+        int bytes = 0;
+        while (carried.size() < limit && !waiting.isEmpty() && canBeCarried(waiting.peek())) {
+            bytes += MessageCodec.carriedSize(waiting.peek());
+            if (bytes > maxBytes) break;
+
+            carried.add(waiting.poll());
+        }
+
+        return carried;
+    }
+
+    /**
+     * Only small messages for a single user can be carried by a token. Group messages are written to the message
+     * queue, as are messages already delivered directly to a client of this server.
+     *
+     * @param message message sent by a client
+     * @return true if the message can be carried by a token
+     */
+    private static boolean canBeCarried(ChatMessage message) {
+        return !message.forGroup()
+                && message.getToUsername() != null
+                && message.getDeliveredTo().isEmpty()
+                && sizeOf(message) <= MAX_CARRIED_CONTENT_LENGTH;
+    }
+
+    @Override
+    public boolean deliverCarriedMessage(ChatMessage message) {
+        // A message the recipient's queue refused stays on the token, to be stored once back at its origin
+        return clients.getByUsername(message.getToUsername())
+                .map(clientHandler -> clientHandler.sendMessage(message))
+                .orElse(false);
+    }
+
     @Override
     public int getNumberOfClients() {
-        int count = 0;
-        for (ClientHandler client : clients) {
-            if (client != null && client.isConnected()) count++;
+        return clients.size();
+    }
+
+    @Override
+    public int getNumberOfOutgoingMessages() {
+        return outgoingMessages.size();
+    }
+
+    @Override
+    public Map<String, OutboundQueueStatistics> getOutboundQueueStatistics() {
+        final Map<String, OutboundQueueStatistics> statistics = new TreeMap<>();
+        for (ClientHandler client : clients.getConnections()) {
+            final String name = client.getUser().map(User::getUsername).orElse("unknown@" + client.getRemoteAddress());
+            statistics.put(name, client.getOutboundQueueStatistics());
         }
-        return count;
+        return statistics;
     }
 
     @Override
     public void cleanup() {
-        try {
-            stopped = true;
-            serverSocket.close();
-            threadPool.shutdown();
-        } catch (IOException e) {
-            logger.warning("Error occurred while closing server socket: " + e.getMessage());
-        }
+        logger.info(String.format("Outbound client queues: %s", getOutboundQueueStatistics()));
+        stopped = true;
+        frontEnd.close();
+        writers.shutdown();
     }
 }
@@ -0,0 +1,111 @@
+package node.clientmessaging;
+
+import node.clientmessaging.messages.ClientMessageBinaryEncoder;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client connection over a blocking socket, read one line or frame at a time by a thread dedicated to the client
+ */
+class StreamClientConnection implements ClientConnection {
+
+    private static final int LINE_SEPARATOR = '\n';
+
+    /**
+     * Socket with client connection
+     */
+    private final Socket clientSocket;
+    /**
+     * Output stream to client
+     */
+    private final OutputStream out;
+    /**
+     * Input stream from client, read as bytes so that it can switch from lines to frames part way through
+     */
+    private final InputStream in;
+
+    StreamClientConnection(Socket clientSocket) throws IOException {
+        this.clientSocket = clientSocket;
+        this.in = new BufferedInputStream(clientSocket.getInputStream());
+        this.out = new BufferedOutputStream(clientSocket.getOutputStream());
+    }
+
+    /**
+     * Blocks until the client sends a line
+     *
+     * @return the line sent, or null if the client has disconnected
+     */
+    String readLine() {
+        try {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int next;
+            while ((next = in.read()) != LINE_SEPARATOR) {
+                if (next < 0) return null;
+                line.write(next);
+            }
+
+            final String decoded = new String(line.toByteArray(), StandardCharsets.UTF_8);
+            return decoded.endsWith("\r") ? decoded.substring(0, decoded.length() - 1) : decoded;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Blocks until the client sends a frame
+     *
+     * @return the message in the frame, or null if the client has disconnected
+     */
+    byte[] readFrame() {
+        try {
+            return ClientMessageBinaryEncoder.readFrame(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void send(String line) {
+        final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        synchronized (out) {
+            try {
+                out.write(bytes);
+                out.write(LINE_SEPARATOR);
+                out.flush();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public void sendFrame(byte[] message) {
+        final byte[] frame = ClientMessageBinaryEncoder.frame(message);
+        synchronized (out) {
+            try {
+                out.write(frame);
+                out.flush();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !clientSocket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            clientSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return String.valueOf(clientSocket.getRemoteSocketAddress());
+    }
+}
@@ -0,0 +1,9 @@
+package node.clientmessaging;
+
+/**
+ * When messages sent by clients are written to the message queue
+ */
+public enum WriteMode {
+    TOKEN, // Only while holding the token, so that a single node writes at a time
+    CONCURRENT, // As soon as they arrive, alongside every other node
+}
@@ -3,7 +3,10 @@ package node.clientmessaging.messages;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 import static node.clientmessaging.messages.ClientMessageType.CHAT_MESSAGE;
 
@@ -32,6 +35,16 @@ public class ChatMessage extends ClientMessage {
      * Contents of message
      */
     private String messageContent;
+    /**
+     * Recipients connected to this server that the message has already been delivered to directly, which is only
+     * kept locally and never sent to clients
+     */
+    private transient Set<String> deliveredTo = null;
+    /**
+     * Position of the message among the messages sent by the same user through this server, used to keep their
+     * order in the message queue when it is written to concurrently
+     */
+    private transient long sequenceNumber = 0;
 
     public ChatMessage(Timestamp sentAt, String fromName, String toUsername, String toGroup, String messageContent) {
         super(CHAT_MESSAGE);
@@ -65,4 +78,29 @@ public class ChatMessage extends ClientMessage {
     public boolean forGroup() {
         return getToGroup().isPresent();
     }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Records that the message has been delivered to the user directly, so it should not be queued for them
+     *
+     * @param username recipient the message was delivered to
+     */
+    public void markDeliveredTo(String username) {
+        if (deliveredTo == null) deliveredTo = new HashSet<>();
+        deliveredTo.add(username);
+    }
+
+    /**
+     * @return recipients the message has already been delivered to directly
+     */
+    public Set<String> getDeliveredTo() {
+        return deliveredTo == null ? Collections.emptySet() : Collections.unmodifiableSet(deliveredTo);
+    }
 }
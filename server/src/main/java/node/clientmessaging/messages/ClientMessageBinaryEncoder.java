@@ -0,0 +1,251 @@
+package node.clientmessaging.messages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Optional;
+
+/**
+ * Compact binary encoding of client messages, used by clients that ask for it when logging in.
+ * <p>
+ * Layout: message type (1 byte), followed by the fields of the message in a fixed order.
+ * The message type is written as its ordinal, so new types must only ever be appended.
+ * Strings are written as a varint of their UTF-8 length plus one, so that zero can stand for null, followed by their
+ * bytes. Timestamps are written as a presence byte followed by a varint of their milliseconds.
+ * <p>
+ * On the wire each message is framed by a varint of its length, see {@link #frame(byte[])}.
+ */
+public class ClientMessageBinaryEncoder implements Encoder<ClientMessage, byte[]> {
+
+    /**
+     * Largest message accepted from the other side
+     */
+    public static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+    private static final ClientMessageType[] MESSAGE_TYPES = ClientMessageType.values();
+
+    @Override
+    public byte[] encode(ClientMessage obj) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(obj.getMessageType().ordinal());
+
+        switch (obj.getMessageType()) {
+            case CHAT_MESSAGE:
+                final ChatMessage chatMessage = (ChatMessage) obj;
+                putTimestamp(out, chatMessage.getSentAt());
+                putString(out, chatMessage.getFromName());
+                putString(out, chatMessage.getToUsername());
+                putString(out, chatMessage.getToGroup().orElse(null));
+                putString(out, chatMessage.getMessageContent());
+                break;
+            case JOIN_GROUP:
+                putString(out, ((JoinGroupMessage) obj).getGroup());
+                break;
+            case LEAVE_GROUP:
+                putString(out, ((LeaveGroupMessage) obj).getGroup());
+                break;
+            case LOGIN:
+                putString(out, ((LoginMessage) obj).getUsername());
+                break;
+            case ERROR:
+                putString(out, ((ErrorMessage) obj).getErrorMessage());
+                break;
+            case ALIVE:
+                break;
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the decoded message, or empty if the bytes are not a message this encoder understands
+     */
+    @Override
+    public Optional<ClientMessage> decode(byte[] obj) {
+        try {
+            return Optional.ofNullable(decode(ByteBuffer.wrap(obj)));
+        } catch (IOException | BufferUnderflowException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static ClientMessage decode(ByteBuffer buffer) throws IOException {
+        final int typeOrdinal = buffer.get() & 0xFF;
+        if (typeOrdinal >= MESSAGE_TYPES.length) return null;
+
+        switch (MESSAGE_TYPES[typeOrdinal]) {
+            case CHAT_MESSAGE:
+                return new ChatMessage(getTimestamp(buffer), getString(buffer), getString(buffer), getString(buffer),
+                        getString(buffer));
+            case JOIN_GROUP:
+                return new JoinGroupMessage(getString(buffer));
+            case LEAVE_GROUP:
+                return new LeaveGroupMessage(getString(buffer));
+            case LOGIN:
+                return new LoginMessage(getString(buffer), ClientProtocol.BINARY);
+            case ERROR:
+                return new ErrorMessage(getString(buffer));
+            case ALIVE:
+                return new ClientMessage(ClientMessageType.ALIVE);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Prefixes the encoded message with its length, ready to be written to the other side
+     *
+     * @param message encoded message
+     * @return bytes to write
+     */
+    public static byte[] frame(byte[] message) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(message.length + 3);
+        putVarLong(out, message.length);
+        out.write(message, 0, message.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the next framed message from the stream, blocking until all of it has arrived
+     *
+     * @param in stream from the other side
+     * @return the encoded message, or null if the stream ended before the next frame began
+     * @throws IOException if the stream ended part way through a frame, or the frame is too long
+     */
+    public static byte[] readFrame(InputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) return null;
+
+        long length = first & 0x7F;
+        for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+            if (shift > 28) throw new IOException("Malformed frame length.");
+            first = in.read();
+            if (first < 0) throw new EOFException();
+            length |= (long) (first & 0x7F) << shift;
+        }
+
+        final byte[] message = new byte[checkLength(length)];
+        int read = 0;
+        while (read < message.length) {
+            final int count = in.read(message, read, message.length - read);
+            if (count < 0) throw new EOFException();
+            read += count;
+        }
+        return message;
+    }
+
+    /**
+     * Reads the next framed message from the buffer, if all of it is there
+     *
+     * @param buffer bytes received from the other side
+     * @return the encoded message, or null if the frame is incomplete, in which case the buffer is left untouched
+     * @throws IOException if the frame length is malformed or too long
+     */
+    public static byte[] readFrame(ByteBuffer buffer) throws IOException {
+        final int start = buffer.position();
+        final long length;
+
+        try {
+            length = getFrameLength(buffer);
+        } catch (BufferUnderflowException e) {
+            buffer.position(start);
+            return null;
+        }
+
+        final int checkedLength = checkLength(length);
+        if (buffer.remaining() < checkedLength) {
+            buffer.position(start);
+            return null;
+        }
+
+        final byte[] message = new byte[checkedLength];
+        buffer.get(message);
+        return message;
+    }
+
+    /**
+     * Reads a frame length, which like the stream version is never more than five bytes long
+     */
+    private static long getFrameLength(ByteBuffer buffer) throws IOException {
+        byte b = buffer.get();
+        long length = b & 0x7F;
+        for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+            if (shift > 28) throw new IOException("Malformed frame length.");
+            b = buffer.get();
+            length |= (long) (b & 0x7F) << shift;
+        }
+        return length;
+    }
+
+    private static int checkLength(long length) throws IOException {
+        if (length < 0) throw new IOException("Negative frame length.");
+        if (length > MAX_FRAME_LENGTH) throw new IOException("Frame too long.");
+        return (int) length;
+    }
+
+    private static void putString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            putVarLong(out, 0);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        final long length = getVarLong(buffer);
+        if (length == 0) return null;
+        if (length < 0 || length - 1 > buffer.remaining()) throw new IOException("Truncated string.");
+
+        final String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), (int) length - 1,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + (int) length - 1);
+        return value;
+    }
+
+    private static void putTimestamp(ByteArrayOutputStream out, Timestamp value) {
+        if (value == null) {
+            out.write(0);
+        } else {
+            out.write(1);
+            putVarLong(out, value.getTime());
+        }
+    }
+
+    private static Timestamp getTimestamp(ByteBuffer buffer) throws IOException {
+        return buffer.get() == 0 ? null : new Timestamp(getVarLong(buffer));
+    }
+
+    /**
+     * Writes an unsigned variable length integer
+     */
+    private static void putVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Reads an unsigned variable length integer
+     */
+    private static long getVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+}
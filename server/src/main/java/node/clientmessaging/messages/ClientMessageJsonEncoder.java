@@ -1,41 +1,127 @@
 package node.clientmessaging.messages;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import javax.swing.text.html.Option;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Timestamp;
 import java.util.Optional;
 
 public class ClientMessageJsonEncoder implements Encoder<ClientMessage, String> {
 
     private static final Gson gson = new Gson();
 
+    /**
+     * Adapters gson uses when encoding, so decoded values match the encoded format
+     */
+    private static final TypeAdapter<ClientMessageType> typeAdapter = gson.getAdapter(ClientMessageType.class);
+    private static final TypeAdapter<Timestamp> timestampAdapter = gson.getAdapter(Timestamp.class);
+    private static final TypeAdapter<ClientProtocol> protocolAdapter = gson.getAdapter(ClientProtocol.class);
+
     @Override
     public String encode(ClientMessage obj) {
         return gson.toJson(obj);
     }
 
+    /**
+     * Decodes the message in a single pass over the line. The fields of every message type are collected as they
+     * are read, since gson writes the message type after the fields of the subclass, and the message is built once
+     * the whole object has been read.
+     */
     @Override
     public Optional<ClientMessage> decode(String obj) {
+        final JsonReader reader = new JsonReader(new StringReader(obj));
+        reader.setLenient(true);
+
+        try {
+            return readMessage(reader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    private static Optional<ClientMessage> readMessage(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) return Optional.empty();
 
-        // First determine message type from standard header
-        final ClientMessageType type = gson.fromJson(obj, ClientMessage.class).getMessageType();
+        ClientMessageType type = null;
+        Timestamp sentAt = null;
+        String fromName = null;
+        String toUsername = null;
+        String toGroup = null;
+        String messageContent = null;
+        String group = null;
+        String username = null;
+        ClientProtocol protocol = null;
+        String errorMessage = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "messageType":
+                    type = typeAdapter.read(reader);
+                    break;
+                case "sentAt":
+                    sentAt = timestampAdapter.read(reader);
+                    break;
+                case "fromName":
+                    fromName = readString(reader);
+                    break;
+                case "toUsername":
+                    toUsername = readString(reader);
+                    break;
+                case "toGroup":
+                    toGroup = readString(reader);
+                    break;
+                case "messageContent":
+                    messageContent = readString(reader);
+                    break;
+                case "group":
+                    group = readString(reader);
+                    break;
+                case "username":
+                    username = readString(reader);
+                    break;
+                case "protocol":
+                    protocol = protocolAdapter.read(reader);
+                    break;
+                case "errorMessage":
+                    errorMessage = readString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (type == null) return Optional.empty();
 
-        // Parse full object based on message type
         switch (type) {
             case CHAT_MESSAGE:
-                return Optional.of(gson.fromJson(obj, ChatMessage.class));
+                return Optional.of(new ChatMessage(sentAt, fromName, toUsername, toGroup, messageContent));
             case LEAVE_GROUP:
-                return Optional.of(gson.fromJson(obj, LeaveGroupMessage.class));
+                return Optional.of(new LeaveGroupMessage(group));
             case JOIN_GROUP:
-                return Optional.of(gson.fromJson(obj, JoinGroupMessage.class));
+                return Optional.of(new JoinGroupMessage(group));
             case LOGIN:
-                return Optional.of(gson.fromJson(obj, LoginMessage.class));
+                return Optional.of(new LoginMessage(username, protocol));
             case ERROR:
-                return Optional.of(gson.fromJson(obj, ErrorMessage.class));
+                return Optional.of(new ErrorMessage(errorMessage));
             case ALIVE:
-                return Optional.of(gson.fromJson(obj, ClientMessage.class));
+                return Optional.of(new ClientMessage(type));
             default:
                 return Optional.empty();
         }
     }
+
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
 }
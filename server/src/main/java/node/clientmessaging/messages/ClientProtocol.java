@@ -0,0 +1,11 @@
+package node.clientmessaging.messages;
+
+/**
+ * Encoding used for the messages exchanged with a client, chosen by the client when it logs in
+ */
+public enum ClientProtocol {
+
+    JSON, // Newline delimited JSON, used until login and by any client that does not ask for anything else
+    BINARY, // Length prefixed frames encoded by ClientMessageBinaryEncoder
+
+}
@@ -6,19 +6,34 @@ public class LoginMessage extends ClientMessage {
 
     private String username;
 
+    /**
+     * Protocol the client would like to use once logged in, left out by clients that only speak JSON
+     */
+    private ClientProtocol protocol = null;
+
     public LoginMessage(String username) {
         super(LOGIN);
         this.username = username;
     }
 
+    public LoginMessage(String username, ClientProtocol protocol) {
+        this(username);
+        this.protocol = protocol;
+    }
+
     public String getUsername() {
         return username;
     }
 
+    public ClientProtocol getProtocol() {
+        return protocol == null ? ClientProtocol.JSON : protocol;
+    }
+
     @Override
     public String toString() {
         return "LoginMessage{" +
                 "username='" + username + '\'' +
+                ", protocol=" + getProtocol() +
                 '}';
     }
 }
@@ -3,6 +3,7 @@ package node.clientmessaging.repositories;
 import node.clientmessaging.messages.ChatMessage;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -18,6 +19,13 @@ public interface MessageRepository {
      */
     void sendMessage(ChatMessage chatMessage) throws IOException;
 
+    /**
+     * Sends all of the given messages at once, so that either all of them are added to the queue or none are
+     *
+     * @param chatMessages messages to be sent, in the order they were sent
+     */
+    void sendMessages(List<ChatMessage> chatMessages) throws IOException;
+
     /**
      * Gets the oldest waiting message out of any messages waiting for the given users.
      * Message is removed from database once taken.
@@ -26,4 +34,21 @@ public interface MessageRepository {
      * @return oldest message for one of the given users
      */
     Optional<ChatMessage> getNextMessageForUser(Set<String> usernames) throws IOException;
+
+    /**
+     * Takes up to the given number of messages waiting for any of the given users, oldest first.
+     * The users are removed as recipients of the taken messages, so they will not be taken again.
+     *
+     * @param usernames users to fetch messages for
+     * @param limit     maximum number of messages to take
+     * @return the oldest messages for the given users, in the order they were sent
+     */
+    List<ChatMessage> takeMessagesForUsers(Set<String> usernames, int limit) throws IOException;
+
+    /**
+     * Deletes messages that have been taken by all of their recipients
+     *
+     * @return the number of messages deleted
+     */
+    int removeDeliveredMessages() throws IOException;
 }
@@ -0,0 +1,31 @@
+package node.holdpolicies;
+
+import static node.holdpolicies.HoldPolicy.ADAPTIVE;
+
+/**
+ * Holds the token only while the chat server has work left to do, up to a maximum hold time.
+ * An idle node forwards the token immediately.
+ */
+public class AdaptiveHoldPolicy implements TokenHoldPolicy {
+
+    private final long maxHoldMillis;
+
+    public AdaptiveHoldPolicy(long maxHoldMillis) {
+        this.maxHoldMillis = maxHoldMillis;
+    }
+
+    @Override
+    public HoldPolicy getPolicyName() {
+        return ADAPTIVE;
+    }
+
+    @Override
+    public boolean shouldKeepWorking(long heldMillis, boolean pendingWork) {
+        return pendingWork && heldMillis < maxHoldMillis;
+    }
+
+    @Override
+    public long getReleaseDelayMillis(long heldMillis) {
+        return 0;
+    }
+}
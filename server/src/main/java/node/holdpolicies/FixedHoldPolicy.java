@@ -0,0 +1,30 @@
+package node.holdpolicies;
+
+import static node.holdpolicies.HoldPolicy.FIXED;
+
+/**
+ * Holds the token for the same amount of time on every visit, regardless of whether there is work to do
+ */
+public class FixedHoldPolicy implements TokenHoldPolicy {
+
+    private final long holdMillis;
+
+    public FixedHoldPolicy(long holdMillis) {
+        this.holdMillis = holdMillis;
+    }
+
+    @Override
+    public HoldPolicy getPolicyName() {
+        return FIXED;
+    }
+
+    @Override
+    public boolean shouldKeepWorking(long heldMillis, boolean pendingWork) {
+        return false;
+    }
+
+    @Override
+    public long getReleaseDelayMillis(long heldMillis) {
+        return Math.max(0, holdMillis - heldMillis);
+    }
+}
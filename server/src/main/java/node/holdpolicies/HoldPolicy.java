@@ -0,0 +1,5 @@
+package node.holdpolicies;
+
+public enum HoldPolicy {
+    FIXED, ADAPTIVE
+}
@@ -0,0 +1,32 @@
+package node.holdpolicies;
+
+/**
+ * Decides how long a node should keep the token before forwarding it to its successor
+ */
+public interface TokenHoldPolicy {
+
+    /**
+     * Returns the type of policy implemented by this interface.
+     *
+     * @return the type of policy implemented by this interface.
+     */
+    HoldPolicy getPolicyName();
+
+    /**
+     * Checks if the token should be given back to the chat server for another round of work.
+     *
+     * @param heldMillis  time the token has been held for so far
+     * @param pendingWork true if the chat server still has messages to move
+     * @return true if the chat server should use the token again before it is forwarded
+     */
+    boolean shouldKeepWorking(long heldMillis, boolean pendingWork);
+
+    /**
+     * Returns how much longer the token should be held once the chat server has finished with it.
+     *
+     * @param heldMillis time the token has been held for so far
+     * @return time to wait in milliseconds before forwarding the token
+     */
+    long getReleaseDelayMillis(long heldMillis);
+
+}
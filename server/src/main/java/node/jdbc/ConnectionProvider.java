@@ -0,0 +1,24 @@
+package node.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Source of database connections for the repositories
+ */
+public interface ConnectionProvider {
+
+    /**
+     * Gets a connection to the database. Closing the connection hands it back to the provider.
+     *
+     * @return connection to the database
+     * @throws SQLException if no connection can be made
+     */
+    Connection getConnection() throws SQLException;
+
+    /**
+     * Closes any connections held by the provider
+     */
+    void close();
+
+}
@@ -12,6 +12,7 @@ public class Message {
     private String contents;
     private String fromUsername;
     private String toGroup;
+    private long sequenceNumber;
 
     public Message(Timestamp sentAt, String contents, String fromUsername) {
         this.sentAt = sentAt;
@@ -62,4 +63,12 @@ public class Message {
         this.toGroup = toGroup;
     }
 
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
 }
@@ -12,10 +12,6 @@ import java.util.logging.Logger;
 
 public class MessagingDatabaseConnection implements UserGroupRepository, MessageRepository {
 
-    private static final String CONNECTION_STRING = "jdbc:mariadb://jm354.host.cs.st-andrews.ac.uk/jm354_distsys";
-    private static final String USERNAME = "jm354";
-    private static final String PASSOWRD = "722Em!9LLknjhZ";
-
     private static final String CLIENT_TABLE_NAME = "clients";
     private static final String GROUP_TABLE_NAME = "groups";
     private static final String PART_OF_GROUP_TABLE_NAME = "partofgroup";
@@ -53,6 +49,7 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
                     "contents VARCHAR(255)," +
                     "fromUsername VARCHAR(255)," +
                     "toGroup VARCHAR(255)," +
+                    "sequenceNumber BIGINT DEFAULT 0," +
                     "PRIMARY KEY (messageId)," +
                     "FOREIGN KEY (fromUsername) REFERENCES " + CLIENT_TABLE_NAME + "(username)," +
                     "FOREIGN KEY (toGroup) REFERENCES " + GROUP_TABLE_NAME + "(groupname)" +
@@ -68,21 +65,38 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
                     "ON DELETE CASCADE" +
                     ")";
 
+    /**
+     * Adds the sequence number to message tables created before it existed
+     */
+    private static final String ADD_SEQUENCE_NUMBER =
+            "ALTER TABLE " + MESSAGE_TABLE_NAME + " ADD COLUMN IF NOT EXISTS sequenceNumber BIGINT DEFAULT 0";
+
     private static final String DROP_TABLE_PREFIX = "DROP TABLE IF EXISTS ";
 
-    private static final String INSERT_MESSAGE = "INSERT INTO " + MESSAGE_TABLE_NAME +
-            " (sentAt, contents, fromUsername, toGroup) " +
-            "VALUES (?, ?, ?, ?)";
+    private static final String INSERT_MESSAGES = "INSERT INTO " + MESSAGE_TABLE_NAME +
+            " (sentAt, contents, fromUsername, toGroup, sequenceNumber) VALUES ";
 
-    private static final String INSERT_DESTINATION = "INSERT INTO " + MESSAGE_DESTINATION_TABLE_NAME +
-            " (messageId, toUsername)" +
-            " VALUES (?, ?)";
+    private static final String MESSAGE_ROW = "(?, ?, ?, ?, ?)";
+
+    private static final String INSERT_DESTINATIONS = "INSERT INTO " + MESSAGE_DESTINATION_TABLE_NAME +
+            " (messageId, toUsername) VALUES ";
+
+    private static final String DESTINATION_ROW = "(?, ?)";
+
+    /**
+     * Maximum number of rows written by a single insert statement
+     */
+    private static final int MAX_ROWS_PER_INSERT = 64;
 
-    private static final String GET_MESSAGES_FOR_TWO_USERS_LIMIT_ONE_OLDEST_FIRST =
+    /**
+     * Messages are ordered by when they were sent, then by the order their sender sent them in, as ids are not
+     * guaranteed to follow the order messages were sent in once nodes write to the queue concurrently
+     */
+    private static final String GET_MESSAGES_FOR_USERS_OLDEST_FIRST =
             "SELECT m.*, d.toUsername FROM " + MESSAGE_TABLE_NAME + " m " +
                     "INNER JOIN " + MESSAGE_DESTINATION_TABLE_NAME + " d ON m.messageId = d.messageId " +
-                    "WHERE toUsername IN (?, ?) ORDER BY sentAt " +
-                    "LIMIT 1";
+                    "WHERE d.toUsername IN (%s) ORDER BY m.sentAt, m.sequenceNumber, m.messageId " +
+                    "LIMIT ?";
 
     private static final String DELETE_MESSAGES_WITHOUT_RECIPIENTS =
             "DELETE FROM " + MESSAGE_TABLE_NAME + " WHERE messageId IN " +
@@ -116,9 +130,11 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
 
     private final Logger logger = LoggerFactory.getLogger();
 
+    private final ConnectionProvider connectionProvider;
     private final boolean doFullRestart;
 
-    public MessagingDatabaseConnection(boolean doFullRestart) {
+    public MessagingDatabaseConnection(ConnectionProvider connectionProvider, boolean doFullRestart) {
+        this.connectionProvider = connectionProvider;
         this.doFullRestart = doFullRestart;
     }
 
@@ -158,6 +174,17 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
         }
     }
 
+    /**
+     * Brings a schema created by an earlier version up to date
+     *
+     * @param conn connection to DB
+     */
+    private void upgradeSchema(Connection conn) throws SQLException {
+        try (final PreparedStatement addSequenceNumber = conn.prepareStatement(ADD_SEQUENCE_NUMBER)) {
+            addSequenceNumber.executeUpdate();
+        }
+    }
+
     /**
      * Removes all tables from the database
      */
@@ -183,13 +210,15 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
      * Initializes the database
      */
     public void initialize() {
-        try (final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD)) {
+        try (final Connection conn = connectionProvider.getConnection()) {
             if (doFullRestart) {
                 dropEverything(conn);
             }
 
             if (!schemaIsInitialized(conn)) {
                 initializeSchema(conn);
+            } else {
+                upgradeSchema(conn);
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -198,141 +227,321 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
     }
 
     /**
-     * Inserts message into database for all recipients
+     * Creates an insert statement for the given number of rows
+     *
+     * @param insert insert statement up to and including VALUES
+     * @param row    placeholders for a single row
+     * @param rows   number of rows to insert
+     * @return insert statement with placeholders for every row
      */
-    private void insertMessageForAllRecipients(final Message message, Set<String> recipients, final Connection conn) throws IOException {
-        try (
-                final PreparedStatement insertMessage = conn.prepareStatement(INSERT_MESSAGE, Statement.RETURN_GENERATED_KEYS);
-                final PreparedStatement insertDestination = conn.prepareStatement(INSERT_DESTINATION)
-        ) {
-            conn.setAutoCommit(true);
-            insertMessage.setTimestamp(1, message.getSentAt());
-            insertMessage.setString(2, message.getContents());
-            insertMessage.setString(3, message.getFromUsername());
-            insertMessage.setString(4, message.getToGroup());
+    private static String multiRowInsert(String insert, String row, int rows) {
+        final StringBuilder sql = new StringBuilder(insert.length() + rows * (row.length() + 2)).append(insert);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(row);
+        }
+        return sql.toString();
+    }
 
-            final int affectedRows = insertMessage.executeUpdate();
+    /**
+     * Converts a chat message into the row to be stored in the message table
+     */
+    private static Message toRow(ChatMessage chatMessage) {
+        final Message row;
+        if (chatMessage.forGroup()) {
+            row = new Message(
+                    chatMessage.getSentAt(),
+                    chatMessage.getMessageContent(),
+                    chatMessage.getFromName(),
+                    chatMessage.getToGroup().get()
+            );
+        } else {
+            row = new Message(
+                    chatMessage.getSentAt(),
+                    chatMessage.getMessageContent(),
+                    chatMessage.getFromName()
+            );
+        }
 
-            if (affectedRows == 0) {
-                throw new IOException("Message could not be inserted.");
+        row.setSequenceNumber(chatMessage.getSequenceNumber());
+        return row;
+    }
+
+    /**
+     * Finds the recipients of every message, looking up the members of each group only once
+     *
+     * @param chatMessages messages being sent
+     * @param conn         connection to database
+     * @return recipients of each message, in the same order as the messages, including any it was delivered to
+     * directly
+     */
+    private List<Set<String>> resolveRecipients(List<ChatMessage> chatMessages, Connection conn) throws IOException {
+        final Map<String, Set<String>> groupMembers = new HashMap<>();
+        final List<Set<String>> recipients = new ArrayList<>(chatMessages.size());
+
+        for (ChatMessage chatMessage : chatMessages) {
+            if (chatMessage.forGroup()) {
+                final String toGroup = chatMessage.getToGroup().get();
+                Set<String> members = groupMembers.get(toGroup);
+                if (members == null) {
+                    members = getAllUsersInGroup(toGroup, conn);
+                    groupMembers.put(toGroup, members);
+                }
+                recipients.add(members);
+            } else {
+                recipients.add(Collections.singleton(chatMessage.getToUsername()));
             }
+        }
+
+        return recipients;
+    }
+
+    /**
+     * @param recipients  every recipient of the message
+     * @param deliveredTo recipients the message was already delivered to directly
+     * @return recipients still waiting for the message
+     */
+    private static Set<String> waitingRecipients(Set<String> recipients, Set<String> deliveredTo) {
+        if (deliveredTo.isEmpty()) return recipients;
+
+        final Set<String> waiting = new HashSet<>(recipients);
+        waiting.removeAll(deliveredTo);
+        return waiting;
+    }
 
-            final int messageId;
-            try (ResultSet generatedKeys = insertMessage.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    messageId = generatedKeys.getInt(1);
-                } else {
-                    throw new IOException("Message could not be inserted.");
+    /**
+     * Inserts the messages using as few statements as possible, and assigns each its generated id
+     *
+     * @param messages messages to insert
+     * @param conn     connection to database, in a transaction
+     */
+    private void insertMessages(List<Message> messages, Connection conn) throws SQLException, IOException {
+        for (int from = 0; from < messages.size(); from += MAX_ROWS_PER_INSERT) {
+            final List<Message> chunk = messages.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, messages.size()));
+            final String sql = multiRowInsert(INSERT_MESSAGES, MESSAGE_ROW, chunk.size());
+
+            try (final PreparedStatement insertMessages = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                int param = 1;
+                for (Message message : chunk) {
+                    insertMessages.setTimestamp(param++, message.getSentAt());
+                    insertMessages.setString(param++, message.getContents());
+                    insertMessages.setString(param++, message.getFromUsername());
+                    insertMessages.setString(param++, message.getToGroup());
+                    insertMessages.setLong(param++, message.getSequenceNumber());
+                }
+
+                if (insertMessages.executeUpdate() != chunk.size()) {
+                    throw new IOException("Messages could not be inserted.");
                 }
+
+                assignGeneratedIds(chunk, insertMessages);
             }
+        }
+    }
 
-            conn.setAutoCommit(false);
-            for (String recipient : recipients) {
-                insertDestination.setInt(1, messageId);
-                insertDestination.setString(2, recipient);
-                insertDestination.addBatch();
+    /**
+     * Assigns the ids generated by a multi-row insert to the inserted messages. The ids are only trusted if the driver
+     * returned one for every row, as the ids of the rows are not guaranteed to be consecutive.
+     *
+     * @param messages  messages inserted by the statement, in order
+     * @param statement statement that inserted the messages
+     */
+    private static void assignGeneratedIds(List<Message> messages, Statement statement) throws SQLException, IOException {
+        final List<Integer> ids = new ArrayList<>(messages.size());
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+            while (generatedKeys.next()) {
+                ids.add(generatedKeys.getInt(1));
             }
+        }
 
-            insertDestination.executeBatch();
-            conn.commit();
-        } catch (SQLException e) {
-            throw new IOException(e.getMessage());
+        if (ids.size() != messages.size()) {
+            throw new IOException(String.format("Expected %d message ids but %d were generated.", messages.size(), ids.size()));
+        }
+
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setMessageId(ids.get(i));
+        }
+    }
+
+    /**
+     * Inserts a destination row for every recipient of every message
+     *
+     * @param messages   inserted messages with their ids assigned
+     * @param recipients recipients of each message, in the same order as the messages
+     * @param conn       connection to database, in a transaction
+     */
+    private void insertDestinations(List<Message> messages, List<Set<String>> recipients, Connection conn) throws SQLException {
+        final List<Integer> messageIds = new ArrayList<>();
+        final List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            for (String recipient : recipients.get(i)) {
+                messageIds.add(messages.get(i).getMessageId());
+                usernames.add(recipient);
+            }
+        }
+
+        for (int from = 0; from < messageIds.size(); from += MAX_ROWS_PER_INSERT) {
+            final int to = Math.min(from + MAX_ROWS_PER_INSERT, messageIds.size());
+            final String sql = multiRowInsert(INSERT_DESTINATIONS, DESTINATION_ROW, to - from);
+
+            try (final PreparedStatement insertDestinations = conn.prepareStatement(sql)) {
+                int param = 1;
+                for (int i = from; i < to; i++) {
+                    insertDestinations.setInt(param++, messageIds.get(i));
+                    insertDestinations.setString(param++, usernames.get(i));
+                }
+                insertDestinations.executeUpdate();
+            }
         }
     }
 
     @Override
     public void sendMessage(ChatMessage chatMessage) throws IOException {
-        final Set<String> recipients;
-        final Message message;
+        sendMessages(Collections.singletonList(chatMessage));
+    }
+
+    @Override
+    public void sendMessages(List<ChatMessage> chatMessages) throws IOException {
+        if (chatMessages.isEmpty()) return;
+
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
         ) {
-            if (chatMessage.forGroup()) {
-                final String toGroup = chatMessage.getToGroup().get();
-                recipients = getAllUsersInGroup(toGroup, conn);
-                message = new Message(
-                        chatMessage.getSentAt(),
-                        chatMessage.getMessageContent(),
-                        chatMessage.getFromName(),
-                        toGroup
-                );
-            } else {
-                recipients = Collections.singleton(chatMessage.getToUsername());
-                message = new Message(
-                        chatMessage.getSentAt(),
-                        chatMessage.getMessageContent(),
-                        chatMessage.getFromName()
-                );
+            final List<Set<String>> allRecipients = resolveRecipients(chatMessages, conn);
+
+            // Messages without anyone to receive them are not worth storing. Messages delivered directly are still
+            // stored, but are only left waiting for the recipients they have not reached yet.
+            final List<Message> messages = new ArrayList<>(chatMessages.size());
+            final List<Set<String>> recipients = new ArrayList<>(chatMessages.size());
+            for (int i = 0; i < chatMessages.size(); i++) {
+                if (!allRecipients.get(i).isEmpty()) {
+                    messages.add(toRow(chatMessages.get(i)));
+                    recipients.add(waitingRecipients(allRecipients.get(i), chatMessages.get(i).getDeliveredTo()));
+                }
             }
 
-            insertMessageForAllRecipients(message, recipients, conn);
+            if (messages.isEmpty()) return;
+
+            conn.setAutoCommit(false);
+            insertMessages(messages, conn);
+            insertDestinations(messages, recipients, conn);
+            conn.commit();
         } catch (SQLException e) {
             throw new IOException(e.getMessage());
         }
     }
 
     /**
-     * Removes the given user as a recipient of the given message.
-     * If there are no more recipients then the message is deleted entirely
+     * Rounds the number of users in an IN clause up to a power of two, so that only a few different queries are ever
+     * prepared and kept by the connection pool
      *
-     * @param messageId  id of message
-     * @param toUsername recipient of message to remove
-     * @param conn       connection to database
+     * @param numberOfUsers number of users to look for
+     * @return number of placeholders to put in the IN clause
      */
-    private void removeMessage(int messageId, String toUsername, Connection conn) throws SQLException {
-        try (
-                final PreparedStatement deleteRecipient = conn.prepareStatement(DELETE_RECIPIENT);
-                final PreparedStatement deleteUnreferencedMessages = conn.prepareStatement(DELETE_MESSAGES_WITHOUT_RECIPIENTS);
-        ) {
-            conn.setAutoCommit(false);
-            // Delete as recipient
-            deleteRecipient.setInt(1, messageId);
-            deleteRecipient.setString(2, toUsername);
-            deleteRecipient.executeUpdate();
+    private static int inClauseSize(int numberOfUsers) {
+        return numberOfUsers <= 1 ? 1 : Integer.highestOneBit(numberOfUsers - 1) << 1;
+    }
 
-            // Delete messages with no recipients left
-            deleteUnreferencedMessages.executeUpdate();
+    /**
+     * Creates the query for the oldest messages for the given number of users
+     *
+     * @param numberOfPlaceholders number of placeholders in the IN clause
+     * @return query with the placeholders for users followed by one for the limit
+     */
+    private static String messagesForUsersQuery(int numberOfPlaceholders) {
+        final StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < numberOfPlaceholders; i++) {
+            if (i > 0) placeholders.append(", ");
+            placeholders.append('?');
+        }
+        return String.format(GET_MESSAGES_FOR_USERS_OLDEST_FIRST, placeholders);
+    }
 
-            // Commit
-            conn.commit();
+    /**
+     * Removes the recipients of the given messages in a single batch. Messages left without recipients are deleted
+     * later by {@link MessagingDatabaseConnection#removeDeliveredMessages()}.
+     *
+     * @param messageIds  ids of messages taken
+     * @param toUsernames recipient that took each message
+     * @param conn        connection to database, in a transaction
+     */
+    private void removeRecipients(List<Integer> messageIds, List<String> toUsernames, Connection conn) throws SQLException {
+        try (final PreparedStatement deleteRecipient = conn.prepareStatement(DELETE_RECIPIENT)) {
+            for (int i = 0; i < messageIds.size(); i++) {
+                deleteRecipient.setInt(1, messageIds.get(i));
+                deleteRecipient.setString(2, toUsernames.get(i));
+                deleteRecipient.addBatch();
+            }
+            deleteRecipient.executeBatch();
         }
     }
 
     @Override
     public Optional<ChatMessage> getNextMessageForUser(Set<String> usernames) throws IOException {
+        return takeMessagesForUsers(usernames, 1).stream().findFirst();
+    }
+
+    @Override
+    public List<ChatMessage> takeMessagesForUsers(Set<String> usernames, int limit) throws IOException {
+        final List<ChatMessage> messages = new ArrayList<>();
+        if (usernames.isEmpty() || limit <= 0) return messages;
+
+        final int placeholders = inClauseSize(usernames.size());
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
-                final PreparedStatement getNextMessageForUsers = conn.prepareStatement(GET_MESSAGES_FOR_TWO_USERS_LIMIT_ONE_OLDEST_FIRST);
+                final Connection conn = connectionProvider.getConnection();
+                final PreparedStatement getMessagesForUsers = conn.prepareStatement(messagesForUsersQuery(placeholders))
         ) {
-            // Add clients to IN clause
-            final Iterator<String> recipientIter = usernames.iterator();
-            for (int i = 0; i < 2; i++) {
-                if (recipientIter.hasNext()) {
-                    getNextMessageForUsers.setString(i + 1, recipientIter.next());
-                } else {
-                    getNextMessageForUsers.setString(i + 1, null);
+            conn.setAutoCommit(false);
+
+            // Add clients to IN clause, repeating the last one to fill the placeholders left over
+            int param = 1;
+            String username = null;
+            for (String user : usernames) {
+                username = user;
+                getMessagesForUsers.setString(param++, username);
+            }
+            while (param <= placeholders) {
+                getMessagesForUsers.setString(param++, username);
+            }
+            getMessagesForUsers.setInt(param, limit);
+
+            final List<Integer> messageIds = new ArrayList<>();
+            final List<String> toUsernames = new ArrayList<>();
+            try (final ResultSet rs = getMessagesForUsers.executeQuery()) {
+                while (rs.next()) {
+                    final Timestamp sentAt = rs.getTimestamp("sentAt");
+                    final String fromName = rs.getString("fromUsername");
+                    final String toUsername = rs.getString("toUsername");
+                    final String toGroup = rs.getString("toGroup");
+                    final String messageContent = rs.getString("contents");
+
+                    messageIds.add(rs.getInt("messageId"));
+                    toUsernames.add(toUsername);
+                    final ChatMessage chatMessage = new ChatMessage(sentAt, fromName, toUsername, toGroup, messageContent);
+                    chatMessage.setSequenceNumber(rs.getLong("sequenceNumber"));
+                    messages.add(chatMessage);
                 }
             }
 
-            // Query
-            final ResultSet rs = getNextMessageForUsers.executeQuery();
-
-            if (!rs.next()) {
-                return Optional.empty();
+            if (!messages.isEmpty()) {
+                removeRecipients(messageIds, toUsernames, conn);
             }
+            conn.commit();
 
-            // Construct message
-            final Timestamp sentAt = rs.getTimestamp("sentAt");
-            final String fromName = rs.getString("fromUsername");
-            final String toUsername = rs.getString("toUsername");
-            final String toGroup = rs.getString("toGroup");
-            final String messageContent = rs.getString("contents");
-            final int messageId = rs.getInt("messageId");
-
-            removeMessage(messageId, toUsername, conn);
-
-            return Optional.of(new ChatMessage(sentAt, fromName, toUsername, toGroup, messageContent));
+            return messages;
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
 
+    @Override
+    public int removeDeliveredMessages() throws IOException {
+        try (
+                final Connection conn = connectionProvider.getConnection();
+                final PreparedStatement deleteUnreferencedMessages = conn.prepareStatement(DELETE_MESSAGES_WITHOUT_RECIPIENTS)
+        ) {
+            conn.setAutoCommit(true);
+            return deleteUnreferencedMessages.executeUpdate();
         } catch (SQLException e) {
             throw new IOException(e.getMessage());
         }
@@ -341,7 +550,7 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
     @Override
     public void registerUser(String username) throws IOException {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement insertUser = conn.prepareStatement(INSERT_USER)
         ) {
             conn.setAutoCommit(true);
@@ -355,7 +564,7 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
     @Override
     public void removeUser(String username) throws IOException {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement deleteUser = conn.prepareStatement(DELETE_USER)
         ) {
             conn.setAutoCommit(true);
@@ -369,7 +578,7 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
     @Override
     public void addUserToGroup(String username, String groupname) throws IOException {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement insertGroupIfNotExist = conn.prepareStatement(INSERT_GROUP_IF_NOT_EXIST);
                 final PreparedStatement insertUserIntoGroup = conn.prepareStatement(INSERT_USER_INTO_GROUP)
         ) {
@@ -390,7 +599,7 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
     @Override
     public void removeUserFromGroup(String username, String groupname) throws IOException {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement removeUserFromGroup = conn.prepareStatement(REMOVE_USER_FROM_GROUP)
         ) {
             conn.setAutoCommit(true);
@@ -404,7 +613,7 @@ public class MessagingDatabaseConnection implements UserGroupRepository, Message
 
     @Override
     public Set<String> getAllUsersInGroup(String groupname) throws IOException {
-        try (final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD)) {
+        try (final Connection conn = connectionProvider.getConnection()) {
             return getAllUsersInGroup(groupname, conn);
         } catch (SQLException e) {
             throw new IOException(e.getMessage());
@@ -0,0 +1,86 @@
+package node.jdbc;
+
+/**
+ * Snapshot of the state of a connection pool
+ */
+public class PoolStatistics {
+
+    private final int totalConnections;
+    private final int idleConnections;
+    private final long borrowCount;
+    private final long createdCount;
+    private final long validationFailures;
+    private final long borrowTimeouts;
+    private final long totalWaitMillis;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    PoolStatistics(int totalConnections, int idleConnections, long borrowCount, long createdCount,
+                   long validationFailures, long borrowTimeouts, long totalWaitMillis,
+                   long statementCacheHits, long statementCacheMisses) {
+        this.totalConnections = totalConnections;
+        this.idleConnections = idleConnections;
+        this.borrowCount = borrowCount;
+        this.createdCount = createdCount;
+        this.validationFailures = validationFailures;
+        this.borrowTimeouts = borrowTimeouts;
+        this.totalWaitMillis = totalWaitMillis;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getActiveConnections() {
+        return totalConnections - idleConnections;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getCreatedCount() {
+        return createdCount;
+    }
+
+    public long getValidationFailures() {
+        return validationFailures;
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts;
+    }
+
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics{" +
+                "totalConnections=" + totalConnections +
+                ", idleConnections=" + idleConnections +
+                ", borrowCount=" + borrowCount +
+                ", createdCount=" + createdCount +
+                ", validationFailures=" + validationFailures +
+                ", borrowTimeouts=" + borrowTimeouts +
+                ", totalWaitMillis=" + totalWaitMillis +
+                ", statementCacheHits=" + statementCacheHits +
+                ", statementCacheMisses=" + statementCacheMisses +
+                '}';
+    }
+}
@@ -0,0 +1,396 @@
+package node.jdbc;
+
+import logging.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a bounded number of database connections open and lends them out to the repositories.
+ * <p>
+ * Connections handed out are wrappers: closing them returns the underlying connection to the pool, and statements
+ * prepared through them are kept prepared on that connection, so closing a statement only clears its parameters.
+ * Only the most recently used statements are kept on each connection.
+ * Connections are validated before being lent out, and replaced if they have gone stale.
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+
+    private static final String MARIADB_CONNECTION_STRING = "jdbc:mariadb://jm354.host.cs.st-andrews.ac.uk/jm354_distsys";
+    private static final String MARIADB_USERNAME = "jm354";
+    private static final String MARIADB_PASSOWRD = "722Em!9LLknjhZ";
+
+    private static final String EMBEDDED_CONNECTION_PREFIX = "jdbc:h2:";
+    private static final String EMBEDDED_IN_MEMORY_PREFIX = "mem:";
+    private static final String EMBEDDED_OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    private static final String EMBEDDED_FILE_OPTIONS = ";AUTO_SERVER=TRUE";
+    private static final String EMBEDDED_IN_MEMORY_OPTIONS = ";DB_CLOSE_DELAY=-1";
+    private static final String EMBEDDED_USERNAME = "sa";
+    private static final String EMBEDDED_PASSWORD = "";
+
+    private static final int VALIDATION_TIMEOUT_SECS = 2;
+    private static final int BORROW_TIMEOUT_SECS = 10;
+
+    /**
+     * Most statements kept prepared on each connection. The least recently used is closed to make room for another.
+     */
+    static final int MAX_CACHED_STATEMENTS = 64;
+
+    private final Logger logger = LoggerFactory.getLogger();
+    private final String connectionString;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    public PooledConnectionProvider(String connectionString, String username, String password, int maxSize) {
+        this.connectionString = connectionString;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates a pool of connections to the shared MariaDB database
+     *
+     * @param maxSize maximum number of connections to keep open
+     * @return pool of connections to the shared database
+     */
+    public static PooledConnectionProvider forMariaDb(int maxSize) {
+        return new PooledConnectionProvider(MARIADB_CONNECTION_STRING, MARIADB_USERNAME, MARIADB_PASSOWRD, maxSize);
+    }
+
+    /**
+     * Creates a pool of connections to an H2 database embedded in this process, running in MySQL compatibility mode.
+     * File databases are opened in mixed mode, so that other nodes on the same machine can share them.
+     *
+     * @param path    path of the database file, or "mem:name" for a database that only lives in memory
+     * @param maxSize maximum number of connections to keep open
+     * @return pool of connections to the embedded database
+     */
+    public static PooledConnectionProvider forEmbedded(String path, int maxSize) {
+        final String options = path.startsWith(EMBEDDED_IN_MEMORY_PREFIX)
+                ? EMBEDDED_OPTIONS + EMBEDDED_IN_MEMORY_OPTIONS
+                : EMBEDDED_OPTIONS + EMBEDDED_FILE_OPTIONS;
+
+        return new PooledConnectionProvider(EMBEDDED_CONNECTION_PREFIX + path + options, EMBEDDED_USERNAME, EMBEDDED_PASSWORD, maxSize);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed.");
+
+        final long startTime = System.nanoTime();
+        try {
+            final PooledConnection pooled = borrow();
+            borrowCount.incrementAndGet();
+            return pooled.lend();
+        } finally {
+            totalWaitNanos.addAndGet(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Takes a valid idle connection, opens a new one if the pool is not full, or waits for one to be returned
+     *
+     * @return a valid connection that is not in use
+     * @throws SQLException if unable to connect or no connection was returned in time
+     */
+    private PooledConnection borrow() throws SQLException {
+        while (true) {
+            PooledConnection pooled = idle.poll();
+
+            if (pooled == null) {
+                pooled = tryCreate();
+            }
+
+            if (pooled == null) {
+                try {
+                    pooled = idle.poll(BORROW_TIMEOUT_SECS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection.");
+                }
+
+                if (pooled == null) {
+                    borrowTimeouts.incrementAndGet();
+                    throw new SQLException("Timed out waiting for a database connection.");
+                }
+            }
+
+            if (pooled.isValid()) {
+                return pooled;
+            }
+
+            validationFailures.incrementAndGet();
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Opens a new connection if the pool has not reached its maximum size
+     *
+     * @return new connection, or null if the pool is full
+     * @throws SQLException if unable to connect
+     */
+    private PooledConnection tryCreate() throws SQLException {
+        int current;
+        do {
+            current = totalConnections.get();
+            if (current >= maxSize) return null;
+        } while (!totalConnections.compareAndSet(current, current + 1));
+
+        try {
+            final Connection physical = connect();
+            createdCount.incrementAndGet();
+            return new PooledConnection(physical);
+        } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a physical connection through the driver that accepts the connection string. The driver is looked up
+     * directly, as older MariaDB drivers throw on connection strings meant for other drivers.
+     */
+    private Connection connect() throws SQLException {
+        final Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+
+        final Connection physical = DriverManager.getDriver(connectionString).connect(connectionString, properties);
+        if (physical == null) throw new SQLException("No driver accepted " + connectionString);
+        return physical;
+    }
+
+    /**
+     * Closes the connection and frees its space in the pool
+     */
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    /**
+     * Hands a connection back to the pool once the borrower has closed it
+     */
+    private void giveBack(PooledConnection pooled) {
+        if (closed || !pooled.reset()) {
+            discard(pooled);
+        } else {
+            idle.offer(pooled);
+        }
+    }
+
+    /**
+     * @return snapshot of the current state of this pool
+     */
+    public PoolStatistics getStatistics() {
+        return new PoolStatistics(
+                totalConnections.get(),
+                idle.size(),
+                borrowCount.get(),
+                createdCount.get(),
+                validationFailures.get(),
+                borrowTimeouts.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()),
+                statementCacheHits.get(),
+                statementCacheMisses.get()
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool, along with the statements that have been prepared on it
+     */
+    private class PooledConnection implements InvocationHandler {
+
+        private final Connection physical;
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= MAX_CACHED_STATEMENTS) return false;
+
+                        try {
+                            eldest.getValue().close();
+                        } catch (SQLException ignored) {
+                        }
+                        return true;
+                    }
+                };
+
+        private Connection lent = null;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * @return a wrapper of this connection for a single borrower
+         */
+        private Connection lend() {
+            lent = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    this
+            );
+            return lent;
+        }
+
+        private boolean isValid() {
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_SECS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Rolls back anything the borrower left uncommitted so the next borrower starts cleanly
+         *
+         * @return false if the connection could not be reset and should be discarded
+         */
+        private boolean reset() {
+            try {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                return true;
+            } catch (SQLException e) {
+                logger.warning("Discarding pooled connection: " + e.getMessage());
+                return false;
+            }
+        }
+
+        private void closePhysical() {
+            for (PreparedStatement statement : statements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            statements.clear();
+
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+            }
+        }
+
+        /**
+         * Returns the statement prepared earlier for this query, or prepares it if this is the first time
+         */
+        private PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            final String key = autoGeneratedKeys + ":" + sql;
+
+            PreparedStatement statement = statements.get(key);
+            if (statement != null && !statement.isClosed()) {
+                statementCacheHits.incrementAndGet();
+            } else {
+                statementCacheMisses.incrementAndGet();
+                statement = physical.prepareStatement(sql, autoGeneratedKeys);
+                statements.put(key, statement);
+            }
+
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new CachedStatement(statement)
+            );
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (lent == proxy) {
+                        lent = null;
+                        giveBack(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return lent != proxy;
+            }
+
+            if (lent != proxy) throw new SQLException("Connection has been returned to the pool.");
+
+            if (method.getName().equals("prepareStatement")) {
+                if (args.length == 1) {
+                    return prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+                } else if (args.length == 2 && args[1] instanceof Integer) {
+                    return prepare((String) args[0], (Integer) args[1]);
+                }
+            }
+
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * Wraps a statement kept prepared by the pool, so that closing it only clears it for the next borrower. Any open
+     * result set is closed too, as it would be if the statement itself were closed.
+     */
+    private static class CachedStatement implements InvocationHandler {
+
+        private final PreparedStatement statement;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close")) {
+                final ResultSet resultSet = statement.getResultSet();
+                if (resultSet != null) resultSet.close();
+                statement.clearParameters();
+                statement.clearBatch();
+                return null;
+            }
+
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -13,10 +13,6 @@ import java.util.logging.Logger;
 
 public class RingDatabaseConnection implements RingRepository {
 
-    private static final String CONNECTION_STRING = "jdbc:mariadb://jm354.host.cs.st-andrews.ac.uk/jm354_distsys";
-    private static final String USERNAME = "jm354";
-    private static final String PASSOWRD = "722Em!9LLknjhZ";
-
     private static final String NODE_TABLE_NAME = "nodes";
     private static final String COORDINATOR_TABLE_NAME = "coordinators";
 
@@ -47,6 +43,11 @@ public class RingDatabaseConnection implements RingRepository {
             "SELECT n.*, c.coordinatorId FROM " + NODE_TABLE_NAME + " n " +
                     "LEFT JOIN " + COORDINATOR_TABLE_NAME + " c ON c.coordinatorId ";
 
+    private static final String SELECT_BY_ID =
+            "SELECT n.*, c.coordinatorId FROM " + NODE_TABLE_NAME + " n " +
+                    "LEFT JOIN " + COORDINATOR_TABLE_NAME + " c ON c.coordinatorId " +
+                    "WHERE n.nodeId = ?";
+
     private static final String SELECT_ALL_WITH_SUCCESSOR =
             "SELECT n.*, c.coordinatorId FROM " + NODE_TABLE_NAME + " n " +
                     "LEFT JOIN " + COORDINATOR_TABLE_NAME + " c ON c.coordinatorId " +
@@ -77,15 +78,18 @@ public class RingDatabaseConnection implements RingRepository {
             "INSERT INTO " + COORDINATOR_TABLE_NAME + " VALUES (?, True) ON DUPLICATE KEY UPDATE coordinatorId = ?";
 
     private final Logger logger = LoggerFactory.getLogger();
+    private final ConnectionProvider connectionProvider;
     private final String nodelistpath;
     private final boolean doFullRestart;
 
     /**
      * Creates a database ring store instance with the path to the file it can use to initialize the database.
      *
-     * @param nodelistpath path to file with node ids and socket addresses
+     * @param connectionProvider source of connections to the database
+     * @param nodelistpath       path to file with node ids and socket addresses
      */
-    public RingDatabaseConnection(String nodelistpath, boolean doFullRestart) {
+    public RingDatabaseConnection(ConnectionProvider connectionProvider, String nodelistpath, boolean doFullRestart) {
+        this.connectionProvider = connectionProvider;
         this.nodelistpath = nodelistpath;
         this.doFullRestart = doFullRestart;
     }
@@ -216,7 +220,7 @@ public class RingDatabaseConnection implements RingRepository {
         Connection conn = null;
 
         try {
-            conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+            conn = connectionProvider.getConnection();
             if (doFullRestart) {
                 dropEverything(conn);
             }
@@ -264,7 +268,7 @@ public class RingDatabaseConnection implements RingRepository {
         ResultSet rs = null;
 
         try {
-            conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+            conn = connectionProvider.getConnection();
 
             ps = conn.prepareStatement(SELECT_ALL);
             rs = ps.executeQuery();
@@ -276,18 +280,45 @@ public class RingDatabaseConnection implements RingRepository {
             e.printStackTrace();
             logger.warning(e.getMessage());
         } finally {
-            closeQuietly(conn);
-            closeQuietly(ps);
             closeQuietly(rs);
+            closeQuietly(ps);
+            closeQuietly(conn);
         }
 
         return virtualNodes;
     }
 
+    @Override
+    public Optional<VirtualNode> getNode(int nodeId) {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+
+        try {
+            conn = connectionProvider.getConnection();
+
+            ps = conn.prepareStatement(SELECT_BY_ID);
+            ps.setInt(1, nodeId);
+            rs = ps.executeQuery();
+
+            if (rs.next()) {
+                return Optional.of(nodeFromRow(rs));
+            }
+        } catch (SQLException e) {
+            logger.warning(e.getMessage());
+        } finally {
+            closeQuietly(rs);
+            closeQuietly(ps);
+            closeQuietly(conn);
+        }
+
+        return Optional.empty();
+    }
+
     @Override
     public void updateCoordinator(int newCoordinatorId) {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(INSERT_COORDINATOR)
         ) {
 
@@ -305,7 +336,7 @@ public class RingDatabaseConnection implements RingRepository {
     @Override
     public void setNodeSuccessor(int nodeId, int successorId) {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(INSERT_SUCCESSOR)
         ) {
 
@@ -322,7 +353,7 @@ public class RingDatabaseConnection implements RingRepository {
     @Override
     public void removeNodeSuccessor(int nodeId) {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(REMOVE_SUCCESSOR)
         ) {
 
@@ -345,7 +376,7 @@ public class RingDatabaseConnection implements RingRepository {
         ResultSet rs = null;
 
         try {
-            conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+            conn = connectionProvider.getConnection();
 
             ps = conn.prepareStatement(SELECT_ALL_WITH_SUCCESSOR);
             rs = ps.executeQuery();
@@ -356,9 +387,9 @@ public class RingDatabaseConnection implements RingRepository {
         } catch (SQLException e) {
             logger.warning(e.getMessage());
         } finally {
-            closeQuietly(conn);
-            closeQuietly(ps);
             closeQuietly(rs);
+            closeQuietly(ps);
+            closeQuietly(conn);
         }
 
         return virtualNodes;
@@ -368,7 +399,7 @@ public class RingDatabaseConnection implements RingRepository {
     public int getSizeOfRing() {
         int count = 0;
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement nodeExistQuery = conn.prepareStatement(COUNT_NODES_IN_RING);
                 final ResultSet rs = nodeExistQuery.executeQuery()
         ) {
@@ -384,7 +415,7 @@ public class RingDatabaseConnection implements RingRepository {
     @Override
     public void insertIntoRing(int predecessorId, int successorId, int newNodeId) {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement ps = conn.prepareStatement(INSERT_SUCCESSOR)
         ) {
 
@@ -408,7 +439,7 @@ public class RingDatabaseConnection implements RingRepository {
     @Override
     public void removeFromRing(int predecessorId, int successorId, int nodeToRemove) {
         try (
-                final Connection conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+                final Connection conn = connectionProvider.getConnection();
                 final PreparedStatement removeStatement = conn.prepareStatement(REMOVE_SUCCESSOR);
                 final PreparedStatement insertStatement = conn.prepareStatement(INSERT_SUCCESSOR)
         ) {
@@ -437,7 +468,7 @@ public class RingDatabaseConnection implements RingRepository {
         ResultSet rs = null;
 
         try {
-            conn = DriverManager.getConnection(CONNECTION_STRING, USERNAME, PASSOWRD);
+            conn = connectionProvider.getConnection();
 
             ps = conn.prepareStatement(SELECT_ALL_WITH_SUCCESSOR_AND_IDS_GREATER_THAN);
             ps.setInt(1, minId);
@@ -449,9 +480,9 @@ public class RingDatabaseConnection implements RingRepository {
         } catch (SQLException e) {
             logger.warning(e.getMessage());
         } finally {
-            closeQuietly(conn);
-            closeQuietly(ps);
             closeQuietly(rs);
+            closeQuietly(ps);
+            closeQuietly(conn);
         }
 
         return virtualNodes;
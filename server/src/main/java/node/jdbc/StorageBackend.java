@@ -0,0 +1,15 @@
+package node.jdbc;
+
+/**
+ * Where the ring and message repositories are stored
+ */
+public enum StorageBackend {
+    /**
+     * The shared remote MariaDB database
+     */
+    MARIADB,
+    /**
+     * An H2 database embedded in the node process, shared with other nodes on the same machine through its file
+     */
+    EMBEDDED
+}
@@ -0,0 +1,34 @@
+package node.nodemessaging;
+
+import node.clientmessaging.messages.ChatMessage;
+
+import java.io.Serializable;
+
+/**
+ * Chat message carried around the ring by a token, along with the node that put it there
+ */
+public class CarriedMessage implements Serializable {
+    private int originId;
+    private ChatMessage message;
+
+    public CarriedMessage(int originId, ChatMessage message) {
+        this.originId = originId;
+        this.message = message;
+    }
+
+    public int getOriginId() {
+        return originId;
+    }
+
+    public ChatMessage getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "CarriedMessage{" +
+                "originId=" + originId +
+                ", to=" + message.getToUsername() +
+                '}';
+    }
+}
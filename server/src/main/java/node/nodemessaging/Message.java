@@ -1,6 +1,8 @@
 package node.nodemessaging;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 public class Message implements Serializable {
 
@@ -42,21 +44,26 @@ public class Message implements Serializable {
         return (T) payload;
     }
 
-    public byte[] toBytes() throws IOException {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            final ObjectOutput out = new ObjectOutputStream(bos);
-            out.writeObject(this);
-            out.flush();
-
-            return bos.toByteArray();
-        }
+    /**
+     * Encodes this message using the binary wire format
+     *
+     * @return bytes of encoded message
+     * @see MessageCodec
+     */
+    public byte[] toBytes() {
+        return MessageCodec.encode(this);
     }
 
-    public static Message fromBytes(byte[] bytes) throws IOException, ClassNotFoundException {
-        final ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
-        try (ObjectInput in = new ObjectInputStream(bis)) {
-            return (Message) in.readObject();
-        }
+    /**
+     * Decodes a message from the binary wire format
+     *
+     * @param bytes encoded message
+     * @return decoded message
+     * @throws IOException if the bytes are not a valid message
+     * @see MessageCodec
+     */
+    public static Message fromBytes(byte[] bytes) throws IOException {
+        return MessageCodec.decode(ByteBuffer.wrap(bytes));
     }
 
     @Override
@@ -0,0 +1,425 @@
+package node.nodemessaging;
+
+import node.clientmessaging.messages.ChatMessage;
+import node.electionhandlers.ElectionMethod;
+import node.nodemessaging.election.ElectionMessageHeader;
+import node.nodemessaging.election.ElectionMessageType;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary wire format for node messages.
+ * <p>
+ * Layout: version (1 byte), message type (1 byte), source id (varint), payload tag (1 byte), payload.
+ * Enum values are written as their ordinal in a single byte, so new values must only ever be appended.
+ * Integers are written as zig-zag encoded varints, so small IDs take a single byte. Strings are written as their
+ * UTF-8 length plus one followed by their bytes, with a length of zero meaning null.
+ */
+public final class MessageCodec {
+
+    /**
+     * Version of the wire format, to be incremented whenever the layout changes
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * Most bytes a zig-zag encoded int can take up
+     */
+    public static final int MAX_VAR_INT_SIZE = 5;
+
+    private static final byte NO_PAYLOAD = 0;
+    private static final byte SUCCESSOR_PAYLOAD = 1;
+    private static final byte ELECTION_PAYLOAD = 2;
+    private static final byte TOKEN_PAYLOAD = 3;
+
+    private static final byte NO_ELECTION_PAYLOAD = 0;
+    private static final byte RING_BASED_ELECTION = 1;
+    private static final byte RING_BASED_COORDINATOR = 2;
+    private static final byte CHANG_ROBERTS_ELECTION = 3;
+    private static final byte CHANG_ROBERTS_COORDINATOR = 4;
+    private static final byte BULLY_COORDINATOR = 5;
+
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+    private static final ElectionMethod[] ELECTION_METHODS = ElectionMethod.values();
+    private static final ElectionMessageType[] ELECTION_MESSAGE_TYPES = ElectionMessageType.values();
+
+    private MessageCodec() {
+    }
+
+    /**
+     * Encodes the message into a newly allocated array
+     *
+     * @param message message to encode
+     * @return bytes of encoded message
+     */
+    public static byte[] encode(Message message) {
+        final ByteBuffer buffer = ByteBuffer.allocate(encodedSize(message));
+        encode(message, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Encodes the message into the buffer, starting at its current position
+     *
+     * @param message message to encode
+     * @param buffer  buffer with at least {@link MessageCodec#encodedSize(Message)} bytes remaining
+     */
+    public static void encode(Message message, ByteBuffer buffer) {
+        buffer.put(VERSION);
+        buffer.put((byte) message.getType().ordinal());
+        putVarInt(buffer, message.getSrcId());
+
+        final Object payload = message.getPayload(Object.class);
+        if (payload == null) {
+            buffer.put(NO_PAYLOAD);
+        } else if (payload instanceof SuccessorMessage) {
+            buffer.put(SUCCESSOR_PAYLOAD);
+            putVarInt(buffer, ((SuccessorMessage) payload).getSuccessorId());
+        } else if (payload instanceof ElectionMessageHeader) {
+            buffer.put(ELECTION_PAYLOAD);
+            encodeElectionHeader((ElectionMessageHeader) payload, buffer);
+        } else if (payload instanceof TokenMessage) {
+            buffer.put(TOKEN_PAYLOAD);
+            encodeToken((TokenMessage) payload, buffer);
+        } else {
+            throw new IllegalArgumentException("Unable to encode payload of type " + payload.getClass().getName());
+        }
+    }
+
+    private static void encodeToken(TokenMessage token, ByteBuffer buffer) {
+        putVarInt(buffer, token.getPartition());
+        putVarLong(buffer, token.getGeneration());
+        putVarLong(buffer, token.getSequenceNumber());
+        putVarInt(buffer, token.getCarriedMessages().size());
+
+        for (CarriedMessage carried : token.getCarriedMessages()) {
+            final ChatMessage message = carried.getMessage();
+            putVarInt(buffer, carried.getOriginId());
+            putVarLong(buffer, message.getSentAt() == null ? -1 : message.getSentAt().getTime());
+            putString(buffer, message.getFromName());
+            putString(buffer, message.getToUsername());
+            putString(buffer, message.getMessageContent());
+            putVarLong(buffer, message.getSequenceNumber());
+        }
+    }
+
+    private static void encodeElectionHeader(ElectionMessageHeader header, ByteBuffer buffer) {
+        buffer.put((byte) header.getElectionMethod().ordinal());
+        buffer.put((byte) header.getType().ordinal());
+
+        final Object payload = header.getPayload(Object.class);
+        if (payload == null) {
+            buffer.put(NO_ELECTION_PAYLOAD);
+        } else if (payload instanceof node.nodemessaging.election.ringbased.ElectionMessage) {
+            buffer.put(RING_BASED_ELECTION);
+            final List<Integer> candidates = ((node.nodemessaging.election.ringbased.ElectionMessage) payload).getCandidates();
+            putVarInt(buffer, candidates.size());
+            for (int candidate : candidates) {
+                putVarInt(buffer, candidate);
+            }
+        } else if (payload instanceof node.nodemessaging.election.ringbased.CoordinatorMessage) {
+            buffer.put(RING_BASED_COORDINATOR);
+            putVarInt(buffer, ((node.nodemessaging.election.ringbased.CoordinatorMessage) payload).getCoordinatorId());
+        } else if (payload instanceof node.nodemessaging.election.changroberts.ElectionMessage) {
+            buffer.put(CHANG_ROBERTS_ELECTION);
+            putVarInt(buffer, ((node.nodemessaging.election.changroberts.ElectionMessage) payload).getCurrentCandidate());
+        } else if (payload instanceof node.nodemessaging.election.changroberts.CoordinatorMessage) {
+            buffer.put(CHANG_ROBERTS_COORDINATOR);
+            putVarInt(buffer, ((node.nodemessaging.election.changroberts.CoordinatorMessage) payload).getCoordinatorId());
+        } else if (payload instanceof node.nodemessaging.election.bully.CoordinatorMessage) {
+            buffer.put(BULLY_COORDINATOR);
+            putVarInt(buffer, ((node.nodemessaging.election.bully.CoordinatorMessage) payload).getCoordinatorId());
+        } else {
+            throw new IllegalArgumentException("Unable to encode election payload of type " + payload.getClass().getName());
+        }
+    }
+
+    /**
+     * Calculates the exact number of bytes needed to encode the message
+     *
+     * @param message message to be encoded
+     * @return number of bytes the encoded message will take up
+     */
+    public static int encodedSize(Message message) {
+        int size = 3 + varIntSize(message.getSrcId());
+
+        final Object payload = message.getPayload(Object.class);
+        if (payload instanceof SuccessorMessage) {
+            size += varIntSize(((SuccessorMessage) payload).getSuccessorId());
+        } else if (payload instanceof ElectionMessageHeader) {
+            size += electionHeaderSize((ElectionMessageHeader) payload);
+        } else if (payload instanceof TokenMessage) {
+            size += tokenSize((TokenMessage) payload);
+        }
+
+        return size;
+    }
+
+    private static int tokenSize(TokenMessage token) {
+        int size = varIntSize(token.getPartition()) + varLongSize(token.getGeneration())
+                + varLongSize(token.getSequenceNumber())
+                + varIntSize(token.getCarriedMessages().size());
+
+        for (CarriedMessage carried : token.getCarriedMessages()) {
+            size += varIntSize(carried.getOriginId()) + chatMessageSize(carried.getMessage());
+        }
+
+        return size;
+    }
+
+    /**
+     * Calculates the most bytes the message can add to a token carrying it, whichever node put it on the token
+     *
+     * @param message chat message to be carried
+     * @return upper bound on the number of bytes the carried message will take up
+     */
+    public static int carriedSize(ChatMessage message) {
+        return MAX_VAR_INT_SIZE + chatMessageSize(message);
+    }
+
+    private static int chatMessageSize(ChatMessage message) {
+        return varLongSize(message.getSentAt() == null ? -1 : message.getSentAt().getTime())
+                + stringSize(message.getFromName())
+                + stringSize(message.getToUsername())
+                + stringSize(message.getMessageContent())
+                + varLongSize(message.getSequenceNumber());
+    }
+
+    private static int electionHeaderSize(ElectionMessageHeader header) {
+        int size = 3;
+
+        final Object payload = header.getPayload(Object.class);
+        if (payload instanceof node.nodemessaging.election.ringbased.ElectionMessage) {
+            final List<Integer> candidates = ((node.nodemessaging.election.ringbased.ElectionMessage) payload).getCandidates();
+            size += varIntSize(candidates.size());
+            for (int candidate : candidates) {
+                size += varIntSize(candidate);
+            }
+        } else if (payload instanceof node.nodemessaging.election.ringbased.CoordinatorMessage) {
+            size += varIntSize(((node.nodemessaging.election.ringbased.CoordinatorMessage) payload).getCoordinatorId());
+        } else if (payload instanceof node.nodemessaging.election.changroberts.ElectionMessage) {
+            size += varIntSize(((node.nodemessaging.election.changroberts.ElectionMessage) payload).getCurrentCandidate());
+        } else if (payload instanceof node.nodemessaging.election.changroberts.CoordinatorMessage) {
+            size += varIntSize(((node.nodemessaging.election.changroberts.CoordinatorMessage) payload).getCoordinatorId());
+        } else if (payload instanceof node.nodemessaging.election.bully.CoordinatorMessage) {
+            size += varIntSize(((node.nodemessaging.election.bully.CoordinatorMessage) payload).getCoordinatorId());
+        }
+
+        return size;
+    }
+
+    /**
+     * Decodes a single message from the buffer, starting at its current position
+     *
+     * @param buffer buffer containing encoded message
+     * @return decoded message
+     * @throws IOException if the buffer does not contain a valid message for this version of the format
+     */
+    public static Message decode(ByteBuffer buffer) throws IOException {
+        try {
+            final byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException(String.format("Unsupported message version %d", version));
+            }
+
+            final MessageType type = MESSAGE_TYPES[buffer.get()];
+            final int srcId = getVarInt(buffer);
+
+            final byte payloadTag = buffer.get();
+            switch (payloadTag) {
+                case NO_PAYLOAD:
+                    return new Message(type, srcId);
+                case SUCCESSOR_PAYLOAD:
+                    return new Message(type, srcId, new SuccessorMessage(getVarInt(buffer)));
+                case ELECTION_PAYLOAD:
+                    return new Message(type, srcId, decodeElectionHeader(buffer));
+                case TOKEN_PAYLOAD:
+                    return new Message(type, srcId, decodeToken(buffer));
+                default:
+                    throw new IOException(String.format("Unknown payload tag %d", payloadTag));
+            }
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed message.", e);
+        }
+    }
+
+    private static TokenMessage decodeToken(ByteBuffer buffer) throws IOException {
+        final int partition = getVarInt(buffer);
+        final long generation = getVarLong(buffer);
+        final long sequenceNumber = getVarLong(buffer);
+        final int count = getVarInt(buffer);
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException(String.format("Invalid number of carried messages %d", count));
+        }
+
+        final List<CarriedMessage> carriedMessages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int originId = getVarInt(buffer);
+            final long sentAt = getVarLong(buffer);
+            final ChatMessage message = new ChatMessage(sentAt < 0 ? null : new Timestamp(sentAt),
+                    getString(buffer), getString(buffer), null, getString(buffer));
+            message.setSequenceNumber(getVarLong(buffer));
+            carriedMessages.add(new CarriedMessage(originId, message));
+        }
+
+        return new TokenMessage(partition, generation, sequenceNumber, carriedMessages);
+    }
+
+    private static ElectionMessageHeader decodeElectionHeader(ByteBuffer buffer) throws IOException {
+        final ElectionMethod method = ELECTION_METHODS[buffer.get()];
+        final ElectionMessageType type = ELECTION_MESSAGE_TYPES[buffer.get()];
+
+        final byte payloadTag = buffer.get();
+        switch (payloadTag) {
+            case NO_ELECTION_PAYLOAD:
+                return new ElectionMessageHeader(method, type);
+            case RING_BASED_ELECTION:
+                final int count = getVarInt(buffer);
+                final node.nodemessaging.election.ringbased.ElectionMessage electionMessage =
+                        new node.nodemessaging.election.ringbased.ElectionMessage(getVarInt(buffer));
+                for (int i = 1; i < count; i++) {
+                    electionMessage.addCandidate(getVarInt(buffer));
+                }
+                return new ElectionMessageHeader(method, type, electionMessage);
+            case RING_BASED_COORDINATOR:
+                return new ElectionMessageHeader(method, type,
+                        new node.nodemessaging.election.ringbased.CoordinatorMessage(getVarInt(buffer)));
+            case CHANG_ROBERTS_ELECTION:
+                return new ElectionMessageHeader(method, type,
+                        new node.nodemessaging.election.changroberts.ElectionMessage(getVarInt(buffer)));
+            case CHANG_ROBERTS_COORDINATOR:
+                return new ElectionMessageHeader(method, type,
+                        new node.nodemessaging.election.changroberts.CoordinatorMessage(getVarInt(buffer)));
+            case BULLY_COORDINATOR:
+                return new ElectionMessageHeader(method, type,
+                        new node.nodemessaging.election.bully.CoordinatorMessage(getVarInt(buffer)));
+            default:
+                throw new IOException(String.format("Unknown election payload tag %d", payloadTag));
+        }
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length integer
+     */
+    static void putVarInt(ByteBuffer buffer, int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Reads a zig-zag encoded variable length integer
+     */
+    static int getVarInt(ByteBuffer buffer) throws IOException {
+        int zigzag = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = buffer.get();
+            zigzag |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    /**
+     * @return number of bytes the value takes up as a zig-zag encoded varint
+     */
+    static int varIntSize(int value) {
+        int zigzag = (value << 1) ^ (value >> 31);
+        int size = 1;
+        while ((zigzag & ~0x7F) != 0) {
+            size++;
+            zigzag >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length long
+     */
+    static void putVarLong(ByteBuffer buffer, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Reads a zig-zag encoded variable length long
+     */
+    static long getVarLong(ByteBuffer buffer) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final byte b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    /**
+     * @return number of bytes the value takes up as a zig-zag encoded varint
+     */
+    static int varLongSize(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        int size = 1;
+        while ((zigzag & ~0x7FL) != 0) {
+            size++;
+            zigzag >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a nullable string as its UTF-8 length plus one, followed by its bytes
+     */
+    static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            putVarInt(buffer, 0);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(buffer, bytes.length + 1);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a nullable string written by {@link MessageCodec#putString(ByteBuffer, String)}
+     */
+    static String getString(ByteBuffer buffer) throws IOException {
+        final int length = getVarInt(buffer) - 1;
+        if (length < 0) return null;
+        if (length > buffer.remaining()) {
+            throw new IOException(String.format("Invalid string length %d", length));
+        }
+
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return number of bytes the string takes up when written
+     */
+    static int stringSize(String value) {
+        if (value == null) return 1;
+
+        final int length = value.getBytes(StandardCharsets.UTF_8).length;
+        return varIntSize(length + 1) + length;
+    }
+}
@@ -8,5 +8,6 @@ public enum MessageType {
     TOKEN, // Token message
     TOKEN_ACK, // Acknowledgement of received token
     JOIN, // A successor request but for nodes wishing to join the network
+    SHUTDOWN, // Admin request for the receiving node to stop
 
 }
@@ -0,0 +1,56 @@
+package node.nodemessaging;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+public class TokenMessage implements Serializable {
+    private int partition;
+    private long generation;
+    private long sequenceNumber;
+    private List<CarriedMessage> carriedMessages;
+
+    public TokenMessage(int partition, long generation, long sequenceNumber) {
+        this(partition, generation, sequenceNumber, Collections.emptyList());
+    }
+
+    public TokenMessage(int partition, long generation, long sequenceNumber, List<CarriedMessage> carriedMessages) {
+        this.partition = partition;
+        this.generation = generation;
+        this.sequenceNumber = sequenceNumber;
+        this.carriedMessages = carriedMessages;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    /**
+     * @return generation of the token, which increases every time a lost token is replaced
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return number of times the token has been forwarded in its generation, used to spot tokens that were sent
+     * more than once
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public List<CarriedMessage> getCarriedMessages() {
+        return carriedMessages;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenMessage{" +
+                "partition=" + partition +
+                ", generation=" + generation +
+                ", sequenceNumber=" + sequenceNumber +
+                ", carriedMessages=" + carriedMessages.size() +
+                '}';
+    }
+}
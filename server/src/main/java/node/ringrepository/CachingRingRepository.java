@@ -0,0 +1,136 @@
+package node.ringrepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Keeps the ring topology in memory in front of another repository.
+ * <p>
+ * Reads are answered from the cached copy of the node table, which is loaded in a single query the first time it
+ * is needed. Writes go through to the underlying repository and are then applied to the cached copy, so the node
+ * making the changes (usually the coordinator) never has to reload it. Other nodes should call
+ * {@link CachingRingRepository#invalidate()} when they learn the ring has changed.
+ */
+public class CachingRingRepository implements RingRepository {
+
+    private final RingRepository repository;
+
+    /**
+     * Nodes by id, or null if the cache needs to be reloaded
+     */
+    private TreeMap<Integer, VirtualNode> nodes = null;
+
+    public CachingRingRepository(RingRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Drops the cached ring, so that it is reloaded from the underlying repository on the next read
+     */
+    public synchronized void invalidate() {
+        nodes = null;
+    }
+
+    /**
+     * @return the cached nodes, loading them first if necessary
+     */
+    private TreeMap<Integer, VirtualNode> getNodes() {
+        if (nodes == null) {
+            final TreeMap<Integer, VirtualNode> loaded = new TreeMap<>();
+            for (VirtualNode node : repository.getAllNodes()) {
+                loaded.put(node.getNodeId(), node);
+            }
+            nodes = loaded;
+        }
+        return nodes;
+    }
+
+    /**
+     * Replaces the successor of the cached node, if the cache is loaded
+     */
+    private void cacheSuccessor(int nodeId, Integer successorId) {
+        if (nodes == null) return;
+
+        final VirtualNode node = nodes.get(nodeId);
+        if (node != null) {
+            nodes.put(nodeId, node.withSuccessor(successorId));
+        }
+    }
+
+    private static List<VirtualNode> inRing(Iterable<VirtualNode> nodes) {
+        final List<VirtualNode> ringNodes = new ArrayList<>();
+        for (VirtualNode node : nodes) {
+            if (node.getSuccessorId().isPresent()) {
+                ringNodes.add(node);
+            }
+        }
+        return ringNodes;
+    }
+
+    @Override
+    public synchronized List<VirtualNode> getAllNodes() {
+        return new ArrayList<>(getNodes().values());
+    }
+
+    @Override
+    public synchronized Optional<VirtualNode> getNode(int nodeId) {
+        return Optional.ofNullable(getNodes().get(nodeId));
+    }
+
+    @Override
+    public synchronized void updateCoordinator(int newCoordinatorId) {
+        repository.updateCoordinator(newCoordinatorId);
+
+        if (nodes == null) return;
+
+        for (VirtualNode node : new ArrayList<>(nodes.values())) {
+            final boolean isCoordinator = node.getNodeId() == newCoordinatorId;
+            if (node.isCoordinator() != isCoordinator) {
+                nodes.put(node.getNodeId(), node.withCoordinator(isCoordinator));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void setNodeSuccessor(int nodeId, int successorId) {
+        repository.setNodeSuccessor(nodeId, successorId);
+        cacheSuccessor(nodeId, successorId);
+    }
+
+    @Override
+    public synchronized void removeNodeSuccessor(int nodeId) {
+        repository.removeNodeSuccessor(nodeId);
+        cacheSuccessor(nodeId, null);
+    }
+
+    @Override
+    public synchronized List<VirtualNode> getAllNodesWithSuccessors() {
+        return inRing(getNodes().values());
+    }
+
+    @Override
+    public synchronized int getSizeOfRing() {
+        return inRing(getNodes().values()).size();
+    }
+
+    @Override
+    public synchronized void insertIntoRing(int predecessorId, int successorId, int newNodeId) {
+        repository.insertIntoRing(predecessorId, successorId, newNodeId);
+        cacheSuccessor(newNodeId, successorId);
+        cacheSuccessor(predecessorId, newNodeId);
+    }
+
+    @Override
+    public synchronized void removeFromRing(int predecessorId, int successorId, int nodeToRemove) {
+        repository.removeFromRing(predecessorId, successorId, nodeToRemove);
+        cacheSuccessor(predecessorId, successorId);
+        cacheSuccessor(nodeToRemove, null);
+    }
+
+    @Override
+    public synchronized List<VirtualNode> getAllNodesInRingWithIdGreaterThan(int minId) {
+        return inRing(getNodes().tailMap(minId, false).values());
+    }
+}
@@ -1,6 +1,7 @@
 package node.ringrepository;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface RingRepository {
 
@@ -11,6 +12,14 @@ public interface RingRepository {
      */
     List<VirtualNode> getAllNodes();
 
+    /**
+     * Gets the node with the given id
+     *
+     * @param nodeId id of node to get
+     * @return the node, or empty if no node has that id
+     */
+    Optional<VirtualNode> getNode(int nodeId);
+
     /**
      * Assigns a new coordinator
      *
@@ -47,6 +47,22 @@ public class VirtualNode {
         return isCoordinator;
     }
 
+    /**
+     * @param successorId id of the new successor, or null if the node is no longer part of the ring
+     * @return copy of this node with the given successor
+     */
+    public VirtualNode withSuccessor(Integer successorId) {
+        return new VirtualNode(address, coordinatorPort, clientPort, nodeId, successorId, isCoordinator);
+    }
+
+    /**
+     * @param isCoordinator whether the node is the coordinator
+     * @return copy of this node with the given coordinator status
+     */
+    public VirtualNode withCoordinator(boolean isCoordinator) {
+        return new VirtualNode(address, coordinatorPort, clientPort, nodeId, successorId, isCoordinator);
+    }
+
     @Override
     public String toString() {
         return "VirtualNode{" +
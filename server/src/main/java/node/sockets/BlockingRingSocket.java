@@ -0,0 +1,148 @@
+package node.sockets;
+
+import logging.LoggerFactory;
+import node.nodemessaging.Message;
+import node.AddressTranslator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.logging.Logger;
+
+/**
+ * Ring socket using a blocking accept and blocking reads on the callers thread
+ */
+public class BlockingRingSocket implements RingSocket {
+
+    private final Logger logger = LoggerFactory.getLogger();
+    private final AddressTranslator addressTranslator;
+    private final ServerSocket serverSocket;
+
+    private Socket successorSocket = null;
+    private Socket predecessorSocket = null;
+
+    private FrameReader successorReader = null;
+    private FrameWriter successorWriter = null;
+    private FrameReader predecessorReader = null;
+    private FrameWriter predecessorWriter = null;
+
+    public BlockingRingSocket(int myId, AddressTranslator addressTranslator) throws IOException {
+        final InetSocketAddress myAddress = addressTranslator.getSocketAddress(myId);
+
+        this.addressTranslator = addressTranslator;
+        this.serverSocket = new ServerSocket(myAddress.getPort(), 1, myAddress.getAddress());
+    }
+
+    @Override
+    public void updateSuccessor(int successorId) throws IOException {
+        final InetSocketAddress successorAddress = addressTranslator.getSocketAddress(successorId);
+
+        logger.info(String.format("Updating successor to %s", successorAddress.toString()));
+        if (successorSocket != null && !successorSocket.isClosed()) {
+            successorSocket.close();
+        }
+
+        // Buffers are only released once connected, so a failed connect leaves nothing to be released twice
+        final Socket socket = new Socket(successorAddress.getAddress(), successorAddress.getPort());
+        socket.setKeepAlive(true);
+        socket.setTcpNoDelay(true);
+        releaseSuccessorBuffers();
+
+        this.successorSocket = socket;
+        this.successorReader = new FrameReader(socket);
+        this.successorWriter = new FrameWriter(socket);
+    }
+
+    @Override
+    public void updatePredecessor() throws IOException {
+        if (predecessorSocket != null && !predecessorSocket.isClosed()) {
+            predecessorSocket.close();
+        }
+
+        logger.info("Waiting on predecessor connection");
+        final Socket socket = serverSocket.accept();
+        releasePredecessorBuffers();
+
+        predecessorReader = new FrameReader(socket);
+        predecessorWriter = new FrameWriter(socket);
+        predecessorSocket = socket;
+        logger.info(String.format("Predecessor connected from address to %s", predecessorSocket.getRemoteSocketAddress().toString()));
+    }
+
+    /**
+     * Returns the buffers of the successor connection to the pool, clearing them so they are never returned twice
+     */
+    private void releaseSuccessorBuffers() {
+        if (successorReader != null) successorReader.release();
+        if (successorWriter != null) successorWriter.release();
+        successorReader = null;
+        successorWriter = null;
+    }
+
+    /**
+     * Returns the buffers of the predecessor connection to the pool, clearing them so they are never returned twice
+     */
+    private void releasePredecessorBuffers() {
+        if (predecessorReader != null) predecessorReader.release();
+        if (predecessorWriter != null) predecessorWriter.release();
+        predecessorReader = null;
+        predecessorWriter = null;
+    }
+
+    private static void sendWith(FrameWriter writer, Message message) throws IOException {
+        if (writer == null) throw new IOException("Not connected.");
+        writer.write(message);
+    }
+
+    private static ReadResult readWith(FrameReader reader, Integer timeoutSecs) {
+        if (reader == null) return ReadResult.CLOSED;
+        return reader.read(timeoutSecs);
+    }
+
+    @Override
+    public void sendToSuccessor(Message message) throws IOException {
+        sendWith(successorWriter, message);
+    }
+
+    @Override
+    public void sendToPredeccesor(Message message) throws IOException {
+        sendWith(predecessorWriter, message);
+    }
+
+    @Override
+    public ReadResult receiveFromSuccessor(int timeoutSecs) {
+        return readWith(successorReader, timeoutSecs);
+    }
+
+    @Override
+    public ReadResult receiveFromPredecessor(Integer timeoutSecs) {
+        return readWith(predecessorReader, timeoutSecs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.successorSocket != null)
+            this.successorSocket.close();
+
+        if (this.predecessorSocket != null)
+            this.predecessorSocket.close();
+
+        if (this.serverSocket != null)
+            this.serverSocket.close();
+
+        releaseSuccessorBuffers();
+        releasePredecessorBuffers();
+    }
+
+    @Override
+    public boolean isClosedLoop() {
+        if (predecessorSocket == null || successorSocket == null) return false;
+        else return successorSocket.getLocalSocketAddress().equals(predecessorSocket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public boolean acceptsInBackground() {
+        return false;
+    }
+}
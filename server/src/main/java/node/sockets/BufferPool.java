@@ -0,0 +1,43 @@
+package node.sockets;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Shared pool of fixed size buffers, so that connections can be opened and closed without allocating new buffers
+ */
+public class BufferPool {
+
+    public static final int BUFFER_SIZE = 4096;
+
+    private static final int MAX_POOLED = 16;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+
+    private BufferPool() {
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, or allocates a new one if none are available
+     *
+     * @return buffer of {@link BufferPool#BUFFER_SIZE} bytes
+     */
+    public static ByteBuffer acquire() {
+        final ByteBuffer buffer = pool.poll();
+        if (buffer == null) return ByteBuffer.allocate(BUFFER_SIZE);
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers that were not taken from the pool are discarded.
+     *
+     * @param buffer buffer that is no longer in use
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer.capacity() == BUFFER_SIZE && pool.size() < MAX_POOLED) {
+            pool.offer(buffer);
+        }
+    }
+}
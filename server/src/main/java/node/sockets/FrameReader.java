@@ -0,0 +1,109 @@
+package node.sockets;
+
+import node.nodemessaging.Message;
+import node.nodemessaging.MessageCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads length prefixed messages from a connection. One reader should be used for the lifetime of a connection,
+ * as partially read frames are kept between calls when a read times out.
+ */
+public class FrameReader {
+
+    static final int LENGTH_PREFIX_SIZE = 4;
+    /**
+     * Largest frame accepted, so that a corrupt length cannot make the reader allocate without limit
+     */
+    public static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+    private final Socket socket;
+    private final InputStream in;
+
+    private ByteBuffer buffer = BufferPool.acquire();
+    private int frameLength = -1;
+
+    public FrameReader(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = socket.getInputStream();
+        this.buffer.limit(LENGTH_PREFIX_SIZE);
+    }
+
+    /**
+     * Reads the next message from the connection
+     *
+     * @param timeoutSecs time to wait for a complete message, or null to wait forever
+     * @return the message, or whether the read timed out or the connection was closed
+     */
+    public ReadResult read(Integer timeoutSecs) {
+        try {
+            socket.setSoTimeout(timeoutSecs == null ? 0 : timeoutSecs * 1000);
+
+            if (frameLength < 0) {
+                if (!fill()) return ReadResult.CLOSED;
+
+                buffer.flip();
+                frameLength = buffer.getInt();
+                if (frameLength < 0 || frameLength > MAX_FRAME_SIZE) {
+                    return ReadResult.CLOSED;
+                }
+
+                prepareForFrame();
+            }
+
+            if (!fill()) return ReadResult.CLOSED;
+
+            buffer.flip();
+            final Message message = MessageCodec.decode(buffer);
+
+            frameLength = -1;
+            buffer.clear();
+            buffer.limit(LENGTH_PREFIX_SIZE);
+
+            return ReadResult.of(message);
+        } catch (SocketTimeoutException e) {
+            return ReadResult.TIMEOUT;
+        } catch (IOException e) {
+            return ReadResult.CLOSED;
+        }
+    }
+
+    /**
+     * Makes room in the buffer for a frame body of the current frame length, growing it if needed
+     */
+    private void prepareForFrame() {
+        if (buffer.capacity() < frameLength) {
+            BufferPool.release(buffer);
+            buffer = ByteBuffer.allocate(frameLength);
+        }
+
+        buffer.clear();
+        buffer.limit(frameLength);
+    }
+
+    /**
+     * Reads from the stream until the buffer reaches its limit
+     *
+     * @return false if the end of the stream was reached
+     * @throws IOException if reading fails or times out
+     */
+    private boolean fill() throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read < 0) return false;
+            buffer.position(buffer.position() + read);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the buffer used by this reader to the pool
+     */
+    public void release() {
+        BufferPool.release(buffer);
+    }
+}
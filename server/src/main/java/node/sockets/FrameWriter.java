@@ -0,0 +1,53 @@
+package node.sockets;
+
+import node.nodemessaging.Message;
+import node.nodemessaging.MessageCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes length prefixed messages to a connection
+ */
+public class FrameWriter {
+
+    private final OutputStream out;
+
+    private ByteBuffer buffer = BufferPool.acquire();
+
+    public FrameWriter(Socket socket) throws IOException {
+        this.out = socket.getOutputStream();
+    }
+
+    /**
+     * Writes the message and its length as a single frame
+     *
+     * @param message message to write
+     * @throws IOException if the connection is broken
+     */
+    public synchronized void write(Message message) throws IOException {
+        final int length = MessageCodec.encodedSize(message);
+        final int frameSize = FrameReader.LENGTH_PREFIX_SIZE + length;
+
+        if (buffer.capacity() < frameSize) {
+            BufferPool.release(buffer);
+            buffer = ByteBuffer.allocate(frameSize);
+        }
+
+        buffer.clear();
+        buffer.putInt(length);
+        MessageCodec.encode(message, buffer);
+
+        out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+        out.flush();
+    }
+
+    /**
+     * Returns the buffer used by this writer to the pool
+     */
+    public synchronized void release() {
+        BufferPool.release(buffer);
+    }
+}
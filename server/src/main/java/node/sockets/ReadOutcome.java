@@ -0,0 +1,9 @@
+package node.sockets;
+
+public enum ReadOutcome {
+
+    MESSAGE, // A complete message was read
+    TIMEOUT, // No complete message arrived before the timeout, but the connection is still usable
+    CLOSED, // The connection was closed or broken and can no longer be read from
+
+}
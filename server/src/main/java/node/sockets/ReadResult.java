@@ -0,0 +1,51 @@
+package node.sockets;
+
+import node.nodemessaging.Message;
+
+/**
+ * Result of attempting to read a message from a connection
+ */
+public class ReadResult {
+
+    public static final ReadResult TIMEOUT = new ReadResult(ReadOutcome.TIMEOUT, null);
+    public static final ReadResult CLOSED = new ReadResult(ReadOutcome.CLOSED, null);
+
+    private final ReadOutcome outcome;
+    private final Message message;
+
+    private ReadResult(ReadOutcome outcome, Message message) {
+        this.outcome = outcome;
+        this.message = message;
+    }
+
+    /**
+     * @param message message that was read
+     * @return result containing the message
+     */
+    public static ReadResult of(Message message) {
+        return new ReadResult(ReadOutcome.MESSAGE, message);
+    }
+
+    public ReadOutcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return the message that was read, or null if the outcome was not {@link ReadOutcome#MESSAGE}
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    public boolean hasMessage() {
+        return outcome == ReadOutcome.MESSAGE;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadResult{" +
+                "outcome=" + outcome +
+                ", message=" + message +
+                '}';
+    }
+}
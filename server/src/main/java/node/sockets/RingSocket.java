@@ -1,106 +1,75 @@
 package node.sockets;
 
-import logging.LoggerFactory;
 import node.nodemessaging.Message;
-import node.AddressTranslator;
 
-import java.io.*;
-import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.logging.Logger;
+import java.io.IOException;
 
-public class RingSocket {
+/**
+ * Connections to this nodes successor and predecessor in the ring
+ */
+public interface RingSocket {
 
-    private final Logger logger = LoggerFactory.getLogger();
-    private final AddressTranslator addressTranslator;
-    private final ServerSocket serverSocket;
-
-    private Socket successorSocket = null;
-    private Socket predecessorSocket = null;
-
-    public RingSocket(int myId, AddressTranslator addressTranslator) throws IOException {
-        final InetSocketAddress myAddress = addressTranslator.getSocketAddress(myId);
-
-        this.addressTranslator = addressTranslator;
-        this.serverSocket = new ServerSocket(myAddress.getPort(), 1, myAddress.getAddress());
-    }
-
-    public void updateSuccessor(int successorId) throws IOException {
-        final InetSocketAddress successorAddress = addressTranslator.getSocketAddress(successorId);
-
-        logger.info(String.format("Updating successor to %s", successorAddress.toString()));
-        if (successorSocket != null && !successorSocket.isClosed()) {
-            successorSocket.close();
-        }
-
-        this.successorSocket = new Socket(successorAddress.getAddress(), successorAddress.getPort());
-        this.successorSocket.setKeepAlive(true);
-        this.successorSocket.setTcpNoDelay(true);
-    }
-
-    public void updatePredecessor() throws IOException {
-        if (predecessorSocket != null && !predecessorSocket.isClosed()) {
-            predecessorSocket.close();
-        }
-
-        logger.info("Waiting on predecessor connection");
-        predecessorSocket = serverSocket.accept();
-        logger.info(String.format("Predecessor connected from address to %s", predecessorSocket.getRemoteSocketAddress().toString()));
-    }
-
-    private void sendToSocket(Message message, Socket socket) throws IOException {
-        final OutputStream out = socket.getOutputStream();
-        out.write(message.toBytes());
-        out.flush();
-    }
-
-    public void sendToSuccessor(Message message) throws IOException {
-        sendToSocket(message, successorSocket);
-    }
-
-    public void sendToPredeccesor(Message message) throws IOException {
-        sendToSocket(message, predecessorSocket);
-    }
-
-    private Message readFromSocket(Socket socket, Integer timeoutSecs) {
-        try {
-            if (timeoutSecs != null) socket.setSoTimeout(timeoutSecs * 1000);
+    /**
+     * Replaces the connection to the successor with a new connection to the node with the given ID
+     *
+     * @param successorId id of new successor
+     * @throws IOException if unable to connect
+     */
+    void updateSuccessor(int successorId) throws IOException;
 
-            final ObjectInputStream out = new ObjectInputStream(socket.getInputStream());
-            return (Message) out.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            return null;
-        }
-    }
+    /**
+     * Replaces the connection to the predecessor with the next node to connect to this one.
+     * Blocks until that connection is made unless {@link RingSocket#acceptsInBackground()} is true.
+     *
+     * @throws IOException if unable to accept a connection
+     */
+    void updatePredecessor() throws IOException;
 
-    public Message receiveFromSuccessor(int timeoutSecs) {
-        return this.readFromSocket(successorSocket, timeoutSecs);
-    }
+    /**
+     * @param message message to send to the successor
+     * @throws IOException if the successor connection is broken
+     */
+    void sendToSuccessor(Message message) throws IOException;
 
-    public Message receiveFromPredecessor(Integer timeoutSecs) {
-        return this.readFromSocket(predecessorSocket, timeoutSecs);
-    }
+    /**
+     * @param message message to send to the predecessor
+     * @throws IOException if the predecessor connection is broken
+     */
+    void sendToPredeccesor(Message message) throws IOException;
 
-    public void close() throws IOException {
-        if (this.successorSocket != null)
-            this.successorSocket.close();
+    /**
+     * Reads the next message sent back by the successor
+     *
+     * @param timeoutSecs time to wait for a message
+     * @return the message, or whether the read timed out or the connection was closed
+     */
+    ReadResult receiveFromSuccessor(int timeoutSecs);
 
-        if (this.predecessorSocket != null)
-            this.predecessorSocket.close();
+    /**
+     * Reads the next message sent by the predecessor
+     *
+     * @param timeoutSecs time to wait for a message, or null to wait forever
+     * @return the message, or whether the read timed out or the connection was closed
+     */
+    ReadResult receiveFromPredecessor(Integer timeoutSecs);
 
-        if (this.serverSocket != null)
-            this.serverSocket.close();
-    }
+    /**
+     * Closes all connections
+     *
+     * @throws IOException if something goes wrong while closing
+     */
+    void close() throws IOException;
 
     /**
      * Checks if this ring network consists of just this node
      *
      * @return true if the predecessor socket == successor socket
      */
-    public boolean isClosedLoop() {
-        if (predecessorSocket == null || successorSocket == null) return false;
-        else return successorSocket.getLocalSocketAddress().equals(predecessorSocket.getRemoteSocketAddress());
-    }
-}
+    boolean isClosedLoop();
 
+    /**
+     * @return true if new predecessors are accepted without anyone calling {@link RingSocket#updatePredecessor()}
+     */
+    boolean acceptsInBackground();
+
+}
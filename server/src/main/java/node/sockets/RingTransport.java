@@ -0,0 +1,5 @@
+package node.sockets;
+
+public enum RingTransport {
+    BLOCKING, SELECTOR
+}
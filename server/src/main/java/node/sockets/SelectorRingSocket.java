@@ -0,0 +1,342 @@
+package node.sockets;
+
+import logging.LoggerFactory;
+import node.AddressTranslator;
+import node.nodemessaging.Message;
+import node.nodemessaging.MessageCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Ring socket that accepts predecessors, reads from both neighbours and flushes pending writes on a single selector
+ * thread. Callers wait on a queue of decoded messages for each neighbour instead of blocking on the sockets.
+ */
+public class SelectorRingSocket implements RingSocket {
+
+    private final Logger logger = LoggerFactory.getLogger();
+    private final AddressTranslator addressTranslator;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Queue<Connection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final BlockingQueue<ReadResult> successorInbox = new LinkedBlockingQueue<>();
+    private final BlockingQueue<ReadResult> predecessorInbox = new LinkedBlockingQueue<>();
+
+    private volatile Connection successor = null;
+    private volatile Connection predecessor = null;
+
+    public SelectorRingSocket(int myId, AddressTranslator addressTranslator) throws IOException {
+        final InetSocketAddress myAddress = addressTranslator.getSocketAddress(myId);
+
+        this.addressTranslator = addressTranslator;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(myAddress, 1);
+        this.serverChannel.configureBlocking(false);
+        this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        final Thread selectorThread = new Thread(this::runEventLoop, "ring-selector-" + myId);
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * A connection to a neighbour, along with its partially read frames and pending writes
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        private final BlockingQueue<ReadResult> inbox;
+        private final Queue<ByteBuffer> pendingWrites = new ConcurrentLinkedQueue<>();
+        private ByteBuffer readBuffer = BufferPool.acquire();
+        private SelectionKey key = null;
+
+        private Connection(SocketChannel channel, BlockingQueue<ReadResult> inbox) throws IOException {
+            this.channel = channel;
+            this.inbox = inbox;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+        }
+    }
+
+    /**
+     * Selector loop, runs until the selector is closed
+     */
+    private void runEventLoop() {
+        while (selector.isOpen()) {
+            try {
+                selector.select();
+                registerPending();
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        acceptPredecessor();
+                        continue;
+                    }
+
+                    final Connection connection = (Connection) key.attachment();
+                    if (key.isReadable()) readFrames(connection);
+                    if (key.isValid() && key.isWritable()) flushWrites(connection);
+                }
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (IOException e) {
+                logger.warning("Error in ring selector: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Registers connections made by other threads with the selector
+     */
+    private void registerPending() {
+        Connection connection;
+        while ((connection = pendingRegistrations.poll()) != null) {
+            register(connection);
+        }
+    }
+
+    private void register(Connection connection) {
+        try {
+            synchronized (connection) {
+                final int ops = connection.pendingWrites.isEmpty()
+                        ? SelectionKey.OP_READ
+                        : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+                connection.key = connection.channel.register(selector, ops, connection);
+            }
+        } catch (ClosedChannelException e) {
+            connectionClosed(connection);
+        }
+    }
+
+    /**
+     * Accepts the next connection as this nodes predecessor, replacing any previous predecessor
+     */
+    private void acceptPredecessor() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+
+        final Connection previous = predecessor;
+        final Connection connection = new Connection(channel, predecessorInbox);
+        predecessor = connection;
+        register(connection);
+
+        // Replaced predecessors are closed without reporting, as the ring has already moved on
+        if (previous != null) closeQuietly(previous);
+
+        logger.info(String.format("Predecessor connected from address to %s", channel.getRemoteAddress()));
+    }
+
+    /**
+     * Reads whatever is available from the connection, and queues any complete frames
+     */
+    private void readFrames(Connection connection) {
+        try {
+            if (connection.channel.read(connection.readBuffer) < 0) {
+                connectionClosed(connection);
+                return;
+            }
+
+            ByteBuffer buffer = connection.readBuffer;
+            buffer.flip();
+            while (buffer.remaining() >= FrameReader.LENGTH_PREFIX_SIZE) {
+                final int length = buffer.getInt(buffer.position());
+                if (length < 0 || length > FrameReader.MAX_FRAME_SIZE) {
+                    throw new IOException(String.format("Invalid frame length %d", length));
+                }
+
+                final int frameSize = FrameReader.LENGTH_PREFIX_SIZE + length;
+                if (buffer.remaining() < frameSize) {
+                    if (buffer.capacity() < frameSize) {
+                        final ByteBuffer larger = ByteBuffer.allocate(frameSize);
+                        larger.put(buffer);
+                        larger.flip();
+                        BufferPool.release(buffer);
+                        connection.readBuffer = buffer = larger;
+                    }
+                    break;
+                }
+
+                final ByteBuffer frame = buffer.duplicate();
+                frame.position(buffer.position() + FrameReader.LENGTH_PREFIX_SIZE);
+                frame.limit(buffer.position() + frameSize);
+                connection.inbox.add(ReadResult.of(MessageCodec.decode(frame)));
+                buffer.position(buffer.position() + frameSize);
+            }
+            buffer.compact();
+        } catch (IOException e) {
+            connectionClosed(connection);
+        }
+    }
+
+    /**
+     * Writes as much of the pending data as the connection will accept without blocking
+     */
+    private void flushWrites(Connection connection) {
+        try {
+            synchronized (connection) {
+                ByteBuffer next;
+                while ((next = connection.pendingWrites.peek()) != null) {
+                    connection.channel.write(next);
+                    if (next.hasRemaining()) return;
+                    connection.pendingWrites.poll();
+                }
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            connectionClosed(connection);
+        }
+    }
+
+    /**
+     * Closes the connection, and reports it as closed if it is still one of this nodes neighbours.
+     * Only called from the selector thread, which is the only user of the read buffer.
+     */
+    private void connectionClosed(Connection connection) {
+        if (connection.readBuffer == null) return;
+
+        closeQuietly(connection);
+        BufferPool.release(connection.readBuffer);
+        connection.readBuffer = null;
+
+        if (connection == predecessor || connection == successor) {
+            connection.inbox.add(ReadResult.CLOSED);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Writes a frame to the connection, queueing whatever cannot be written immediately for the selector thread
+     */
+    private void send(Connection connection, Message message) throws IOException {
+        if (connection == null || !connection.channel.isOpen()) throw new IOException("Not connected.");
+
+        final int length = MessageCodec.encodedSize(message);
+        final ByteBuffer frame = ByteBuffer.allocate(FrameReader.LENGTH_PREFIX_SIZE + length);
+        frame.putInt(length);
+        MessageCodec.encode(message, frame);
+        frame.flip();
+
+        synchronized (connection) {
+            if (connection.pendingWrites.isEmpty()) {
+                connection.channel.write(frame);
+            }
+
+            if (frame.hasRemaining()) {
+                connection.pendingWrites.add(frame);
+                if (connection.key != null) {
+                    connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    selector.wakeup();
+                }
+            }
+        }
+    }
+
+    private static ReadResult poll(BlockingQueue<ReadResult> inbox, Integer timeoutSecs) {
+        try {
+            if (timeoutSecs == null) return inbox.take();
+
+            final ReadResult result = inbox.poll(timeoutSecs, TimeUnit.SECONDS);
+            return result == null ? ReadResult.TIMEOUT : result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ReadResult.TIMEOUT;
+        }
+    }
+
+    @Override
+    public void updateSuccessor(int successorId) throws IOException {
+        final InetSocketAddress successorAddress = addressTranslator.getSocketAddress(successorId);
+
+        logger.info(String.format("Updating successor to %s", successorAddress.toString()));
+        final Connection previous = successor;
+        successor = null;
+        if (previous != null) closeQuietly(previous);
+        successorInbox.clear();
+
+        final Connection connection = new Connection(SocketChannel.open(successorAddress), successorInbox);
+        successor = connection;
+        pendingRegistrations.add(connection);
+        selector.wakeup();
+    }
+
+    @Override
+    public void updatePredecessor() {
+        // The selector thread accepts the next predecessor whenever it connects
+        logger.info("Waiting on predecessor connection");
+    }
+
+    @Override
+    public void sendToSuccessor(Message message) throws IOException {
+        send(successor, message);
+    }
+
+    @Override
+    public void sendToPredeccesor(Message message) throws IOException {
+        send(predecessor, message);
+    }
+
+    @Override
+    public ReadResult receiveFromSuccessor(int timeoutSecs) {
+        return poll(successorInbox, timeoutSecs);
+    }
+
+    @Override
+    public ReadResult receiveFromPredecessor(Integer timeoutSecs) {
+        return poll(predecessorInbox, timeoutSecs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        final Connection currentSuccessor = successor;
+        final Connection currentPredecessor = predecessor;
+        successor = null;
+        predecessor = null;
+
+        if (currentSuccessor != null) closeQuietly(currentSuccessor);
+        if (currentPredecessor != null) closeQuietly(currentPredecessor);
+
+        serverChannel.close();
+        selector.close();
+    }
+
+    @Override
+    public boolean isClosedLoop() {
+        final Connection currentSuccessor = successor;
+        final Connection currentPredecessor = predecessor;
+        if (currentSuccessor == null || currentPredecessor == null) return false;
+
+        try {
+            return currentSuccessor.channel.getLocalAddress().equals(currentPredecessor.channel.getRemoteAddress());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean acceptsInBackground() {
+        return true;
+    }
+}
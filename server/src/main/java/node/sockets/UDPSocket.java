@@ -2,10 +2,13 @@ package node.sockets;
 
 import logging.LoggerFactory;
 import node.nodemessaging.Message;
+import node.nodemessaging.MessageCodec;
+import node.nodemessaging.MessageType;
 import node.AddressTranslator;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 public class UDPSocket {
@@ -14,6 +17,8 @@ public class UDPSocket {
 
     private final AddressTranslator addressTranslator;
     private final Logger logger = LoggerFactory.getLogger();
+    private final byte[] sendBuffer = new byte[BUFFER_SIZE];
+    private final byte[] receiveBuffer = new byte[BUFFER_SIZE];
 
     private DatagramSocket datagramSocket;
 
@@ -29,36 +34,43 @@ public class UDPSocket {
      * @param destId  destination to send message
      * @throws IOException if unable to convert message to bytes, or socket exception occurs
      */
-    public void sendMessage(Message message, int destId) throws IOException {
-        logger.info(String.format("Sending message to %d : %s", destId, message.toString()));
+    public synchronized void sendMessage(Message message, int destId) throws IOException {
+        logger.info(() -> String.format("Sending message to %d : %s", destId, message));
         InetSocketAddress dest = addressTranslator.getSocketAddress(destId);
 
-        final byte[] msgBytes = message.toBytes();
+        final ByteBuffer buffer = ByteBuffer.wrap(sendBuffer);
+        MessageCodec.encode(message, buffer);
 
         final DatagramPacket packet =
-                new DatagramPacket(msgBytes, 0, msgBytes.length, dest);
+                new DatagramPacket(sendBuffer, 0, buffer.position(), dest);
 
         datagramSocket.send(packet);
     }
 
     /**
-     * Poll until message is received unless timeout is reached
+     * Poll until message is received unless timeout is reached. Admin messages are only accepted from this host, so
+     * anything else that can reach the port is not able to stop the node.
      *
-     * @return message received from this socket
+     * @return message received from this socket, or null if none was accepted before the timeout
      */
     public Message receiveMessage(Integer timeoutSecs) {
         final DatagramPacket packet =
-                new DatagramPacket(new byte[BUFFER_SIZE], 0, BUFFER_SIZE);
+                new DatagramPacket(receiveBuffer, 0, BUFFER_SIZE);
 
         try {
             if (timeoutSecs != null)
                 datagramSocket.setSoTimeout(timeoutSecs * 1000);
 
             datagramSocket.receive(packet);
-            final Message message = Message.fromBytes(packet.getData());
-            logger.info(String.format("Received message: %s", message.toString()));
+            final Message message = MessageCodec.decode(ByteBuffer.wrap(packet.getData(), 0, packet.getLength()));
+            if (message.getType() == MessageType.SHUTDOWN && !packet.getAddress().isLoopbackAddress()) {
+                logger.warning(String.format("Ignoring %s from remote address %s", message.getType(), packet.getAddress()));
+                return null;
+            }
+
+            logger.info(() -> String.format("Received message: %s", message));
             return message;
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (IOException e) {
             return null;
         }
     }
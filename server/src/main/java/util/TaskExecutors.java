@@ -0,0 +1,86 @@
+package util;
+
+import logging.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors for blocking tasks using the configured kind of thread.
+ * <p>
+ * Virtual threads are looked up at runtime, so the node still builds for and runs on Java 8. When the running JDK
+ * does not support them, platform threads are used instead.
+ */
+public final class TaskExecutors {
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactory();
+
+    private TaskExecutors() {
+    }
+
+    private static Method findVirtualThreadFactory() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            // Fails on JDKs where virtual threads are only a preview feature that has not been enabled
+            ((ExecutorService) factory.invoke(null)).shutdown();
+            return factory;
+        } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the running JDK can run tasks on virtual threads
+     */
+    public static boolean virtualThreadsSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates an executor that runs every task on its own thread, as soon as it is submitted
+     *
+     * @param mode kind of thread to run tasks on
+     * @return executor for blocking tasks
+     */
+    public static ExecutorService newTaskExecutor(ThreadMode mode) {
+        if (mode == ThreadMode.VIRTUAL) {
+            final ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) return virtual;
+        }
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Creates an executor for short tasks handed off by an event loop. With platform threads the number of threads is
+     * fixed, while with virtual threads each task gets its own thread.
+     *
+     * @param mode    kind of thread to run tasks on
+     * @param threads number of platform threads to use
+     * @return executor for tasks handed off by an event loop
+     */
+    public static ExecutorService newWorkerPool(ThreadMode mode, int threads) {
+        if (mode == ThreadMode.VIRTUAL) {
+            final ExecutorService virtual = newVirtualThreadExecutor();
+            if (virtual != null) return virtual;
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * @return executor running each task on a new virtual thread, or null if virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        if (!virtualThreadsSupported()) {
+            LoggerFactory.getLogger().warning("Virtual threads are not supported by this JDK, using platform threads.");
+            return null;
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LoggerFactory.getLogger().warning("Unable to create virtual thread executor: " + e.getMessage());
+            return null;
+        }
+    }
+}
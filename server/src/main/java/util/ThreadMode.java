@@ -0,0 +1,8 @@
+package util;
+
+/**
+ * Kind of thread used to run blocking tasks, such as socket handlers and election timeouts
+ */
+public enum ThreadMode {
+    PLATFORM, VIRTUAL
+}
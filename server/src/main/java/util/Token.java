@@ -1,4 +1,56 @@
 package util;
 
+import node.nodemessaging.CarriedMessage;
+
+import java.util.Collections;
+import java.util.List;
+
 public final class Token {
+
+    /**
+     * Partition of the message queue this token grants access to
+     */
+    private final int partition;
+
+    /**
+     * Generation of the token, which increases every time a lost token is replaced
+     */
+    private final long generation;
+
+    /**
+     * Sequence number the token arrived with, which increases by one every time it is forwarded
+     */
+    private final long sequenceNumber;
+
+    /**
+     * Chat messages travelling around the ring with the token
+     */
+    private final List<CarriedMessage> carriedMessages;
+
+    public Token(int partition, long generation, long sequenceNumber) {
+        this(partition, generation, sequenceNumber, Collections.emptyList());
+    }
+
+    public Token(int partition, long generation, long sequenceNumber, List<CarriedMessage> carriedMessages) {
+        this.partition = partition;
+        this.generation = generation;
+        this.sequenceNumber = sequenceNumber;
+        this.carriedMessages = carriedMessages;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public List<CarriedMessage> getCarriedMessages() {
+        return carriedMessages;
+    }
 }
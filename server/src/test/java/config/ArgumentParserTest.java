@@ -1,9 +1,14 @@
 package config;
 
 import node.electionhandlers.ElectionMethod;
+import node.holdpolicies.HoldPolicy;
+import node.jdbc.StorageBackend;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.ExpectedSystemExit;
+import node.clientmessaging.OverflowPolicy;
+import node.clientmessaging.WriteMode;
+import util.ThreadMode;
 
 import static org.junit.Assert.assertEquals;
 
@@ -47,4 +52,108 @@ public class ArgumentParserTest {
         String[] args = {"-f", "~/somefile", "-e", "BULLY", "-i"};
         ArgumentParser.parseArgs(args);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void parseArgsWhenBatchBudgetGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-bm", "50", "-bt", "200"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Message limit is correct", 50, config.getMessageBudget().getMaxMessages());
+        assertEquals("Time limit is correct", 200, config.getMessageBudget().getMaxMillis());
+        assertEquals("Byte limit is unbounded", Long.MAX_VALUE, config.getMessageBudget().getMaxBytes());
+    }
+
+    @Test
+    public void parseArgsWhenNoBatchBudgetGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Defaults to a single message", 1, config.getMessageBudget().getMaxMessages());
+    }
+
+    @Test
+    public void parseArgsWhenHoldPolicyGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-hp", "ADAPTIVE", "-ht", "500"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Hold policy is correct", HoldPolicy.ADAPTIVE, config.getHoldPolicy());
+        assertEquals("Hold time is correct", 500, config.getHoldMillis());
+    }
+
+    @Test
+    public void parseArgsWhenNoHoldPolicyGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Defaults to fixed hold policy", HoldPolicy.FIXED, config.getHoldPolicy());
+        assertEquals("Defaults to three second hold", 3000, config.getHoldMillis());
+    }
+
+    @Test
+    public void parseArgsWhenEmbeddedStorageGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-s", "EMBEDDED", "-sp", "/tmp/ring"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Storage backend is correct", StorageBackend.EMBEDDED, config.getStorageBackend());
+        assertEquals("Storage path is correct", "/tmp/ring", config.getStoragePath());
+    }
+
+    @Test
+    public void parseArgsWhenNoStorageGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Defaults to MariaDB", StorageBackend.MARIADB, config.getStorageBackend());
+    }
+
+    @Test
+    public void parseArgsWhenThreadModeGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-tm", "VIRTUAL"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Thread mode is correct", ThreadMode.VIRTUAL, config.getThreadMode());
+    }
+
+    @Test
+    public void parseArgsWhenOutboundQueueGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-oq", "32", "-op", "DROP_OLDEST"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Outbound queue capacity is correct", 32, config.getOutboundQueueCapacity());
+        assertEquals("Overflow policy is correct", OverflowPolicy.DROP_OLDEST, config.getOverflowPolicy());
+    }
+
+    @Test
+    public void parseArgsWhenWriteModeGiven() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-wm", "CONCURRENT"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Write mode is correct", WriteMode.CONCURRENT, config.getWriteMode());
+    }
+
+    @Test
+    public void parseTokens() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-tk", "4"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Token count is correct", 4, config.getTokenCount());
+    }
+
+    @Test
+    public void defaultsToSingleToken() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Token count is correct", 1, config.getTokenCount());
+    }
+
+    @Test
+    public void parsePiggyback() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-pb", "16"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Carried message limit is correct", 16, config.getCarriedMessageLimit());
+    }
+
+    @Test
+    public void parseTokenTimeout() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-tt", "5000"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Token timeout is correct", 5000, config.getTokenTimeoutMillis());
+    }
+
+    @Test
+    public void parseMetricsPort() {
+        String[] args = {"-i", "6", "-f", "~/somefile", "-e", "BULLY", "-mp", "9100"};
+        Configuration config = ArgumentParser.parseArgs(args);
+        assertEquals("Metrics port is correct", 9100, config.getMetricsPort());
+    }
+}
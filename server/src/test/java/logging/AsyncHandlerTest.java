@@ -0,0 +1,79 @@
+package logging;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.Assert.*;
+
+public class AsyncHandlerTest {
+
+    /**
+     * Writer that blocks its first write until released, to hold up the writing thread
+     */
+    private static class StalledWriter extends Writer {
+        private final StringWriter written = new StringWriter();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public void write(char[] chars, int off, int len) throws IOException {
+            entered.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            written.write(chars, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void formatsRecordsOnWritingThread() {
+        final StringWriter out = new StringWriter();
+        final AsyncHandler handler = new AsyncHandler(new NodeLogFormatter(4), 16, out);
+
+        final LogRecord record = new LogRecord(Level.INFO, "hello");
+        handler.publish(record);
+        handler.close();
+
+        final String line = out.toString();
+        assertTrue(line, line.matches("\\[\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2} \\| 4 ] \\[INFO   ] hello \\R"));
+    }
+
+    @Test
+    public void dropsRecordsWhenQueueIsFull() throws InterruptedException {
+        final StalledWriter out = new StalledWriter();
+        final AsyncHandler handler = new AsyncHandler(new NodeLogFormatter(1), 4, out);
+
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        assertTrue(out.entered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 7; i++) {
+            handler.publish(new LogRecord(Level.INFO, "queued " + i));
+        }
+        assertEquals(3, handler.getDroppedCount());
+
+        out.released.countDown();
+        handler.close();
+
+        final String written = out.written.toString();
+        assertTrue(written.contains("queued 3"));
+        assertFalse(written.contains("queued 4"));
+        assertTrue(written.contains("[Dropped 3 log records]"));
+    }
+}
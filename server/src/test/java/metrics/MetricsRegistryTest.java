@@ -0,0 +1,81 @@
+package metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    private interface Repository {
+        String find(String name) throws IOException;
+    }
+
+    @Test
+    public void scrapesCountersAndGauges() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("messages_total", "Messages", "method", "RING_BASED").add(3);
+        registry.counter("messages_total", "Messages", "method", "RING_BASED").increment();
+        registry.gauge("clients", "Connected clients", () -> 2);
+
+        final String scraped = registry.scrape();
+
+        assertTrue(scraped, scraped.contains("# HELP clients Connected clients\n# TYPE clients gauge\nclients 2\n"));
+        assertTrue(scraped, scraped.contains("# TYPE messages_total counter\nmessages_total{method=\"RING_BASED\"} 4\n"));
+    }
+
+    @Test
+    public void scrapesTimersAsHistograms() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final Timer timer = registry.timer("hold_seconds", "Hold time", "partition", "0");
+        timer.record(2, TimeUnit.MILLISECONDS);
+        timer.record(20, TimeUnit.SECONDS);
+
+        final String scraped = registry.scrape();
+
+        assertTrue(scraped, scraped.contains("# TYPE hold_seconds histogram\n"));
+        assertTrue(scraped, scraped.contains("hold_seconds_bucket{partition=\"0\",le=\"0.001\"} 0\n"));
+        assertTrue(scraped, scraped.contains("hold_seconds_bucket{partition=\"0\",le=\"0.005\"} 1\n"));
+        assertTrue(scraped, scraped.contains("hold_seconds_bucket{partition=\"0\",le=\"10.0\"} 1\n"));
+        assertTrue(scraped, scraped.contains("hold_seconds_bucket{partition=\"0\",le=\"+Inf\"} 2\n"));
+        assertTrue(scraped, scraped.contains("hold_seconds_sum{partition=\"0\"} 20.002\n"));
+        assertTrue(scraped, scraped.contains("hold_seconds_count{partition=\"0\"} 2\n"));
+    }
+
+    @Test
+    public void escapesLabelValues() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("errors_total", "Errors", "reason", "bad \"quote\"").increment();
+
+        assertTrue(registry.scrape().contains("errors_total{reason=\"bad \\\"quote\\\"\"} 1\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNameRegisteredAsAnotherType() {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("calls", "Calls");
+        registry.timer("calls", "Calls");
+    }
+
+    @Test
+    public void timesRepositoryCalls() throws IOException {
+        final Repository repository = Metrics.timedRepository(Repository.class, name -> {
+            if (name.isEmpty()) throw new IOException("No name");
+            return name;
+        }, "test");
+
+        assertEquals("alice", repository.find("alice"));
+        try {
+            repository.find("");
+            fail("Exception from repository should be passed on");
+        } catch (IOException e) {
+            assertEquals("No name", e.getMessage());
+        }
+
+        final MetricsRegistry registry = Metrics.getRegistry();
+        assertEquals(2, registry.timer("repository_call_duration_seconds", "", "repository", "test", "method", "find").getCount());
+        assertEquals(1, registry.counter("repository_call_failures_total", "", "repository", "test", "method", "find").get());
+    }
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class PrometheusExporterTest {
+
+    @Test
+    public void servesMetrics() throws IOException {
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("tokens_total", "Tokens received").increment();
+
+        final PrometheusExporter exporter = new PrometheusExporter(registry, new InetSocketAddress("127.0.0.1", 0));
+        exporter.start();
+        try {
+            final HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + exporter.getPort() + "/metrics").openConnection();
+
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            assertTrue(read(connection.getInputStream()).contains("tokens_total 1\n"));
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,79 @@
+package node;
+
+import node.nodemessaging.Message;
+import node.nodemessaging.MessageType;
+import node.nodemessaging.TokenMessage;
+import node.ringrepository.VirtualNode;
+import node.sockets.RingTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import util.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class RingCommunicationHandlerTest {
+
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private RingCommunicationHandler first;
+    private RingCommunicationHandler second;
+
+    @Before
+    public void connect() throws IOException {
+        List<VirtualNode> nodes = new ArrayList<>();
+        nodes.add(new VirtualNode("localhost", 5103, 8103, 3, null, false));
+        nodes.add(new VirtualNode("localhost", 5104, 8104, 4, null, false));
+        final AddressTranslator addressTranslator = new AddressTranslator(nodes);
+
+        first = new RingCommunicationHandler(3, addressTranslator, executorService, RingTransport.SELECTOR);
+        second = new RingCommunicationHandler(4, addressTranslator, executorService, RingTransport.SELECTOR);
+        first.updateSuccessor(4, true);
+        second.updateSuccessor(3, true);
+    }
+
+    @After
+    public void close() throws IOException {
+        first.cleanup();
+        second.cleanup();
+        executorService.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void forwardsWithoutWaitingForAck() throws Exception {
+        assertTrue(first.forwardToken(new Token(0, 1, 10)));
+
+        final Message received = second.receiveFromPredecessor().getMessage();
+        assertEquals(MessageType.TOKEN, received.getType());
+        final TokenMessage token = received.getPayload(TokenMessage.class);
+        assertEquals(11, token.getSequenceNumber());
+
+        second.sendTokenAck(token);
+        assertTrue(first.receiveTokenAcks().isEmpty());
+        assertTrue("Acknowledged token is no longer tracked", first.takeUnacknowledgedTokens().isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void resendsUnacknowledgedTokenThenGivesUp() throws Exception {
+        assertTrue(first.forwardToken(new Token(1, 1, 5)));
+
+        List<Token> lost = new ArrayList<>();
+        while (lost.isEmpty()) {
+            lost = first.receiveTokenAcks();
+        }
+        assertEquals(1, lost.size());
+        assertEquals(1, lost.get(0).getPartition());
+        assertEquals(5, lost.get(0).getSequenceNumber());
+
+        // Every copy has the same sequence number, so the successor can tell they are the same token
+        for (int copy = 0; copy < 3; copy++) {
+            final TokenMessage token = second.receiveFromPredecessor().getMessage().getPayload(TokenMessage.class);
+            assertEquals(6, token.getSequenceNumber());
+        }
+    }
+}
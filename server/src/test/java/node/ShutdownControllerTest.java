@@ -0,0 +1,61 @@
+package node;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ShutdownControllerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void runsListenersOnce() {
+        final ShutdownController controller = new ShutdownController();
+        final AtomicInteger runs = new AtomicInteger();
+        controller.onShutdown(runs::incrementAndGet);
+
+        assertFalse(controller.isShutdownRequested());
+        controller.requestShutdown("test");
+        controller.requestShutdown("test again");
+
+        assertTrue(controller.isShutdownRequested());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void requestsShutdownWhenKillswitchCreated() throws Exception {
+        final ShutdownController controller = new ShutdownController();
+        final CountDownLatch requested = new CountDownLatch(1);
+        controller.onShutdown(requested::countDown);
+
+        final Path killswitch = folder.getRoot().toPath().resolve("killswitch");
+        controller.watchKillswitch(killswitch);
+        Files.createFile(folder.getRoot().toPath().resolve("unrelated"));
+        assertFalse(controller.isShutdownRequested());
+
+        Files.createDirectory(killswitch);
+
+        assertTrue(requested.await(10, TimeUnit.SECONDS));
+        controller.markTerminated();
+    }
+
+    @Test
+    public void requestsShutdownIfKillswitchAlreadyExists() throws Exception {
+        final ShutdownController controller = new ShutdownController();
+        final Path killswitch = folder.newFolder("killswitch").toPath();
+
+        controller.watchKillswitch(killswitch);
+
+        assertTrue(controller.isShutdownRequested());
+        controller.markTerminated();
+    }
+}
@@ -0,0 +1,52 @@
+package node;
+
+import org.junit.Test;
+import util.Token;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TokenMonitorTest {
+
+    @Test
+    public void acceptsNewerTokensOnly() {
+        final TokenMonitor monitor = new TokenMonitor(2, 30000, 3000);
+        final Token token = monitor.newToken(0);
+
+        assertFalse("Copy of the token is ignored", monitor.accept(token));
+        assertTrue(monitor.accept(new Token(0, token.getGeneration(), 1)));
+        assertFalse("Older generation is ignored", monitor.accept(new Token(0, token.getGeneration() - 1, 100)));
+        assertTrue("Other partitions are tracked separately", monitor.accept(new Token(1, 1, 0)));
+    }
+
+    @Test
+    public void regeneratesTokensNotSeenWithinTimeout() throws InterruptedException {
+        final TokenMonitor monitor = new TokenMonitor(1, 50, 10);
+        final Token original = monitor.newToken(0);
+        assertTrue(monitor.regenerateLostTokens(1).isEmpty());
+
+        Thread.sleep(100);
+        final List<Token> replacements = monitor.regenerateLostTokens(1);
+
+        assertEquals(1, replacements.size());
+        assertTrue(replacements.get(0).getGeneration() > original.getGeneration());
+        assertFalse("Lost token is ignored if it turns up", monitor.accept(new Token(0, original.getGeneration(), 5)));
+        assertTrue(monitor.regenerateLostTokens(1).isEmpty());
+    }
+
+    @Test
+    public void waitsAtLeastOneRotationOfTheRing() throws InterruptedException {
+        // Ten nodes holding for 3000 ms take longer than the 30000 ms default to pass the token around
+        final TokenMonitor defaults = new TokenMonitor(1, 30000, 3000);
+        assertEquals(60000, defaults.getTimeoutMillis(10));
+        assertEquals(30000, defaults.getTimeoutMillis(2));
+
+        final TokenMonitor monitor = new TokenMonitor(1, 10, 5);
+        monitor.newToken(0);
+        Thread.sleep(100);
+
+        assertTrue("Token may still be going around a large ring", monitor.regenerateLostTokens(20).isEmpty());
+        assertEquals(1, monitor.regenerateLostTokens(2).size());
+    }
+}
@@ -0,0 +1,114 @@
+package node.clientmessaging;
+
+import node.clientmessaging.messages.ChatMessage;
+import node.clientmessaging.messages.ClientMessageJsonEncoder;
+import node.clientmessaging.messages.LoginMessage;
+import node.clientmessaging.repositories.UserGroupRepository;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+
+public class ClientHandlerTest {
+
+    private static final ClientMessageJsonEncoder ENCODER = new ClientMessageJsonEncoder();
+    private static final int CAPACITY = 4;
+
+    /**
+     * Connection that accepts every write, reporting however many it is said to be holding
+     */
+    private static class StubConnection implements ClientConnection {
+        private final int pendingWrites;
+
+        private StubConnection(int pendingWrites) {
+            this.pendingWrites = pendingWrites;
+        }
+
+        @Override
+        public void send(String line) {
+        }
+
+        @Override
+        public void sendFrame(byte[] message) {
+        }
+
+        @Override
+        public int getPendingWrites() {
+            return pendingWrites;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String getRemoteAddress() {
+            return "stub";
+        }
+    }
+
+    private static class AcceptingRepository implements UserGroupRepository {
+        @Override
+        public void registerUser(String username) {
+        }
+
+        @Override
+        public void removeUser(String username) {
+        }
+
+        @Override
+        public void addUserToGroup(String username, String groupname) {
+        }
+
+        @Override
+        public void removeUserFromGroup(String username, String groupname) {
+        }
+
+        @Override
+        public Set<String> getAllUsersInGroup(String groupname) {
+            return Collections.emptySet();
+        }
+    }
+
+    private final Queue<ChatMessage> outgoingMessages = new ConcurrentLinkedQueue<>();
+    private final ClientRegistry registry = new ClientRegistry(10);
+
+    private ClientHandler login(String username, int pendingWrites) {
+        final ClientHandler handler = new ClientHandler(new StubConnection(pendingWrites), outgoingMessages,
+                new AcceptingRepository(), registry, CAPACITY, OverflowPolicy.DROP_OLDEST, Runnable::run);
+        assertTrue(registry.register(handler));
+        assertTrue(handler.handleLine(ENCODER.encode(new LoginMessage(username))));
+        return handler;
+    }
+
+    private ChatMessage sendFromAlice(ClientHandler alice) {
+        assertTrue(alice.handleLine(ENCODER.encode(new ChatMessage(new Timestamp(1000), "alice", "bob", null, "hi"))));
+        return outgoingMessages.poll();
+    }
+
+    @Test
+    public void marksLocalRecipientAsDelivered() {
+        final ClientHandler alice = login("alice", 0);
+        login("bob", 0);
+
+        assertEquals(Collections.singleton("bob"), sendFromAlice(alice).getDeliveredTo());
+    }
+
+    @Test
+    public void leavesRecipientThatRefusedMessageToMessageQueue() {
+        final ClientHandler alice = login("alice", 0);
+        login("bob", CAPACITY);
+
+        assertTrue(sendFromAlice(alice).getDeliveredTo().isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+package node.clientmessaging;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.Assert.*;
+
+public class ClientRegistryTest {
+
+    private ServerSocket serverSocket;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        serverSocket.close();
+    }
+
+    private ClientHandler newClient(ClientRegistry registry) throws IOException {
+        final Socket client = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        final Socket accepted = serverSocket.accept();
+        sockets.add(client);
+        sockets.add(accepted);
+        return new ClientHandler(new StreamClientConnection(accepted), new ConcurrentLinkedQueue<>(), null, registry,
+                16, OverflowPolicy.BLOCK, Runnable::run);
+    }
+
+    @Test
+    public void rejectsClientsOverLimit() throws IOException {
+        final ClientRegistry registry = new ClientRegistry(2);
+
+        final ClientHandler first = newClient(registry);
+        assertTrue(registry.register(first));
+        assertTrue(registry.register(newClient(registry)));
+        assertFalse(registry.register(newClient(registry)));
+        assertEquals(2, registry.size());
+
+        registry.remove(first);
+        assertEquals(1, registry.size());
+        assertTrue(registry.register(newClient(registry)));
+    }
+
+    @Test
+    public void findsClientByUsername() throws IOException {
+        final ClientRegistry registry = new ClientRegistry(10);
+        final ClientHandler alice = newClient(registry);
+        final ClientHandler bob = newClient(registry);
+        registry.register(alice);
+        registry.register(bob);
+
+        assertTrue(registry.login("alice", alice));
+        assertTrue(registry.login("bob", bob));
+
+        assertSame(alice, registry.getByUsername("alice").get());
+        assertSame(bob, registry.getByUsername("bob").get());
+        assertFalse(registry.getByUsername("carol").isPresent());
+        assertEquals(2, registry.getUsernames().size());
+    }
+
+    @Test
+    public void usernameCanOnlyBeUsedOnce() throws IOException {
+        final ClientRegistry registry = new ClientRegistry(10);
+        final ClientHandler first = newClient(registry);
+        final ClientHandler second = newClient(registry);
+        registry.register(first);
+        registry.register(second);
+
+        assertTrue(registry.login("alice", first));
+        assertFalse(registry.login("alice", second));
+        assertSame(first, registry.getByUsername("alice").get());
+    }
+
+    @Test
+    public void unregisteredConnectionIsNotCounted() throws IOException {
+        final ClientRegistry registry = new ClientRegistry(1);
+        final ClientHandler neverRegistered = newClient(registry);
+
+        registry.remove(neverRegistered);
+        assertEquals(0, registry.size());
+        assertTrue(registry.register(newClient(registry)));
+    }
+}
@@ -0,0 +1,158 @@
+package node.clientmessaging;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class OutboundQueueTest {
+
+    /**
+     * Executor that holds on to the drain until the test runs it, standing in for a writer stuck on a slow client
+     */
+    private static class HeldExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        private void runAll() {
+            new ArrayList<>(tasks).forEach(Runnable::run);
+            tasks.clear();
+        }
+    }
+
+    private final List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+    private Runnable write(int value) {
+        return () -> written.add(value);
+    }
+
+    @Test
+    public void writesInOrderAdded() {
+        final HeldExecutor writers = new HeldExecutor();
+        final OutboundQueue queue = new OutboundQueue(8, OverflowPolicy.BLOCK, writers, () -> fail("Should not overflow"));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(queue.add(write(i)));
+        }
+        assertEquals(5, queue.getStatistics().getDepth());
+        assertEquals("Only one writer per client", 1, writers.tasks.size());
+
+        writers.runAll();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), written);
+        assertEquals(0, queue.getStatistics().getDepth());
+        assertEquals(5, queue.getStatistics().getMaxDepth());
+        assertEquals(5, queue.getStatistics().getWrittenCount());
+    }
+
+    @Test
+    public void dropsOldestWhenFull() {
+        final HeldExecutor writers = new HeldExecutor();
+        final OutboundQueue queue = new OutboundQueue(2, OverflowPolicy.DROP_OLDEST, writers, () -> fail("Should not overflow"));
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.add(write(i)));
+        }
+
+        writers.runAll();
+        assertEquals(Arrays.asList(2, 3), written);
+        assertEquals(2, queue.getStatistics().getDroppedCount());
+    }
+
+    @Test
+    public void disconnectsWhenFull() {
+        final HeldExecutor writers = new HeldExecutor();
+        final AtomicBoolean disconnected = new AtomicBoolean(false);
+        final OutboundQueue queue = new OutboundQueue(2, OverflowPolicy.DISCONNECT, writers, () -> disconnected.set(true));
+
+        assertTrue(queue.add(write(0)));
+        assertTrue(queue.add(write(1)));
+        assertFalse(queue.add(write(2)));
+        assertTrue(disconnected.get());
+
+        assertFalse("Closed queue refuses writes", queue.add(write(3)));
+        writers.runAll();
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    public void blockedSenderWaitsForRoom() throws Exception {
+        final ExecutorService writers = Executors.newSingleThreadExecutor();
+        final CountDownLatch slowClient = new CountDownLatch(1);
+        final OutboundQueue queue = new OutboundQueue(1, OverflowPolicy.BLOCK, writers, () -> fail("Should not overflow"));
+
+        queue.add(() -> {
+            try {
+                slowClient.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        // Wait for the writer to take the stuck write, leaving room for one more
+        while (queue.getStatistics().getDepth() > 0) Thread.sleep(5);
+        queue.add(write(1));
+
+        final Future<Boolean> blocked = Executors.newSingleThreadExecutor().submit(() -> queue.add(write(2)));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        slowClient.countDown();
+        assertTrue(blocked.get(5, TimeUnit.SECONDS));
+        writers.shutdown();
+        assertTrue(writers.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2), written);
+    }
+
+    @Test
+    public void blockedSenderGivesUpOnClientThatStopsReading() {
+        final HeldExecutor writers = new HeldExecutor();
+        final AtomicBoolean disconnected = new AtomicBoolean(false);
+        final OutboundQueue queue = new OutboundQueue(1, OverflowPolicy.BLOCK, 50, writers, () -> 0,
+                () -> disconnected.set(true));
+
+        assertTrue(queue.add(write(0)));
+        assertFalse(queue.add(write(1)));
+
+        assertTrue(disconnected.get());
+        assertFalse("Closed queue refuses writes", queue.add(write(2)));
+    }
+
+    @Test
+    public void countsWritesHeldByConnection() {
+        final HeldExecutor writers = new HeldExecutor();
+        final AtomicBoolean disconnected = new AtomicBoolean(false);
+        final OutboundQueue queue = new OutboundQueue(4, OverflowPolicy.DISCONNECT, 50, writers, () -> 3,
+                () -> disconnected.set(true));
+
+        assertTrue(queue.add(write(0)));
+        assertFalse(queue.add(write(1)));
+        assertTrue(disconnected.get());
+    }
+
+    @Test
+    public void keepsDrainingAfterFailedWrite() {
+        final HeldExecutor writers = new HeldExecutor();
+        final OutboundQueue queue = new OutboundQueue(8, OverflowPolicy.BLOCK, writers, () -> fail("Should not overflow"));
+
+        queue.add(() -> {
+            throw new IllegalStateException("Write failed");
+        });
+        try {
+            writers.runAll();
+            fail("Failed write should reach the writer");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertTrue(queue.add(write(1)));
+        writers.runAll();
+        assertEquals(Collections.singletonList(1), written);
+    }
+}
@@ -0,0 +1,41 @@
+package node.clientmessaging;
+
+import node.clientmessaging.messages.ChatMessage;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.Assert.*;
+
+public class RecipientPartitionerTest {
+
+    @Test
+    public void singlePartitionOwnsEverything() {
+        final RecipientPartitioner partitioner = new RecipientPartitioner(1);
+        assertEquals(0, partitioner.partitionOf("alice"));
+        assertEquals(0, partitioner.partitionOf("\u0000negative hash?"));
+    }
+
+    @Test
+    public void groupMessagesBelongToPartitionOfGroup() {
+        final RecipientPartitioner partitioner = new RecipientPartitioner(7);
+        final ChatMessage toGroup = new ChatMessage(new Timestamp(1000), "alice", null, "friends", "hi all");
+        final ChatMessage toUser = new ChatMessage(new Timestamp(1000), "alice", "bob", null, "hi bob");
+
+        assertEquals(partitioner.partitionOf("friends"), partitioner.partitionOf(toGroup));
+        assertEquals(partitioner.partitionOf("bob"), partitioner.partitionOf(toUser));
+    }
+
+    @Test
+    public void partitionsAreNeverNegative() {
+        final RecipientPartitioner partitioner = new RecipientPartitioner(3);
+        // "polygenelubricants" has a hash code of Integer.MIN_VALUE
+        final int partition = partitioner.partitionOf("polygenelubricants");
+        assertTrue(partition >= 0 && partition < 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsAtLeastOnePartition() {
+        new RecipientPartitioner(0);
+    }
+}
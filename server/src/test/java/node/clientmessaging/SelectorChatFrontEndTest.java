@@ -0,0 +1,195 @@
+package node.clientmessaging;
+
+import node.clientmessaging.messages.*;
+import node.clientmessaging.repositories.UserGroupRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class SelectorChatFrontEndTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 5201;
+    private static final ClientMessageJsonEncoder ENCODER = new ClientMessageJsonEncoder();
+    private static final ClientMessageBinaryEncoder BINARY_ENCODER = new ClientMessageBinaryEncoder();
+
+    /**
+     * Repository that accepts every user and group without storing anything
+     */
+    private static class AcceptingRepository implements UserGroupRepository {
+        @Override
+        public void registerUser(String username) {
+        }
+
+        @Override
+        public void removeUser(String username) {
+        }
+
+        @Override
+        public void addUserToGroup(String username, String groupname) {
+        }
+
+        @Override
+        public void removeUserFromGroup(String username, String groupname) {
+        }
+
+        @Override
+        public Set<String> getAllUsersInGroup(String groupname) {
+            return Collections.emptySet();
+        }
+    }
+
+    private final Queue<ChatMessage> outgoingMessages = new ConcurrentLinkedQueue<>();
+    private final ClientRegistry registry = new ClientRegistry(500);
+    private final List<Socket> sockets = new ArrayList<>();
+    private SelectorChatFrontEnd frontEnd;
+
+    @Before
+    public void setUp() throws IOException {
+        final UserGroupRepository repository = new AcceptingRepository();
+        frontEnd = new SelectorChatFrontEnd(HOST, PORT, Executors.newFixedThreadPool(2), connection -> {
+            final ClientHandler handler = new ClientHandler(connection, outgoingMessages, repository, registry,
+                    16, OverflowPolicy.BLOCK, Executors.newCachedThreadPool());
+            return registry.register(handler) ? Optional.of(handler) : Optional.empty();
+        });
+
+        final Thread thread = new Thread(frontEnd);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        frontEnd.close();
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(HOST, PORT);
+        socket.setSoTimeout(5000);
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static void send(Socket socket, String text) throws IOException {
+        final OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void repliesToLoginAndQueuesChatMessages() throws Exception {
+        final Socket socket = connect();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+        send(socket, ENCODER.encode(new LoginMessage("alice")) + "\n");
+        final ClientMessage reply = ENCODER.decode(in.readLine()).get();
+        assertEquals(ClientMessageType.LOGIN, reply.getMessageType());
+        assertTrue(registry.getByUsername("alice").isPresent());
+
+        final String chat = ENCODER.encode(new ChatMessage(new Timestamp(1000), "alice", "bob", null, "hello"));
+        send(socket, chat.substring(0, 10));
+        Thread.sleep(50);
+        send(socket, chat.substring(10) + "\r\n");
+
+        waitUntil(() -> !outgoingMessages.isEmpty());
+        assertEquals("hello", outgoingMessages.poll().getMessageContent());
+    }
+
+    @Test
+    public void deliversDirectlyToLocalRecipients() throws Exception {
+        final Socket alice = connect();
+        final Socket bob = connect();
+        final BufferedReader aliceIn = new BufferedReader(new InputStreamReader(alice.getInputStream(), StandardCharsets.UTF_8));
+        final BufferedReader bobIn = new BufferedReader(new InputStreamReader(bob.getInputStream(), StandardCharsets.UTF_8));
+
+        send(alice, ENCODER.encode(new LoginMessage("alice")) + "\n");
+        send(bob, ENCODER.encode(new LoginMessage("bob")) + "\n");
+        aliceIn.readLine();
+        bobIn.readLine();
+
+        send(alice, ENCODER.encode(new ChatMessage(new Timestamp(1000), "alice", "bob", null, "hi bob")) + "\n");
+
+        final ChatMessage received = (ChatMessage) ENCODER.decode(bobIn.readLine()).get();
+        assertEquals("hi bob", received.getMessageContent());
+
+        // Still queued so that it is stored, but not for the recipient it already reached
+        waitUntil(() -> !outgoingMessages.isEmpty());
+        assertEquals(Collections.singleton("bob"), outgoingMessages.poll().getDeliveredTo());
+    }
+
+    @Test
+    public void switchesToBinaryProtocolAfterLogin() throws Exception {
+        final Socket socket = connect();
+        final InputStream in = new BufferedInputStream(socket.getInputStream());
+
+        send(socket, ENCODER.encode(new LoginMessage("carol", ClientProtocol.BINARY)) + "\n");
+        final ByteArrayOutputStream replyLine = new ByteArrayOutputStream();
+        int next;
+        while ((next = in.read()) != '\n') {
+            replyLine.write(next);
+        }
+        final LoginMessage reply = (LoginMessage) ENCODER.decode(replyLine.toString("UTF-8")).get();
+        assertEquals(ClientProtocol.BINARY, reply.getProtocol());
+
+        final byte[] join = ClientMessageBinaryEncoder.frame(BINARY_ENCODER.encode(new JoinGroupMessage("friends")));
+        final byte[] chat = ClientMessageBinaryEncoder.frame(BINARY_ENCODER.encode(
+                new ChatMessage(new Timestamp(1000), "carol", null, "friends", "hi all")));
+        final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        frames.write(join);
+        frames.write(chat);
+        final OutputStream out = socket.getOutputStream();
+        out.write(frames.toByteArray(), 0, join.length + 2);
+        out.flush();
+        Thread.sleep(50);
+        out.write(frames.toByteArray(), join.length + 2, chat.length - 2);
+        out.flush();
+
+        final ClientMessage joined = BINARY_ENCODER.decode(ClientMessageBinaryEncoder.readFrame(in)).get();
+        assertEquals("friends", ((JoinGroupMessage) joined).getGroup());
+
+        waitUntil(() -> !outgoingMessages.isEmpty());
+        assertEquals("hi all", outgoingMessages.poll().getMessageContent());
+    }
+
+    @Test
+    public void removesClientOnDisconnect() throws Exception {
+        final Socket socket = connect();
+        send(socket, ENCODER.encode(new LoginMessage("bob")) + "\n");
+        waitUntil(() -> registry.getByUsername("bob").isPresent());
+
+        socket.close();
+
+        waitUntil(() -> registry.size() == 0);
+        assertFalse(registry.getByUsername("bob").isPresent());
+    }
+
+    @Test
+    public void holdsManyIdleClients() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            connect();
+        }
+
+        waitUntil(() -> registry.size() == 200);
+    }
+}
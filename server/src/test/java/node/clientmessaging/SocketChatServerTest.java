@@ -0,0 +1,286 @@
+package node.clientmessaging;
+
+import node.clientmessaging.messages.ChatMessage;
+import node.clientmessaging.messages.ClientMessageJsonEncoder;
+import node.clientmessaging.messages.JoinGroupMessage;
+import node.clientmessaging.messages.LoginMessage;
+import node.clientmessaging.repositories.MessageRepository;
+import node.clientmessaging.repositories.UserGroupRepository;
+import node.nodemessaging.MessageCodec;
+import org.junit.After;
+import org.junit.Test;
+import util.ThreadMode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SocketChatServerTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 5202;
+    private static final ClientMessageJsonEncoder ENCODER = new ClientMessageJsonEncoder();
+
+    /**
+     * Message queue and user store kept in memory, recording every message written to it
+     */
+    private static class RecordingRepository implements MessageRepository, UserGroupRepository {
+
+        private final List<ChatMessage> sent = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+
+        @Override
+        public void sendMessage(ChatMessage chatMessage) {
+            sent.add(chatMessage);
+        }
+
+        @Override
+        public void sendMessages(List<ChatMessage> chatMessages) throws IOException {
+            if (failuresLeft.getAndUpdate(failures -> Math.max(0, failures - 1)) > 0) {
+                throw new IOException("Database unavailable");
+            }
+            sent.addAll(chatMessages);
+        }
+
+        @Override
+        public Optional<ChatMessage> getNextMessageForUser(Set<String> usernames) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<ChatMessage> takeMessagesForUsers(Set<String> usernames, int limit) {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public int removeDeliveredMessages() {
+            return 0;
+        }
+
+        @Override
+        public void registerUser(String username) {
+        }
+
+        @Override
+        public void removeUser(String username) {
+        }
+
+        @Override
+        public void addUserToGroup(String username, String groupname) {
+        }
+
+        @Override
+        public void removeUserFromGroup(String username, String groupname) {
+        }
+
+        @Override
+        public Set<String> getAllUsersInGroup(String groupname) {
+            return Collections.emptySet();
+        }
+    }
+
+    private final RecordingRepository repository = new RecordingRepository();
+    private SocketChatServer server;
+    private Thread serverThread;
+    private Socket socket;
+    private BufferedReader in;
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        if (socket != null) socket.close();
+        server.cleanup();
+        // The port is only released once the thread blocked accepting clients has stopped
+        serverThread.join(5000);
+    }
+
+    private void start(WriteMode writeMode) throws Exception {
+        start(writeMode, 1);
+    }
+
+    private void start(WriteMode writeMode, int partitions) throws Exception {
+        server = new SocketChatServer(HOST, PORT, 8, ChatTransport.BLOCKING, ThreadMode.PLATFORM, 16,
+                OverflowPolicy.BLOCK, writeMode, partitions, repository, repository);
+        serverThread = new Thread(server);
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    /**
+     * Logs in as alice and sends the given messages to bob
+     */
+    private void sendAsAlice(String... contents) throws IOException {
+        final List<ChatMessage> messages = new ArrayList<>();
+        for (String content : contents) {
+            messages.add(new ChatMessage(new Timestamp(1000), "alice", "bob", null, content));
+        }
+        sendAsAlice(messages);
+    }
+
+    /**
+     * Logs in as alice and sends the given messages, returning once the server has handled all of them
+     */
+    private void sendAsAlice(List<ChatMessage> messages) throws IOException {
+        socket = new Socket(HOST, PORT);
+        socket.setSoTimeout(5000);
+        final PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+
+        out.println(ENCODER.encode(new LoginMessage("alice")));
+        in.readLine();
+
+        for (ChatMessage message : messages) {
+            out.println(ENCODER.encode(message));
+        }
+
+        // Messages are handled in order, so once the join is acknowledged the messages before it have been queued
+        out.println(ENCODER.encode(new JoinGroupMessage("lobby")));
+        in.readLine();
+    }
+
+    private void waitForSent(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (repository.sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void writesConcurrentlyWithoutToken() throws Exception {
+        start(WriteMode.CONCURRENT);
+        sendAsAlice("one", "two", "three");
+
+        waitForSent(3);
+        assertEquals(3, repository.sent.size());
+        assertFalse(server.hasPendingWork(0));
+
+        final List<ChatMessage> sent = new ArrayList<>(repository.sent);
+        for (int i = 1; i < sent.size(); i++) {
+            assertTrue("Sequence numbers follow the order messages were sent",
+                    sent.get(i - 1).getSequenceNumber() < sent.get(i).getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void keepsWritingConcurrentlyAfterRetriesRunOut() throws Exception {
+        repository.failuresLeft.set(4);
+        start(WriteMode.CONCURRENT);
+        sendAsAlice("one", "two");
+
+        waitForSent(2);
+        assertEquals(2, repository.sent.size());
+        assertEquals("one", repository.sent.get(0).getMessageContent());
+    }
+
+    @Test
+    public void waitsForTokenByDefault() throws Exception {
+        start(WriteMode.TOKEN);
+        sendAsAlice("one");
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!server.hasPendingWork(0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(repository.sent.isEmpty());
+
+        server.transferMessages(new MessageBudget(10, Long.MAX_VALUE, Long.MAX_VALUE), 0);
+        assertEquals(1, repository.sent.size());
+    }
+
+    @Test
+    public void keepsBatchForNextTokenWhenWriteFails() throws Exception {
+        start(WriteMode.TOKEN);
+        sendAsAlice("one", "two", "three");
+        repository.failuresLeft.set(1);
+
+        final MessageBudget budget = new MessageBudget(10, Long.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(0, server.transferMessages(budget, 0));
+        assertTrue(repository.sent.isEmpty());
+        assertTrue(server.hasPendingWork(0));
+
+        assertEquals(3, server.transferMessages(budget, 0));
+        assertEquals("one", repository.sent.get(0).getMessageContent());
+        assertEquals("three", repository.sent.get(2).getMessageContent());
+    }
+
+    @Test
+    public void writesOnlyMessagesInPartitionOfToken() throws Exception {
+        final RecipientPartitioner partitioner = new RecipientPartitioner(2);
+        final String[] recipients = {"bob", "carol", "dave", "erin"};
+        start(WriteMode.TOKEN, 2);
+
+        final List<ChatMessage> messages = new ArrayList<>();
+        for (String recipient : recipients) {
+            messages.add(new ChatMessage(new Timestamp(1000), "alice", recipient, null, "hi " + recipient));
+        }
+        sendAsAlice(messages);
+
+        final MessageBudget budget = new MessageBudget(10, Long.MAX_VALUE, Long.MAX_VALUE);
+        server.transferMessages(budget, 1);
+        for (ChatMessage sent : repository.sent) {
+            assertEquals(1, partitioner.partitionOf(sent));
+        }
+        assertFalse(server.hasPendingWork(1));
+        assertTrue(server.hasPendingWork(0));
+
+        server.transferMessages(budget, 0);
+        assertEquals(recipients.length, repository.sent.size());
+    }
+
+    @Test
+    public void carriesSmallMessagesUpToFirstGroupMessage() throws Exception {
+        start(WriteMode.TOKEN);
+        sendAsAlice(Arrays.asList(
+                new ChatMessage(new Timestamp(1000), "alice", "bob", null, "one"),
+                new ChatMessage(new Timestamp(1000), "alice", "bob", null, "two"),
+                new ChatMessage(new Timestamp(1000), "alice", null, "friends", "to group"),
+                new ChatMessage(new Timestamp(1000), "alice", "bob", null, "three")
+        ));
+
+        List<ChatMessage> carried = server.takeMessagesToCarry(0, 1, Integer.MAX_VALUE);
+        assertEquals(1, carried.size());
+        assertEquals("one", carried.get(0).getMessageContent());
+
+        carried = server.takeMessagesToCarry(0, 10, Integer.MAX_VALUE);
+        assertEquals(1, carried.size());
+        assertEquals("two", carried.get(0).getMessageContent());
+
+        server.transferMessages(new MessageBudget(10, Long.MAX_VALUE, Long.MAX_VALUE), 0);
+        assertEquals(2, repository.sent.size());
+        assertEquals("to group", repository.sent.get(0).getMessageContent());
+    }
+
+    @Test
+    public void carriesOnlyAsManyBytesAsTheTokenHasRoomFor() throws Exception {
+        start(WriteMode.TOKEN);
+        sendAsAlice("one", "two");
+
+        // Sized with the largest sequence number, so that it has room for either message but not both
+        final ChatMessage largest = new ChatMessage(new Timestamp(1000), "alice", "bob", null, "one");
+        largest.setSequenceNumber(Long.MAX_VALUE);
+        final int oneMessage = MessageCodec.carriedSize(largest);
+        assertTrue(server.takeMessagesToCarry(0, 10, 0).isEmpty());
+
+        final List<ChatMessage> carried = server.takeMessagesToCarry(0, 10, oneMessage);
+        assertEquals(1, carried.size());
+        assertEquals("one", carried.get(0).getMessageContent());
+    }
+
+    @Test
+    public void deliversCarriedMessagesToLoggedInClients() throws Exception {
+        start(WriteMode.TOKEN);
+        sendAsAlice();
+
+        assertFalse(server.deliverCarriedMessage(new ChatMessage(new Timestamp(1000), "bob", "carol", null, "hi carol")));
+        assertTrue(server.deliverCarriedMessage(new ChatMessage(new Timestamp(1000), "bob", "alice", null, "hi alice")));
+
+        final ChatMessage received = (ChatMessage) ENCODER.decode(in.readLine()).get();
+        assertEquals("hi alice", received.getMessageContent());
+    }
+}
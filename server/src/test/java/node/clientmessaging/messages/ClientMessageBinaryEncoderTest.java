@@ -0,0 +1,95 @@
+package node.clientmessaging.messages;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ClientMessageBinaryEncoderTest {
+
+    private final ClientMessageBinaryEncoder encoder = new ClientMessageBinaryEncoder();
+
+    private ClientMessage roundTrip(ClientMessage message) {
+        return encoder.decode(encoder.encode(message)).get();
+    }
+
+    @Test
+    public void decodesChatMessages() {
+        final Timestamp sentAt = new Timestamp(1546300800123L);
+        final ChatMessage decoded = (ChatMessage) roundTrip(new ChatMessage(sentAt, "alice", "bob", null, "h\u00e9llo"));
+
+        assertEquals(sentAt, decoded.getSentAt());
+        assertEquals("alice", decoded.getFromName());
+        assertEquals("bob", decoded.getToUsername());
+        assertFalse(decoded.getToGroup().isPresent());
+        assertEquals("h\u00e9llo", decoded.getMessageContent());
+    }
+
+    @Test
+    public void decodesEveryMessageType() {
+        assertEquals("bob", ((LoginMessage) roundTrip(new LoginMessage("bob"))).getUsername());
+        assertEquals("g", ((JoinGroupMessage) roundTrip(new JoinGroupMessage("g"))).getGroup());
+        assertEquals("g", ((LeaveGroupMessage) roundTrip(new LeaveGroupMessage("g"))).getGroup());
+        assertEquals("oops", ((ErrorMessage) roundTrip(new ErrorMessage("oops"))).getErrorMessage());
+        assertEquals(ClientMessageType.ALIVE, roundTrip(new ClientMessage(ClientMessageType.ALIVE)).getMessageType());
+    }
+
+    @Test
+    public void isSmallerThanJson() {
+        final ChatMessage message = new ChatMessage(new Timestamp(1546300800123L), "alice", null, "friends", "hi");
+
+        assertTrue(encoder.encode(message).length * 3 < new ClientMessageJsonEncoder().encode(message).length());
+    }
+
+    @Test
+    public void rejectsTruncatedMessages() {
+        final byte[] encoded = encoder.encode(new ChatMessage(new Timestamp(1), "alice", "bob", null, "hello"));
+
+        assertEquals(Optional.empty(), encoder.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertEquals(Optional.empty(), encoder.decode(new byte[]{(byte) 200}));
+    }
+
+    @Test
+    public void readsFramesFromStreamsAndBuffers() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] first = encoder.encode(new LoginMessage("alice"));
+        final byte[] second = new byte[300];
+        out.write(ClientMessageBinaryEncoder.frame(first));
+        out.write(ClientMessageBinaryEncoder.frame(second));
+        final byte[] wire = out.toByteArray();
+
+        final ByteArrayInputStream in = new ByteArrayInputStream(wire);
+        assertArrayEquals(first, ClientMessageBinaryEncoder.readFrame(in));
+        assertArrayEquals(second, ClientMessageBinaryEncoder.readFrame(in));
+        assertNull(ClientMessageBinaryEncoder.readFrame(in));
+
+        final ByteBuffer partial = ByteBuffer.wrap(wire, 0, wire.length - 1);
+        assertArrayEquals(first, ClientMessageBinaryEncoder.readFrame(partial));
+        final int position = partial.position();
+        assertNull(ClientMessageBinaryEncoder.readFrame(partial));
+        assertEquals(position, partial.position());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFrameLengthThatWouldBeNegative() throws IOException {
+        // Ten byte varint with the sign bit set, which would decode to a negative length
+        final byte[] wire = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01, 0x00};
+
+        ClientMessageBinaryEncoder.readFrame(ByteBuffer.wrap(wire));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOverlongFrameLengthFromStream() throws IOException {
+        final byte[] wire = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01};
+
+        ClientMessageBinaryEncoder.readFrame(new ByteArrayInputStream(wire));
+    }
+}
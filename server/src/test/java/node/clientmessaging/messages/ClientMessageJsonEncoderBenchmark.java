@@ -0,0 +1,95 @@
+package node.clientmessaging.messages;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single pass decoder against parsing each line twice, once for the message type and once for the
+ * message itself, on the lines clients send most often.
+ * Run with the main method after compiling the test sources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientMessageJsonEncoderBenchmark {
+
+    private static final Gson gson = new Gson();
+
+    private final ClientMessageJsonEncoder encoder = new ClientMessageJsonEncoder();
+
+    private String userMessage;
+    private String groupMessage;
+    private String alive;
+
+    @Setup
+    public void setup() {
+        final Timestamp sentAt = new Timestamp(System.currentTimeMillis());
+        userMessage = encoder.encode(new ChatMessage(sentAt, "alice", "bob", null,
+                "Are we still meeting at the library later? I'll bring the notes from this morning."));
+        groupMessage = encoder.encode(new ChatMessage(sentAt, "alice", null, "cs4105",
+                "Has anyone managed to get the election working when the coordinator leaves mid-token?"));
+        alive = encoder.encode(new ClientMessage(ClientMessageType.ALIVE));
+    }
+
+    /**
+     * Decodes the line the way the encoder used to
+     */
+    private static Optional<ClientMessage> decodeTwice(String line) {
+        final ClientMessageType type = gson.fromJson(line, ClientMessage.class).getMessageType();
+
+        switch (type) {
+            case CHAT_MESSAGE:
+                return Optional.of(gson.fromJson(line, ChatMessage.class));
+            case ALIVE:
+                return Optional.of(gson.fromJson(line, ClientMessage.class));
+            default:
+                return Optional.empty();
+        }
+    }
+
+    @Benchmark
+    public Optional<ClientMessage> twoPassUserMessage() {
+        return decodeTwice(userMessage);
+    }
+
+    @Benchmark
+    public Optional<ClientMessage> singlePassUserMessage() {
+        return encoder.decode(userMessage);
+    }
+
+    @Benchmark
+    public Optional<ClientMessage> twoPassGroupMessage() {
+        return decodeTwice(groupMessage);
+    }
+
+    @Benchmark
+    public Optional<ClientMessage> singlePassGroupMessage() {
+        return encoder.decode(groupMessage);
+    }
+
+    @Benchmark
+    public Optional<ClientMessage> twoPassAlive() {
+        return decodeTwice(alive);
+    }
+
+    @Benchmark
+    public Optional<ClientMessage> singlePassAlive() {
+        return encoder.decode(alive);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ClientMessageJsonEncoderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,59 @@
+package node.clientmessaging.messages;
+
+import com.google.gson.JsonParseException;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ClientMessageJsonEncoderTest {
+
+    private final ClientMessageJsonEncoder encoder = new ClientMessageJsonEncoder();
+
+    private ClientMessage roundTrip(ClientMessage message) {
+        return encoder.decode(encoder.encode(message)).get();
+    }
+
+    @Test
+    public void decodesChatMessages() {
+        final Timestamp sentAt = new Timestamp(System.currentTimeMillis() / 1000 * 1000);
+        final ChatMessage decoded = (ChatMessage) roundTrip(new ChatMessage(sentAt, "alice", null, "friends", "hello \"all\""));
+
+        assertEquals(ClientMessageType.CHAT_MESSAGE, decoded.getMessageType());
+        assertEquals(sentAt, decoded.getSentAt());
+        assertEquals("alice", decoded.getFromName());
+        assertNull(decoded.getToUsername());
+        assertEquals(Optional.of("friends"), decoded.getToGroup());
+        assertEquals("hello \"all\"", decoded.getMessageContent());
+    }
+
+    @Test
+    public void decodesEveryMessageType() {
+        assertEquals("bob", ((LoginMessage) roundTrip(new LoginMessage("bob"))).getUsername());
+        assertEquals("g", ((JoinGroupMessage) roundTrip(new JoinGroupMessage("g"))).getGroup());
+        assertEquals("g", ((LeaveGroupMessage) roundTrip(new LeaveGroupMessage("g"))).getGroup());
+        assertEquals("oops", ((ErrorMessage) roundTrip(new ErrorMessage("oops"))).getErrorMessage());
+        assertEquals(ClientMessageType.ALIVE, roundTrip(new ClientMessage(ClientMessageType.ALIVE)).getMessageType());
+    }
+
+    @Test
+    public void ignoresUnknownFieldsInAnyOrder() {
+        final ClientMessage decoded = encoder.decode(
+                "{\"messageType\":\"LOGIN\",\"extra\":{\"a\":[1,2]},\"username\":\"carol\"}").get();
+
+        assertEquals("carol", ((LoginMessage) decoded).getUsername());
+    }
+
+    @Test
+    public void returnsEmptyWithoutKnownType() {
+        assertFalse(encoder.decode("{\"username\":\"carol\"}").isPresent());
+        assertFalse(encoder.decode("{\"messageType\":\"NOT_A_TYPE\"}").isPresent());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void rejectsMalformedJson() {
+        encoder.decode("{\"messageType\":");
+    }
+}
@@ -0,0 +1,194 @@
+package node.jdbc;
+
+import node.clientmessaging.messages.ChatMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class MessagingDatabaseConnectionTest {
+
+    private PooledConnectionProvider pool;
+    private MessagingDatabaseConnection messaging;
+
+    @Before
+    public void setUp() throws IOException {
+        pool = PooledConnectionProvider.forEmbedded("mem:messagingtest", 2);
+        messaging = new MessagingDatabaseConnection(pool, true);
+        messaging.initialize();
+
+        messaging.registerUser("alice");
+        messaging.registerUser("bob");
+        messaging.registerUser("carol");
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    private static ChatMessage message(long sentAt, String from, String toUser, String toGroup, String content) {
+        return new ChatMessage(new Timestamp(sentAt), from, toUser, toGroup, content);
+    }
+
+    @Test
+    public void deliversDirectMessageOnce() throws IOException {
+        messaging.sendMessage(message(1000, "alice", "bob", null, "hi bob"));
+
+        final Optional<ChatMessage> received = messaging.getNextMessageForUser(Collections.singleton("bob"));
+        assertTrue(received.isPresent());
+        assertEquals("hi bob", received.get().getMessageContent());
+        assertEquals("bob", received.get().getToUsername());
+
+        assertFalse(messaging.getNextMessageForUser(Collections.singleton("bob")).isPresent());
+    }
+
+    @Test
+    public void deliversGroupMessageToEachMember() throws IOException {
+        messaging.addUserToGroup("bob", "friends");
+        messaging.addUserToGroup("carol", "friends");
+        assertEquals(new HashSet<>(Arrays.asList("bob", "carol")), messaging.getAllUsersInGroup("friends"));
+
+        messaging.sendMessage(message(1000, "alice", null, "friends", "hi all"));
+
+        assertEquals("hi all", messaging.getNextMessageForUser(Collections.singleton("carol")).get().getMessageContent());
+        assertEquals("hi all", messaging.getNextMessageForUser(Collections.singleton("bob")).get().getMessageContent());
+        assertFalse(messaging.getNextMessageForUser(new HashSet<>(Arrays.asList("bob", "carol"))).isPresent());
+    }
+
+    @Test
+    public void skipsRecipientsAlreadyDeliveredTo() throws IOException {
+        messaging.addUserToGroup("bob", "friends");
+        messaging.addUserToGroup("carol", "friends");
+
+        final ChatMessage groupMessage = message(1000, "alice", null, "friends", "hi all");
+        groupMessage.markDeliveredTo("bob");
+        final ChatMessage directMessage = message(2000, "alice", "bob", null, "hi bob");
+        directMessage.markDeliveredTo("bob");
+        messaging.sendMessages(Arrays.asList(groupMessage, directMessage));
+
+        assertFalse(messaging.getNextMessageForUser(Collections.singleton("bob")).isPresent());
+        assertEquals("hi all", messaging.getNextMessageForUser(Collections.singleton("carol")).get().getMessageContent());
+    }
+
+    @Test
+    public void deliversOldestMessageFirst() throws IOException {
+        messaging.sendMessage(message(2000, "alice", "bob", null, "second"));
+        messaging.sendMessage(message(1000, "carol", "bob", null, "first"));
+
+        assertEquals("first", messaging.getNextMessageForUser(Collections.singleton("bob")).get().getMessageContent());
+        assertEquals("second", messaging.getNextMessageForUser(Collections.singleton("bob")).get().getMessageContent());
+    }
+
+    @Test
+    public void keepsSenderOrderForMessagesSentAtSameTime() throws IOException {
+        final ChatMessage first = message(1000, "alice", "bob", null, "first");
+        first.setSequenceNumber(1);
+        final ChatMessage second = message(1000, "alice", "bob", null, "second");
+        second.setSequenceNumber(2);
+
+        // Written the wrong way round, as can happen once nodes write concurrently
+        messaging.sendMessage(second);
+        messaging.sendMessage(first);
+
+        final List<ChatMessage> received = messaging.takeMessagesForUsers(Collections.singleton("bob"), 10);
+        assertEquals("first", received.get(0).getMessageContent());
+        assertEquals(1, received.get(0).getSequenceNumber());
+        assertEquals("second", received.get(1).getMessageContent());
+    }
+
+    @Test
+    public void removedUserLeavesGroup() throws IOException {
+        messaging.addUserToGroup("bob", "friends");
+        messaging.removeUserFromGroup("bob", "friends");
+
+        assertTrue(messaging.getAllUsersInGroup("friends").isEmpty());
+    }
+
+    @Test
+    public void sendsBatchLargerThanSingleInsert() throws IOException {
+        messaging.addUserToGroup("bob", "friends");
+        messaging.addUserToGroup("carol", "friends");
+
+        final List<ChatMessage> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(message(1000 + i, "alice", null, "friends", "group " + i));
+            batch.add(message(1000 + i, "carol", "alice", null, "direct " + i));
+        }
+        messaging.sendMessages(batch);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("group " + i, messaging.getNextMessageForUser(Collections.singleton("bob")).get().getMessageContent());
+            assertEquals("direct " + i, messaging.getNextMessageForUser(Collections.singleton("alice")).get().getMessageContent());
+        }
+        assertEquals(100, countMessagesFor("carol"));
+    }
+
+    @Test
+    public void failedBatchSendsNothing() throws IOException {
+        final List<ChatMessage> batch = Arrays.asList(
+                message(1000, "alice", "bob", null, "valid"),
+                message(1001, "alice", "nobody", null, "unknown recipient")
+        );
+
+        try {
+            messaging.sendMessages(batch);
+            fail("Batch with an unknown recipient should not be sent");
+        } catch (IOException expected) {
+        }
+
+        assertFalse(messaging.getNextMessageForUser(Collections.singleton("bob")).isPresent());
+    }
+
+    private int countMessagesFor(String username) throws IOException {
+        int count = 0;
+        while (messaging.getNextMessageForUser(Collections.singleton(username)).isPresent()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void takesMessagesForAllUsersOldestFirstUpToLimit() throws IOException {
+        messaging.sendMessage(message(3000, "alice", "carol", null, "third"));
+        messaging.sendMessage(message(1000, "alice", "bob", null, "first"));
+        messaging.sendMessage(message(2000, "bob", "alice", null, "second"));
+
+        final Set<String> users = new HashSet<>(Arrays.asList("alice", "bob", "carol"));
+
+        final List<ChatMessage> taken = messaging.takeMessagesForUsers(users, 2);
+        assertEquals(2, taken.size());
+        assertEquals("first", taken.get(0).getMessageContent());
+        assertEquals("second", taken.get(1).getMessageContent());
+
+        final List<ChatMessage> rest = messaging.takeMessagesForUsers(users, 10);
+        assertEquals(1, rest.size());
+        assertEquals("third", rest.get(0).getMessageContent());
+    }
+
+    @Test
+    public void removesOnlyMessagesTakenByEveryRecipient() throws IOException {
+        messaging.addUserToGroup("bob", "friends");
+        messaging.addUserToGroup("carol", "friends");
+        messaging.sendMessage(message(1000, "alice", null, "friends", "hi all"));
+        messaging.sendMessage(message(2000, "alice", "bob", null, "hi bob"));
+
+        assertEquals(2, messaging.takeMessagesForUsers(Collections.singleton("bob"), 10).size());
+        assertEquals("Group message still waiting for carol", 1, messaging.removeDeliveredMessages());
+
+        assertEquals(1, messaging.takeMessagesForUsers(Collections.singleton("carol"), 10).size());
+        assertEquals(1, messaging.removeDeliveredMessages());
+        assertEquals(0, messaging.removeDeliveredMessages());
+    }
+}
@@ -0,0 +1,121 @@
+package node.jdbc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class PooledConnectionProviderTest {
+
+    private PooledConnectionProvider pool;
+
+    @Before
+    public void createPool() throws SQLException {
+        pool = new PooledConnectionProvider("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", "", 2);
+        try (Connection conn = pool.getConnection()) {
+            try (PreparedStatement create = conn.prepareStatement("CREATE TABLE IF NOT EXISTS items (id INT PRIMARY KEY)")) {
+                create.executeUpdate();
+            }
+            try (PreparedStatement clear = conn.prepareStatement("DELETE FROM items")) {
+                clear.executeUpdate();
+            }
+        }
+    }
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    @Test
+    public void reusesConnectionsAndStatements() throws SQLException {
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = pool.getConnection();
+                 PreparedStatement count = conn.prepareStatement("SELECT count(*) FROM items");
+                 ResultSet rs = count.executeQuery()) {
+                assertTrue(rs.next());
+            }
+        }
+
+        final PoolStatistics statistics = pool.getStatistics();
+        assertEquals("Only one connection was opened", 1, statistics.getCreatedCount());
+        assertEquals("Borrowed once for setup and three times after", 4, statistics.getBorrowCount());
+        assertEquals("Statement was prepared once", 2, statistics.getStatementCacheHits());
+        assertEquals(1, statistics.getIdleConnections());
+    }
+
+    @Test
+    public void closingCachedStatementClosesItsResultSet() throws SQLException {
+        final ResultSet rs;
+        try (Connection conn = pool.getConnection();
+             PreparedStatement count = conn.prepareStatement("SELECT count(*) FROM items")) {
+            rs = count.executeQuery();
+        }
+
+        assertTrue(rs.isClosed());
+    }
+
+    @Test
+    public void closesLeastRecentlyUsedStatementWhenCacheIsFull() throws SQLException {
+        final PreparedStatement first;
+        try (Connection conn = pool.getConnection()) {
+            first = conn.prepareStatement("SELECT 0");
+            first.close();
+            for (int i = 1; i <= PooledConnectionProvider.MAX_CACHED_STATEMENTS; i++) {
+                conn.prepareStatement("SELECT " + i).close();
+            }
+
+            final long misses = pool.getStatistics().getStatementCacheMisses();
+            conn.prepareStatement("SELECT 0").close();
+            assertEquals("Evicted statement is prepared again", misses + 1, pool.getStatistics().getStatementCacheMisses());
+        }
+
+        assertTrue(first.isClosed());
+    }
+
+    @Test
+    public void closedConnectionCannotBeUsed() throws SQLException {
+        final Connection conn = pool.getConnection();
+        conn.close();
+
+        assertTrue(conn.isClosed());
+        try {
+            conn.prepareStatement("SELECT 1");
+            fail("Connection returned to pool should not be usable");
+        } catch (SQLException expected) {
+        }
+    }
+
+    @Test
+    public void rollsBackUncommittedWorkOnReturn() throws SQLException {
+        try (Connection conn = pool.getConnection();
+             PreparedStatement insert = conn.prepareStatement("INSERT INTO items VALUES (1)")) {
+            conn.setAutoCommit(false);
+            insert.executeUpdate();
+        }
+
+        try (Connection conn = pool.getConnection();
+             PreparedStatement count = conn.prepareStatement("SELECT count(*) FROM items");
+             ResultSet rs = count.executeQuery()) {
+            assertTrue(conn.getAutoCommit());
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void opensUpToMaxSize() throws SQLException {
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertNotSame(first, second);
+            assertEquals(2, pool.getStatistics().getTotalConnections());
+            assertEquals(2, pool.getStatistics().getActiveConnections());
+        }
+        assertEquals(2, pool.getStatistics().getIdleConnections());
+    }
+}
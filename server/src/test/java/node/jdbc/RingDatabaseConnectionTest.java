@@ -0,0 +1,77 @@
+package node.jdbc;
+
+import node.ringrepository.VirtualNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class RingDatabaseConnectionTest {
+
+    private PooledConnectionProvider pool;
+    private File nodeList;
+    private RingDatabaseConnection ring;
+
+    @Before
+    public void setUp() throws IOException {
+        nodeList = File.createTempFile("nodes", ".csv");
+        try (PrintWriter writer = new PrintWriter(nodeList)) {
+            writer.println("id,address,coordinationPort,clientPort");
+            for (int id = 1; id <= 4; id++) {
+                writer.printf("%d,localhost,%d,%d%n", id, 5000 + id, 6000 + id);
+            }
+        }
+
+        pool = PooledConnectionProvider.forEmbedded("mem:ringtest", 2);
+        ring = new RingDatabaseConnection(pool, nodeList.getPath(), true);
+        ring.initialize();
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        nodeList.delete();
+    }
+
+    @Test
+    public void loadsNodesFromFile() {
+        final List<VirtualNode> nodes = ring.getAllNodes();
+
+        assertEquals(4, nodes.size());
+        assertEquals(0, ring.getSizeOfRing());
+        assertEquals(6003, ring.getNode(3).get().getClientPort());
+        assertEquals(Optional.empty(), ring.getNode(9));
+    }
+
+    @Test
+    public void insertsAndRemovesFromRing() {
+        ring.setNodeSuccessor(1, 1);
+        ring.insertIntoRing(1, 1, 2);
+        ring.insertIntoRing(2, 1, 3);
+
+        assertEquals(3, ring.getSizeOfRing());
+        assertEquals(Optional.of(3), ring.getNode(2).get().getSuccessorId());
+        assertEquals(2, ring.getAllNodesInRingWithIdGreaterThan(1).size());
+
+        ring.removeFromRing(2, 1, 3);
+
+        assertEquals(2, ring.getAllNodesWithSuccessors().size());
+        assertEquals(Optional.of(1), ring.getNode(2).get().getSuccessorId());
+    }
+
+    @Test
+    public void updatesCoordinator() {
+        ring.updateCoordinator(2);
+        ring.updateCoordinator(4);
+
+        assertTrue(ring.getNode(4).get().isCoordinator());
+        assertFalse(ring.getNode(2).get().isCoordinator());
+    }
+}
@@ -0,0 +1,118 @@
+package node.nodemessaging;
+
+import node.nodemessaging.election.ElectionMessageHeader;
+import node.nodemessaging.election.ringbased.ElectionMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static node.electionhandlers.ElectionMethod.RING_BASED;
+import static node.nodemessaging.election.ElectionMessageType.ELECTION;
+
+/**
+ * Compares the binary wire codec against java serialization for the messages sent most often around the ring.
+ * Run with the main method after compiling the test sources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    private Message token;
+    private Message election;
+    private byte[] serializedToken;
+    private byte[] encodedToken;
+    private byte[] serializedElection;
+    private byte[] encodedElection;
+
+    @Setup
+    public void setup() throws IOException {
+        token = new Message(MessageType.TOKEN, 4);
+
+        final ElectionMessage electionMessage = new ElectionMessage(1);
+        for (int i = 2; i <= 8; i++) {
+            electionMessage.addCandidate(i);
+        }
+        election = new Message(MessageType.COORDINATOR_ELECTION, 1, new ElectionMessageHeader(RING_BASED, ELECTION, electionMessage));
+
+        serializedToken = serialize(token);
+        encodedToken = token.toBytes();
+        serializedElection = serialize(election);
+        encodedElection = election.toBytes();
+    }
+
+    private static byte[] serialize(Message message) throws IOException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            final ObjectOutput out = new ObjectOutputStream(bos);
+            out.writeObject(message);
+            out.flush();
+            return bos.toByteArray();
+        }
+    }
+
+    private static Message deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInput in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Message) in.readObject();
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeToken() throws IOException {
+        return serialize(token);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeToken() {
+        buffer.clear();
+        MessageCodec.encode(token, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Message deserializeToken() throws IOException, ClassNotFoundException {
+        return deserialize(serializedToken);
+    }
+
+    @Benchmark
+    public Message decodeToken() throws IOException {
+        return MessageCodec.decode(ByteBuffer.wrap(encodedToken));
+    }
+
+    @Benchmark
+    public byte[] serializeElection() throws IOException {
+        return serialize(election);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeElection() {
+        buffer.clear();
+        MessageCodec.encode(election, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Message deserializeElection() throws IOException, ClassNotFoundException {
+        return deserialize(serializedElection);
+    }
+
+    @Benchmark
+    public Message decodeElection() throws IOException {
+        return MessageCodec.decode(ByteBuffer.wrap(encodedElection));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,125 @@
+package node.nodemessaging;
+
+import node.clientmessaging.messages.ChatMessage;
+import node.nodemessaging.election.ElectionMessageHeader;
+import node.nodemessaging.election.ringbased.ElectionMessage;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import static node.electionhandlers.ElectionMethod.*;
+import static node.nodemessaging.election.ElectionMessageType.*;
+import static org.junit.Assert.*;
+
+public class MessageCodecTest {
+
+    private static Message roundTrip(Message message) throws IOException {
+        final byte[] bytes = message.toBytes();
+        assertEquals("Size is calculated exactly", MessageCodec.encodedSize(message), bytes.length);
+        return Message.fromBytes(bytes);
+    }
+
+    @Test
+    public void encodeAndDecodeToken() throws IOException {
+        final Message decoded = roundTrip(new Message(MessageType.TOKEN, 7));
+        assertEquals(MessageType.TOKEN, decoded.getType());
+        assertEquals(7, decoded.getSrcId());
+        assertNull(decoded.getPayload(Object.class));
+    }
+
+    @Test
+    public void tokenIsSmall() {
+        assertEquals(4, new Message(MessageType.TOKEN, 7).toBytes().length);
+    }
+
+    @Test
+    public void encodeAndDecodeTokenPartition() throws IOException {
+        final Message decoded = roundTrip(new Message(MessageType.TOKEN, 7, new TokenMessage(3, 1_600_000_000_000L, 1_600_000_000_000_000L)));
+        assertEquals(3, decoded.getPayload(TokenMessage.class).getPartition());
+        assertEquals(1_600_000_000_000L, decoded.getPayload(TokenMessage.class).getGeneration());
+        assertEquals(1_600_000_000_000_000L, decoded.getPayload(TokenMessage.class).getSequenceNumber());
+    }
+
+    @Test
+    public void encodeAndDecodeCarriedMessages() throws IOException {
+        final ChatMessage first = new ChatMessage(new Timestamp(1500), "alice", "bob", null, "h\u00e9llo \u2603");
+        first.setSequenceNumber(1234567890123L);
+        final ChatMessage second = new ChatMessage(null, "carol", "dave", null, null);
+        final TokenMessage token = new TokenMessage(2, 0, 0, Arrays.asList(new CarriedMessage(4, first), new CarriedMessage(9, second)));
+
+        final TokenMessage decoded = roundTrip(new Message(MessageType.TOKEN, 7, token)).getPayload(TokenMessage.class);
+        assertEquals(2, decoded.getPartition());
+        assertEquals(2, decoded.getCarriedMessages().size());
+
+        final CarriedMessage decodedFirst = decoded.getCarriedMessages().get(0);
+        assertEquals(4, decodedFirst.getOriginId());
+        assertEquals(new Timestamp(1500), decodedFirst.getMessage().getSentAt());
+        assertEquals("alice", decodedFirst.getMessage().getFromName());
+        assertEquals("bob", decodedFirst.getMessage().getToUsername());
+        assertEquals("h\u00e9llo \u2603", decodedFirst.getMessage().getMessageContent());
+        assertEquals(1234567890123L, decodedFirst.getMessage().getSequenceNumber());
+
+        final CarriedMessage decodedSecond = decoded.getCarriedMessages().get(1);
+        assertEquals(9, decodedSecond.getOriginId());
+        assertNull(decodedSecond.getMessage().getSentAt());
+        assertNull(decodedSecond.getMessage().getMessageContent());
+    }
+
+    @Test
+    public void encodeAndDecodeSuccessorMessage() throws IOException {
+        final Message decoded = roundTrip(new Message(MessageType.SUCCESSOR, 1, new SuccessorMessage(300)));
+        assertEquals(300, decoded.getPayload(SuccessorMessage.class).getSuccessorId());
+    }
+
+    @Test
+    public void encodeAndDecodeRingBasedElection() throws IOException {
+        final ElectionMessage electionMessage = new ElectionMessage(3);
+        electionMessage.addCandidate(8);
+        electionMessage.addCandidate(-1);
+        final ElectionMessageHeader header = new ElectionMessageHeader(RING_BASED, ELECTION, electionMessage);
+
+        final Message decoded = roundTrip(new Message(MessageType.COORDINATOR_ELECTION, 3, header));
+        final ElectionMessageHeader decodedHeader = decoded.getPayload(ElectionMessageHeader.class);
+
+        assertEquals(RING_BASED, decodedHeader.getElectionMethod());
+        assertEquals(ELECTION, decodedHeader.getType());
+        assertEquals(Arrays.asList(3, 8, -1), decodedHeader.getPayload(ElectionMessage.class).getCandidates());
+    }
+
+    @Test
+    public void encodeAndDecodeChangRobertsCoordinator() throws IOException {
+        final ElectionMessageHeader header = new ElectionMessageHeader(CHANG_ROBERTS, COORDINATOR,
+                new node.nodemessaging.election.changroberts.CoordinatorMessage(5));
+
+        final Message decoded = roundTrip(new Message(MessageType.COORDINATOR_ELECTION, 2, header));
+        final ElectionMessageHeader decodedHeader = decoded.getPayload(ElectionMessageHeader.class);
+
+        assertEquals(5, decodedHeader.getPayload(node.nodemessaging.election.changroberts.CoordinatorMessage.class).getCoordinatorId());
+    }
+
+    @Test
+    public void encodeAndDecodeBullyOk() throws IOException {
+        final Message decoded = roundTrip(new Message(MessageType.COORDINATOR_ELECTION, 2, new ElectionMessageHeader(BULLY, OK)));
+        final ElectionMessageHeader decodedHeader = decoded.getPayload(ElectionMessageHeader.class);
+
+        assertEquals(BULLY, decodedHeader.getElectionMethod());
+        assertEquals(OK, decodedHeader.getType());
+        assertNull(decodedHeader.getPayload(Object.class));
+    }
+
+    @Test(expected = IOException.class)
+    public void decodeRejectsUnknownVersion() throws IOException {
+        final byte[] bytes = new Message(MessageType.TOKEN, 1).toBytes();
+        bytes[0] = (byte) (MessageCodec.VERSION + 1);
+        Message.fromBytes(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void decodeRejectsTruncatedMessage() throws IOException {
+        final byte[] bytes = new Message(MessageType.SUCCESSOR, 1, new SuccessorMessage(2)).toBytes();
+        MessageCodec.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1));
+    }
+}
@@ -0,0 +1,142 @@
+package node.ringrepository;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CachingRingRepositoryTest {
+
+    /**
+     * Repository kept in memory that counts how many times the node table is read
+     */
+    private static class CountingRepository implements RingRepository {
+
+        private final TreeMap<Integer, VirtualNode> nodes = new TreeMap<>();
+        private int reads = 0;
+
+        private CountingRepository(int numberOfNodes) {
+            for (int id = 1; id <= numberOfNodes; id++) {
+                nodes.put(id, new VirtualNode("localhost", 5000 + id, 6000 + id, id, null, false));
+            }
+        }
+
+        private void setSuccessor(int nodeId, Integer successorId) {
+            nodes.put(nodeId, nodes.get(nodeId).withSuccessor(successorId));
+        }
+
+        @Override
+        public List<VirtualNode> getAllNodes() {
+            reads++;
+            return new ArrayList<>(nodes.values());
+        }
+
+        @Override
+        public Optional<VirtualNode> getNode(int nodeId) {
+            reads++;
+            return Optional.ofNullable(nodes.get(nodeId));
+        }
+
+        @Override
+        public void updateCoordinator(int newCoordinatorId) {
+            for (VirtualNode node : new ArrayList<>(nodes.values())) {
+                nodes.put(node.getNodeId(), node.withCoordinator(node.getNodeId() == newCoordinatorId));
+            }
+        }
+
+        @Override
+        public void setNodeSuccessor(int nodeId, int successorId) {
+            setSuccessor(nodeId, successorId);
+        }
+
+        @Override
+        public void removeNodeSuccessor(int nodeId) {
+            setSuccessor(nodeId, null);
+        }
+
+        @Override
+        public List<VirtualNode> getAllNodesWithSuccessors() {
+            reads++;
+            return nodes.values().stream().filter(n -> n.getSuccessorId().isPresent()).collect(Collectors.toList());
+        }
+
+        @Override
+        public int getSizeOfRing() {
+            return getAllNodesWithSuccessors().size();
+        }
+
+        @Override
+        public void insertIntoRing(int predecessorId, int successorId, int newNodeId) {
+            setSuccessor(newNodeId, successorId);
+            setSuccessor(predecessorId, newNodeId);
+        }
+
+        @Override
+        public void removeFromRing(int predecessorId, int successorId, int nodeToRemove) {
+            setSuccessor(predecessorId, successorId);
+            setSuccessor(nodeToRemove, null);
+        }
+
+        @Override
+        public List<VirtualNode> getAllNodesInRingWithIdGreaterThan(int minId) {
+            reads++;
+            return nodes.tailMap(minId, false).values().stream()
+                    .filter(n -> n.getSuccessorId().isPresent())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private CountingRepository database;
+    private CachingRingRepository cache;
+
+    @Before
+    public void setUp() {
+        database = new CountingRepository(4);
+        cache = new CachingRingRepository(database);
+    }
+
+    @Test
+    public void readsAreServedFromSingleLoad() {
+        cache.setNodeSuccessor(1, 1);
+        cache.insertIntoRing(1, 1, 2);
+
+        assertEquals(2, cache.getSizeOfRing());
+        assertEquals(Optional.of(2), cache.getNode(1).flatMap(VirtualNode::getSuccessorId));
+        assertEquals(1, cache.getAllNodesInRingWithIdGreaterThan(1).size());
+        assertEquals(4, cache.getAllNodes().size());
+
+        assertEquals("Node table should only be read once", 1, database.reads);
+    }
+
+    @Test
+    public void writesGoThroughToRepository() {
+        cache.getAllNodes();
+        cache.setNodeSuccessor(1, 1);
+        cache.insertIntoRing(1, 1, 3);
+        cache.removeFromRing(1, 1, 3);
+        cache.updateCoordinator(1);
+
+        assertEquals(database.getAllNodes().toString(), cache.getAllNodes().toString());
+        assertTrue(cache.getNode(1).get().isCoordinator());
+        assertFalse(cache.getNode(3).get().getSuccessorId().isPresent());
+    }
+
+    @Test
+    public void invalidateReloadsChangesMadeElsewhere() {
+        assertEquals(0, cache.getSizeOfRing());
+
+        // Another node coordinating the ring updates the database directly
+        database.setNodeSuccessor(4, 4);
+        assertEquals(0, cache.getSizeOfRing());
+
+        cache.invalidate();
+        assertEquals(1, cache.getSizeOfRing());
+        assertEquals(2, database.reads);
+    }
+}
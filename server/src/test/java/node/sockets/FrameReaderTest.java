@@ -0,0 +1,83 @@
+package node.sockets;
+
+import node.nodemessaging.Message;
+import node.nodemessaging.MessageType;
+import node.nodemessaging.SuccessorMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+public class FrameReaderTest {
+
+    private ServerSocket serverSocket;
+    private Socket client;
+    private Socket server;
+
+    @Before
+    public void connect() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        client = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        server = serverSocket.accept();
+    }
+
+    @After
+    public void close() throws IOException {
+        client.close();
+        server.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void readsConsecutiveMessages() throws IOException {
+        final FrameWriter writer = new FrameWriter(client);
+        final FrameReader reader = new FrameReader(server);
+
+        writer.write(new Message(MessageType.TOKEN, 1));
+        writer.write(new Message(MessageType.SUCCESSOR, 2, new SuccessorMessage(3)));
+
+        final ReadResult first = reader.read(1);
+        final ReadResult second = reader.read(1);
+
+        assertEquals(ReadOutcome.MESSAGE, first.getOutcome());
+        assertEquals(MessageType.TOKEN, first.getMessage().getType());
+        assertEquals(ReadOutcome.MESSAGE, second.getOutcome());
+        assertEquals(3, second.getMessage().getPayload(SuccessorMessage.class).getSuccessorId());
+    }
+
+    @Test
+    public void timesOutWhenNothingSent() throws IOException {
+        final FrameReader reader = new FrameReader(server);
+        assertEquals(ReadOutcome.TIMEOUT, reader.read(1).getOutcome());
+    }
+
+    @Test
+    public void reportsClosedConnection() throws IOException {
+        final FrameReader reader = new FrameReader(server);
+        client.close();
+        assertEquals(ReadOutcome.CLOSED, reader.read(1).getOutcome());
+    }
+
+    @Test
+    public void resumesPartialFrameAfterTimeout() throws IOException {
+        final FrameReader reader = new FrameReader(server);
+        final byte[] body = new Message(MessageType.TOKEN_ACK, 4).toBytes();
+
+        // Send length prefix only
+        client.getOutputStream().write(new byte[]{0, 0, 0, (byte) body.length});
+        client.getOutputStream().flush();
+        assertEquals(ReadOutcome.TIMEOUT, reader.read(1).getOutcome());
+
+        client.getOutputStream().write(body);
+        client.getOutputStream().flush();
+        final ReadResult result = reader.read(1);
+        assertEquals(ReadOutcome.MESSAGE, result.getOutcome());
+        assertEquals(MessageType.TOKEN_ACK, result.getMessage().getType());
+    }
+}
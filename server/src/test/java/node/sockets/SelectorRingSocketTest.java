@@ -0,0 +1,89 @@
+package node.sockets;
+
+import node.AddressTranslator;
+import node.nodemessaging.Message;
+import node.nodemessaging.MessageType;
+import node.ringrepository.VirtualNode;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SelectorRingSocketTest {
+
+    private AddressTranslator addressTranslator;
+
+    @Before
+    public void initAddressTranslator() {
+        List<VirtualNode> nodes = new ArrayList<>();
+        nodes.add(new VirtualNode("localhost", 5101, 8101, 1, null, false));
+        nodes.add(new VirtualNode("localhost", 5102, 8102, 2, null, false));
+        addressTranslator = new AddressTranslator(nodes);
+    }
+
+    @Test
+    public void sendTokenAndReceiveAck() throws IOException {
+        SelectorRingSocket first = null;
+        SelectorRingSocket second = null;
+
+        try {
+            first = new SelectorRingSocket(1, addressTranslator);
+            second = new SelectorRingSocket(2, addressTranslator);
+            first.updateSuccessor(2);
+            second.updateSuccessor(1);
+
+            first.sendToSuccessor(new Message(MessageType.TOKEN, 1));
+            final ReadResult token = second.receiveFromPredecessor(1);
+            assertEquals(ReadOutcome.MESSAGE, token.getOutcome());
+            assertEquals(MessageType.TOKEN, token.getMessage().getType());
+
+            second.sendToPredeccesor(new Message(MessageType.TOKEN_ACK, 2));
+            final ReadResult ack = first.receiveFromSuccessor(1);
+            assertEquals(ReadOutcome.MESSAGE, ack.getOutcome());
+            assertEquals(MessageType.TOKEN_ACK, ack.getMessage().getType());
+
+            assertFalse(first.isClosedLoop());
+        } finally {
+            if (first != null) first.close();
+            if (second != null) second.close();
+        }
+    }
+
+    @Test
+    public void reportsClosedPredecessor() throws IOException {
+        SelectorRingSocket first = null;
+        SelectorRingSocket second = null;
+
+        try {
+            first = new SelectorRingSocket(1, addressTranslator);
+            second = new SelectorRingSocket(2, addressTranslator);
+            first.updateSuccessor(2);
+            first.sendToSuccessor(new Message(MessageType.TOKEN, 1));
+            assertEquals(ReadOutcome.MESSAGE, second.receiveFromPredecessor(1).getOutcome());
+
+            first.close();
+            first = null;
+            assertEquals(ReadOutcome.CLOSED, second.receiveFromPredecessor(1).getOutcome());
+        } finally {
+            if (first != null) first.close();
+            if (second != null) second.close();
+        }
+    }
+
+    @Test
+    public void timesOutWithoutAck() throws IOException {
+        SelectorRingSocket socket = null;
+
+        try {
+            socket = new SelectorRingSocket(1, addressTranslator);
+            socket.updateSuccessor(1);
+            assertEquals(ReadOutcome.TIMEOUT, socket.receiveFromSuccessor(1).getOutcome());
+        } finally {
+            if (socket != null) socket.close();
+        }
+    }
+}
@@ -7,6 +7,10 @@ import node.AddressTranslator;
 import org.junit.*;
 
 import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -46,6 +50,23 @@ public class UDPSocketTest {
         }
     }
 
+    @Test
+    public void acceptsShutdownFromThisHost() throws IOException {
+        try (DatagramSocket local = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            UDPSocket destSocket = new UDPSocket(addressTranslator, 0);
+            try {
+                final byte[] bytes = new Message(MessageType.SHUTDOWN, 1).toBytes();
+                local.send(new DatagramPacket(bytes, bytes.length, addressTranslator.getSocketAddress(0)));
+
+                Message receivedMessage = destSocket.receiveMessage(1);
+                assertNotNull(receivedMessage);
+                assertEquals(MessageType.SHUTDOWN, receivedMessage.getType());
+            } finally {
+                destSocket.close();
+            }
+        }
+    }
+
     @Test
     public void closeSocket() throws IOException {
         UDPSocket socket = new UDPSocket(addressTranslator, 1);
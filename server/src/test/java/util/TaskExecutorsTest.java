@@ -0,0 +1,37 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TaskExecutorsTest {
+
+    private static boolean runsOnVirtualThread() {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void virtualModeRunsTasksWhateverTheJdk() throws Exception {
+        final ExecutorService executor = TaskExecutors.newTaskExecutor(ThreadMode.VIRTUAL);
+        final Future<Boolean> onVirtualThread = executor.submit(TaskExecutorsTest::runsOnVirtualThread);
+
+        assertEquals(TaskExecutors.virtualThreadsSupported(), onVirtualThread.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void platformModeNeverUsesVirtualThreads() throws Exception {
+        final ExecutorService executor = TaskExecutors.newWorkerPool(ThreadMode.PLATFORM, 2);
+
+        assertFalse(executor.submit(TaskExecutorsTest::runsOnVirtualThread).get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}